@@ -0,0 +1,85 @@
+package com.bank.movieservice.benchmark;
+
+import com.bank.movieservice.kafka.MovieMessage;
+import com.bank.movieservice.kafka.MovieMessageDeserializer;
+import com.bank.movieservice.kafka.MovieMessageFormat;
+import com.bank.movieservice.kafka.MovieMessageSerializer;
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.service.KafkaMovieListener.MovieData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор одного сообщения о фильме: прежний путь (StringDeserializer + очистка BOM/trim +
+ * ObjectMapper.readValue(String)) против разбора из байтов записи и Smile.
+ * Размер описания задает descriptionLength: короткое, типичное и длинное.
+ *
+ * Запуск: mvn -Pjmh package exec:exec -Djmh.args="MovieMessageDeserializerBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieMessageDeserializerBenchmark {
+
+    @Param({"60", "400", "2000"})
+    private int descriptionLength;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MovieMessageDeserializer deserializer = new MovieMessageDeserializer();
+
+    private byte[] jsonWithBom;
+    private byte[] smile;
+
+    @Setup
+    public void setUp() {
+        StringBuilder description = new StringBuilder(descriptionLength);
+        while (description.length() < descriptionLength) {
+            description.append("Герой отправляется в путешествие, которое изменит его жизнь. ");
+        }
+        MovieMessage message = MovieMessage.builder()
+                .id(42L)
+                .filmId(301L)
+                .filmName("Матрица")
+                .year(1999)
+                .rating("8.5")
+                .description(description.substring(0, descriptionLength))
+                .genres(List.of("фантастика", "боевик"))
+                .build();
+
+        byte[] json = new MovieMessageSerializer(MovieMessageFormat.JSON).serialize("movies", message);
+        jsonWithBom = new byte[json.length + 4];
+        jsonWithBom[0] = (byte) 0xEF;
+        jsonWithBom[1] = (byte) 0xBB;
+        jsonWithBom[2] = (byte) 0xBF;
+        System.arraycopy(json, 0, jsonWithBom, 3, json.length);
+        jsonWithBom[jsonWithBom.length - 1] = '\n';
+
+        smile = new MovieMessageSerializer(MovieMessageFormat.SMILE).serialize("movies", message);
+    }
+
+    @Benchmark
+    public MovieData legacyStringJson() throws Exception {
+        String json = new String(jsonWithBom, StandardCharsets.UTF_8);
+        if (json.startsWith("\uFEFF")) {
+            json = json.substring(1);
+        }
+        return objectMapper.readValue(json.trim(), MovieData.class);
+    }
+
+    @Benchmark
+    public MovieRecord byteJson() {
+        return deserializer.deserialize("movies", jsonWithBom);
+    }
+
+    @Benchmark
+    public MovieRecord byteSmile() {
+        return deserializer.deserialize("movies", smile);
+    }
+}
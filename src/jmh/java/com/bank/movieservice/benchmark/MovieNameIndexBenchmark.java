@@ -0,0 +1,108 @@
+package com.bank.movieservice.benchmark;
+
+import com.bank.movieservice.DTO.response.MovieSearchResponseDTO;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.MovieNameIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нечеткий поиск MovieNameIndex на синтетическом каталоге: названия из 1-4 слов общего
+ * словаря, поэтому частые триграммы ("ени", "ост") есть в сотнях тысяч названий.
+ * Запросы - 8 символов с двумя правками (minShared = 1) и 12 символов с двумя правками.
+ *
+ * Запуск: mvn -Pjmh package exec:exec -Djmh.args="MovieNameIndexBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MovieNameIndexBenchmark {
+
+    private static final String[] WORDS = {
+            "приключения", "возвращение", "последний", "отпуск", "остров", "сокровища", "начало", "конец",
+            "тайна", "города", "звезды", "полночь", "любовь", "война", "мир", "брат", "сестра", "дорога",
+            "домой", "история", "ночь", "день", "охота", "мечта", "легенда", "камень", "капитан", "море"
+    };
+
+    @Param({"100000", "1000000"})
+    private int catalogSize;
+
+    private MovieNameIndex index;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        List<Movie> catalog = new ArrayList<>(catalogSize);
+        for (int i = 1; i <= catalogSize; i++) {
+            StringBuilder name = new StringBuilder();
+            int words = 1 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                name.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            Movie movie = new Movie();
+            movie.setId((long) i);
+            movie.setFilmName(name.append(' ').append(i).toString());
+            catalog.add(movie);
+        }
+
+        index = new MovieNameIndex(repository(catalog), new SimpleMeterRegistry());
+        set("enabled", true);
+        set("mergeThreshold", 10000);
+        set("fuzzyMaxEdits", 2);
+        set("fuzzyCandidateLimit", 500);
+        set("fuzzyLimit", 20);
+        set("commonGramLimit", 20000);
+        index.rebuild();
+    }
+
+    @TearDown
+    public void tearDown() {
+        index.shutdown();
+    }
+
+    @Benchmark
+    public List<MovieSearchResponseDTO> shortQueryTwoEdits() {
+        return index.fuzzySearch("востраат");
+    }
+
+    @Benchmark
+    public List<MovieSearchResponseDTO> longQueryTwoEdits() {
+        return index.fuzzySearch("прикдючения остр");
+    }
+
+    private void set(String field, Object value) throws ReflectiveOperationException {
+        Field declared = MovieNameIndex.class.getDeclaredField(field);
+        declared.setAccessible(true);
+        declared.set(index, value);
+    }
+
+    /**
+     * Репозиторий с двумя методами, которые читает rebuild
+     */
+    private static MovieRepository repository(List<Movie> catalog) {
+        MovieRepository.IdRange range = new MovieRepository.IdRange() {
+            @Override
+            public Long getMinId() { return 1L; }
+
+            @Override
+            public Long getMaxId() { return (long) catalog.size(); }
+        };
+        return (MovieRepository) Proxy.newProxyInstance(MovieRepository.class.getClassLoader(),
+                new Class<?>[]{MovieRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findIdRange" -> range;
+                    case "findWithGenresByIdBetween" -> catalog.subList((int) (long) args[0] - 1, (int) (long) args[1]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
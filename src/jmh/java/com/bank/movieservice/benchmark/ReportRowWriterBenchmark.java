@@ -0,0 +1,119 @@
+package com.bank.movieservice.benchmark;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.service.ReportRowWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежней генерации строк CSV/XML (String.format + цепочка replace + DecimalFormat)
+ * с ReportRowWriter на отчете из 1000 фильмов. Буфер обоих вариантов заранее одного размера,
+ * чтобы разница была только в записи строк.
+ *
+ * Запуск: mvn -Pjmh package exec:exec -Djmh.args="ReportRowWriterBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportRowWriterBenchmark {
+
+    private static final int CSV_ROW_CAPACITY = 256;
+    private static final int XML_ROW_CAPACITY = 768;
+
+    private final ReportRowWriter rowWriter = new ReportRowWriter();
+    private DecimalFormat decimalFormat;
+    private List<Movie> movies;
+
+    @Setup
+    public void setUp() {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
+        symbols.setDecimalSeparator('.');
+        decimalFormat = new DecimalFormat("#0.0", symbols);
+        decimalFormat.setRoundingMode(RoundingMode.HALF_UP);
+
+        Random random = new Random(42);
+        movies = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String description = "Описание фильма номер " + i + " с \"цитатой\" и деталями сюжета, "
+                    + "которое по длине похоже на настоящие описания из Кинопоиска. ".repeat(1 + random.nextInt(4));
+            movies.add(new Movie((long) 300000 + i, "Фильм " + i + (i % 10 == 0 ? " & <Продолжение>" : ""),
+                    1950 + random.nextInt(75), BigDecimal.valueOf(50 + random.nextInt(50), 1), description));
+        }
+    }
+
+    @Benchmark
+    public String legacyCsv() {
+        StringBuilder csv = new StringBuilder(movies.size() * CSV_ROW_CAPACITY);
+        csv.append(ReportRowWriter.MOVIE_CSV_HEADER);
+        for (Movie movie : movies) {
+            String formattedRating = movie.getRating() != null ? decimalFormat.format(movie.getRating()) : "0.0";
+            csv.append(String.format("%d,\"%s\",%d,%s,\"%s\"\n",
+                    movie.getFilmId(),
+                    legacyEscapeCsv(movie.getFilmName()),
+                    movie.getYear(),
+                    formattedRating,
+                    legacyEscapeCsv(movie.getDescription())));
+        }
+        return csv.toString();
+    }
+
+    @Benchmark
+    public String rowWriterCsv() {
+        StringBuilder csv = new StringBuilder(movies.size() * CSV_ROW_CAPACITY);
+        csv.append(ReportRowWriter.MOVIE_CSV_HEADER);
+        for (Movie movie : movies) {
+            rowWriter.writeMovieCsvRow(csv, movie);
+        }
+        return csv.toString();
+    }
+
+    @Benchmark
+    public String legacyXml() {
+        StringBuilder xml = new StringBuilder(movies.size() * XML_ROW_CAPACITY);
+        for (Movie movie : movies) {
+            xml.append("  <movie>\n");
+            xml.append("    <filmId>").append(movie.getFilmId()).append("</filmId>\n");
+            xml.append("    <filmName>").append(legacyEscapeXml(movie.getFilmName())).append("</filmName>\n");
+            xml.append("    <year>").append(movie.getYear()).append("</year>\n");
+            xml.append("    <rating>").append(movie.getRating()).append("</rating>\n");
+            xml.append("    <description>").append(legacyEscapeXml(movie.getDescription())).append("</description>\n");
+            xml.append("  </movie>\n");
+        }
+        return xml.toString();
+    }
+
+    @Benchmark
+    public String rowWriterXml() {
+        StringBuilder xml = new StringBuilder(movies.size() * XML_ROW_CAPACITY);
+        for (Movie movie : movies) {
+            rowWriter.writeMovieXmlRow(xml, movie);
+        }
+        return xml.toString();
+    }
+
+    private static String legacyEscapeCsv(String value) {
+        if (value == null) return "";
+        return value.replace("\"", "\"\"");
+    }
+
+    private static String legacyEscapeXml(String value) {
+        if (value == null) return "";
+        return value.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&apos;");
+    }
+}
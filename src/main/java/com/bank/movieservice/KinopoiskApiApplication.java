@@ -1,30 +1,28 @@
 package com.bank.movieservice;
 import org.springframework.boot.SpringApplication;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.Locale;
+import java.time.Duration;
 
 @SpringBootApplication
 public class KinopoiskApiApplication {
     public static void main(String[] args) {
         SpringApplication.run(KinopoiskApiApplication.class, args);
     }
+    // Таймауты ограничивают зависший запрос: прерывание потока блокирующий HTTP не останавливает
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
-    @Bean
-    public DecimalFormat decimalFormat() {
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
-        symbols.setDecimalSeparator('.');
-        DecimalFormat decimalFormat = new DecimalFormat("#0.0", symbols);
-        decimalFormat.setRoundingMode(java.math.RoundingMode.HALF_UP);
-        return decimalFormat;
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     @Value("${kinopoisk.api.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                     @Value("${kinopoisk.api.read-timeout-ms:20000}") long readTimeoutMs) {
+        return builder
+                .setConnectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .setReadTimeout(Duration.ofMillis(readTimeoutMs))
+                .build();
     }
 }
@@ -0,0 +1,128 @@
+package com.bank.movieservice.config;
+
+import com.bank.movieservice.kafka.MovieDigest;
+import com.bank.movieservice.kafka.MovieDigestTopology;
+import com.bank.movieservice.kafka.SmileSerde;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.KStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+import org.springframework.kafka.annotation.KafkaStreamsDefaultConfiguration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaStreamsConfiguration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Дайджест через Kafka Streams (kafka.streams.enabled=true).
+ *
+ * Вместо буфера в памяти одного экземпляра фильмы агрегируются в окна MovieDigestTopology,
+ * а письма отправляет MovieDigestStreamListener из топика закрытых дайджестов.
+ * Пакетный KafkaMovieListener в этом режиме не запускается.
+ */
+@Configuration
+@EnableKafkaStreams
+@ConditionalOnProperty(name = "kafka.streams.enabled", havingValue = "true")
+public class DigestStreamsConfig {
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${kafka.streams.application-id:movie-digest-streams}")
+    private String applicationId;
+
+    @Value("${kafka.streams.state-dir:/tmp/kafka-streams}")
+    private String stateDir;
+
+    @Value("${kafka.streams.processing-guarantee:at_least_once}")
+    private String processingGuarantee;
+
+    @Value("${kafka.streams.window-size:P1D}")
+    private Duration windowSize;
+
+    @Value("${kafka.streams.grace:PT1H}")
+    private Duration grace;
+
+    // Корзин filmId на получателя - не меньше числа партиций movie-topic
+    @Value("${kafka.streams.buckets:8}")
+    private int buckets;
+
+    @Value("${kafka.streams.max-movies:10000}")
+    private int maxMovies;
+
+    @Value("${kafka.streams.merge-timeout:PT10M}")
+    private Duration mergeTimeout;
+
+    // Не меньше window-size + grace
+    @Value("${kafka.streams.retention:P7D}")
+    private Duration retention;
+
+    @Value("${kafka.streams.digest-group-id:movie-digest-email-group}")
+    private String digestGroupId;
+
+    @Value("${kafka.topics.movie-daily:movie-topic}")
+    private String movieTopic;
+
+    @Value("${kafka.topics.movie-digest:movie-digest-topic}")
+    private String digestTopic;
+
+    @Value("${email.daily-report.recipient:mym99527@gmail.com}")
+    private String recipientEmail;
+
+    @Bean(name = KafkaStreamsDefaultConfiguration.DEFAULT_STREAMS_CONFIG_BEAN_NAME)
+    public KafkaStreamsConfiguration kafkaStreamsConfiguration() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        // Хранилище окна - RocksDB в state-dir, восстанавливается из changelog-топика
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, processingGuarantee);
+        return new KafkaStreamsConfiguration(props);
+    }
+
+    @Bean
+    public KStream<String, MovieDigest> movieDigestStream(StreamsBuilder streamsBuilder) {
+        return MovieDigestTopology.build(streamsBuilder, movieTopic, digestTopic, recipientEmail, windowSize, grace,
+                buckets, maxMovies, mergeTimeout, retention);
+    }
+
+    // ========== ЧТЕНИЕ ЗАКРЫТЫХ ДАЙДЖЕСТОВ ==========
+
+    @Bean
+    public ConsumerFactory<String, MovieDigest> digestConsumerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, digestGroupId);
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new DefaultKafkaConsumerFactory<>(configProps,
+                new StringDeserializer(), new SmileSerde<>(MovieDigest.class).deserializer());
+    }
+
+    /**
+     * Один дайджест - одно письмо. Оффсет коммитится после отправки, при ошибке SMTP
+     * запись повторяется с паузой
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, MovieDigest> digestKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, MovieDigest> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(digestConsumerFactory());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(10_000L, 5)));
+        return factory;
+    }
+}
@@ -1,6 +1,14 @@
 package com.bank.movieservice.config;
 
+import com.bank.movieservice.kafka.IngestWorkItem;
+import com.bank.movieservice.kafka.MovieMessage;
+import com.bank.movieservice.kafka.MovieMessageDeserializer;
+import com.bank.movieservice.kafka.MovieMessageFormat;
+import com.bank.movieservice.kafka.MovieMessageSerializer;
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.service.CatalogBackfillService;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
@@ -8,10 +16,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -27,51 +41,171 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id:movie-email-consumer-group}")
     private String consumerGroupId;
 
+    @Value("${spring.kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    @Value("${spring.kafka.producer.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${spring.kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    // Начальное число потоков batch-слушателя, дальше его меняет ListenerConcurrencyController
+    @Value("${kafka.consumer.concurrency:3}")
+    private int listenerConcurrency;
+
+    // smile - бинарный формат с заголовком версии, json - прежний формат на время миграции консьюмеров
+    @Value("${kafka.producer.payload-format:smile}")
+    private MovieMessageFormat payloadFormat;
+
+    @Value("${kafka.topics.ingest-work:ingest-work-topic}")
+    private String ingestWorkTopic;
+
+    // Партиции топика заданий - верхняя граница числа обработчиков во всех экземплярах
+    @Value("${kafka.topics.ingest-work-partitions:12}")
+    private int ingestWorkPartitions;
+
+    @Value("${backfill.worker.concurrency:2}")
+    private int ingestWorkerConcurrency;
+
+    @Value("${backfill.worker.max-attempts:5}")
+    private long ingestWorkMaxAttempts;
+
+    @Value("${backfill.worker.retry-backoff-ms:10000}")
+    private long ingestWorkRetryBackoffMs;
+
     // ========== PRODUCER CONFIGURATION ==========
 
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, MovieMessage> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 1);
-        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
+        // Идемпотентность: брокер отбрасывает повторы, число попыток ограничено delivery.timeout.ms
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
         configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        return new DefaultKafkaProducerFactory<>(configProps,
+                new StringSerializer(), new MovieMessageSerializer(payloadFormat));
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, MovieMessage> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
     // ========== CONSUMER CONFIGURATION ==========
 
+    /**
+     * Значения читаются MovieMessageDeserializer: он понимает и Smile с заголовком версии, и JSON
+     */
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, MovieRecord> consumerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ConsumerConfig.GROUP_ID_CONFIG, consumerGroupId);
         configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
-        configProps.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, 1000);
+        // Оффсеты коммитит контейнер, а не клиент по таймеру - иначе подтверждение может опередить обработку
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         configProps.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
         configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
-        return new DefaultKafkaConsumerFactory<>(configProps);
+        return new DefaultKafkaConsumerFactory<>(configProps,
+                new StringDeserializer(), new MovieMessageDeserializer());
     }
 
+    /**
+     * Фабрика по умолчанию для @KafkaListener без containerFactory. Число потоков - то же
+     * kafka.consumer.concurrency, что и у batch-фабрики
+     */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+    public ConcurrentKafkaListenerContainerFactory<String, MovieRecord> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, MovieRecord> factory =
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
-        factory.setConcurrency(3); // Количество потоков для обработки сообщений
+        factory.setConcurrency(listenerConcurrency);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
         return factory;
     }
-}
\ No newline at end of file
+
+    /**
+     * Batch-фабрика: слушатель получает весь результат poll() (до MAX_POLL_RECORDS) одним списком.
+     * Подтверждение ручное: слушатель подтверждает пачку только после ее обработки,
+     * в том числе из другого потока - контейнер закоммитит оффсеты на следующем poll().
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, MovieRecord> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, MovieRecord> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(listenerConcurrency);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    // ========== INGEST WORK (распределенная выгрузка каталога) ==========
+
+    @Bean
+    public NewTopic ingestWorkTopic() {
+        return TopicBuilder.name(ingestWorkTopic)
+                .partitions(ingestWorkPartitions)
+                .build();
+    }
+
+    @Bean
+    public ProducerFactory<String, IngestWorkItem> ingestWorkProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        JsonSerializer<IngestWorkItem> valueSerializer = new JsonSerializer<>();
+        valueSerializer.setAddTypeInfo(false);
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer);
+    }
+
+    @Bean
+    public KafkaTemplate<String, IngestWorkItem> ingestWorkKafkaTemplate() {
+        return new KafkaTemplate<>(ingestWorkProducerFactory());
+    }
+
+    /**
+     * Нечитаемое задание приходит в обработчик ошибок как DeserializationException и не повторяется
+     */
+    @Bean
+    public ConsumerFactory<String, IngestWorkItem> ingestWorkConsumerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // Одно задание - до 20 запросов к API под общим лимитом, большие poll() не нужны
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 10);
+        configProps.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 600000);
+        return new DefaultKafkaConsumerFactory<>(configProps, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new JsonDeserializer<>(IngestWorkItem.class, false)));
+    }
+
+    /**
+     * Задание подтверждается сразу после обработки. Ошибка повторяется max-attempts раз
+     * с паузой retry-backoff-ms, затем срез помечается FAILED и задание пропускается.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, IngestWorkItem> ingestWorkListenerContainerFactory(
+            CatalogBackfillService backfillService) {
+        ConcurrentKafkaListenerContainerFactory<String, IngestWorkItem> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(ingestWorkConsumerFactory());
+        factory.setConcurrency(ingestWorkerConcurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.setCommonErrorHandler(new DefaultErrorHandler((record, error) -> {
+            if (record.value() instanceof IngestWorkItem item) {
+                backfillService.markWorkFailed(item, error);
+            }
+        }, new FixedBackOff(ingestWorkRetryBackoffMs, Math.max(0, ingestWorkMaxAttempts - 1))));
+        return factory;
+    }
+}
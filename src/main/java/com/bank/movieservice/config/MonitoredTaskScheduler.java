@@ -0,0 +1,257 @@
+package com.bank.movieservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+import org.springframework.util.ClassUtils;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Пул задач @Scheduled с метриками и защитой от наложения запусков.
+ *
+ * Каждая задача оборачивается в MonitoredTask с именем "Класс.метод". Сама с собой задача
+ * не пересекается: следующий запуск cron/fixed-delay планируется после завершения предыдущего,
+ * а время срабатывания cron, прошедшее за время запуска, планировщик просто пропускает -
+ * такие срабатывания считает обертка триггера (MissedFireCountingTrigger). Если одна задача
+ * зарегистрирована несколько раз и запуск с тем же именем еще идет, тик тоже пропускается.
+ * Задержку в очереди (насколько запуск опоздал относительно запланированного времени)
+ * измеряет обертка задачи в самом ScheduledThreadPoolExecutor.
+ *
+ * Метрики: scheduler.task.duration{task}, scheduler.task.queue.delay{task},
+ * scheduler.task.skipped{task}, scheduler.pool.active, scheduler.pool.queue.
+ */
+public class MonitoredTaskScheduler extends ThreadPoolTaskScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(MonitoredTaskScheduler.class);
+
+    // Опоздание текущего запуска: выставляет обертка исполнителя, читает MonitoredTask в том же потоке
+    private static final ThreadLocal<Long> QUEUE_DELAY_NANOS = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicBoolean> runningTasks = new ConcurrentHashMap<>();
+
+    public MonitoredTaskScheduler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected ScheduledExecutorService createExecutor(int poolSize, ThreadFactory threadFactory,
+                                                      RejectedExecutionHandler rejectedExecutionHandler) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(poolSize, threadFactory,
+                rejectedExecutionHandler) {
+            @Override
+            protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task) {
+                return new QueueDelayAwareFuture<>(task);
+            }
+        };
+        meterRegistry.gauge("scheduler.pool.active", executor, ScheduledThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge("scheduler.pool.queue", executor, e -> e.getQueue().size());
+        return executor;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        Runnable monitored = monitor(task);
+        if (monitored instanceof MonitoredTask monitoredTask && !(trigger instanceof MissedFireCountingTrigger)) {
+            trigger = new MissedFireCountingTrigger(trigger, monitoredTask);
+        }
+        return super.schedule(monitored, trigger);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+        return super.schedule(monitor(task), startTime);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+        return super.scheduleAtFixedRate(monitor(task), startTime, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+        return super.scheduleAtFixedRate(monitor(task), period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+        return super.scheduleWithFixedDelay(monitor(task), startTime, delay);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        return super.scheduleWithFixedDelay(monitor(task), delay);
+    }
+
+    private Runnable monitor(Runnable task) {
+        return task instanceof MonitoredTask ? task : new MonitoredTask(taskName(task), task);
+    }
+
+    static String taskName(Runnable task) {
+        if (task instanceof ScheduledMethodRunnable scheduled) {
+            return ClassUtils.getUserClass(scheduled.getTarget()).getSimpleName()
+                    + "." + scheduled.getMethod().getName();
+        }
+        return task.getClass().getSimpleName();
+    }
+
+    private final class MonitoredTask implements Runnable {
+        private final String name;
+        private final Runnable delegate;
+        private final AtomicBoolean running;
+        private final Timer durationTimer;
+        private final Timer queueDelayTimer;
+        private final Counter skippedCounter;
+
+        private MonitoredTask(String name, Runnable delegate) {
+            this.name = name;
+            this.delegate = delegate;
+            // Общий флаг для всех регистраций задачи с этим именем
+            this.running = runningTasks.computeIfAbsent(name, key -> new AtomicBoolean());
+            this.durationTimer = Timer.builder("scheduler.task.duration")
+                    .description("Длительность одного запуска задачи планировщика")
+                    .tag("task", name)
+                    .register(meterRegistry);
+            this.queueDelayTimer = Timer.builder("scheduler.task.queue.delay")
+                    .description("Опоздание запуска относительно запланированного времени")
+                    .tag("task", name)
+                    .register(meterRegistry);
+            this.skippedCounter = Counter.builder("scheduler.task.skipped")
+                    .description("Срабатывания, пропущенные из-за незавершенного предыдущего запуска")
+                    .tag("task", name)
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public void run() {
+            Long queueDelay = QUEUE_DELAY_NANOS.get();
+            if (queueDelay != null) {
+                queueDelayTimer.record(queueDelay, TimeUnit.NANOSECONDS);
+            }
+
+            if (!running.compareAndSet(false, true)) {
+                skippedCounter.increment();
+                log.warn("⏭️ Задача {} еще выполняется, тик пропущен", name);
+                return;
+            }
+            try {
+                durationTimer.record(delegate);
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * Триггер, который считает пропущенные срабатывания: времена исходного триггера между
+     * запланированным началом прошлого запуска и его завершением. Следующее время выбирает
+     * исходный триггер - расписание не меняется.
+     */
+    private static final class MissedFireCountingTrigger implements Trigger {
+        // Защита от бесконечного перебора для триггера с очень частыми срабатываниями
+        private static final int MAX_COUNTED = 10_000;
+
+        private final Trigger delegate;
+        private final MonitoredTask task;
+
+        private MissedFireCountingTrigger(Trigger delegate, MonitoredTask task) {
+            this.delegate = delegate;
+            this.task = task;
+        }
+
+        @Override
+        public Date nextExecutionTime(TriggerContext context) {
+            Date scheduled = context.lastScheduledExecutionTime();
+            Date completed = context.lastCompletionTime();
+            if (scheduled != null && completed != null) {
+                int missed = 0;
+                Date fire = scheduled;
+                while (missed < MAX_COUNTED) {
+                    fire = delegate.nextExecutionTime(new SimpleTriggerContext(fire, fire, fire));
+                    if (fire == null || fire.after(completed)) {
+                        break;
+                    }
+                    missed++;
+                }
+                if (missed > 0) {
+                    task.skippedCounter.increment(missed);
+                    log.warn("⏭️ Задача {} выполнялась дольше интервала, пропущено срабатываний: {}",
+                            task.name, missed);
+                }
+            }
+            return delegate.nextExecutionTime(context);
+        }
+    }
+
+    /**
+     * Обертка задачи исполнителя: перед запуском запоминает, насколько он опоздал.
+     * Для периодических задач исполнитель возвращает в очередь эту же обертку.
+     */
+    private static final class QueueDelayAwareFuture<V> implements RunnableScheduledFuture<V> {
+        private final RunnableScheduledFuture<V> task;
+
+        private QueueDelayAwareFuture(RunnableScheduledFuture<V> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            QUEUE_DELAY_NANOS.set(Math.max(0, -task.getDelay(TimeUnit.NANOSECONDS)));
+            try {
+                task.run();
+            } finally {
+                QUEUE_DELAY_NANOS.remove();
+            }
+        }
+
+        @Override
+        public boolean isPeriodic() { return task.isPeriodic(); }
+
+        @Override
+        public long getDelay(TimeUnit unit) { return task.getDelay(unit); }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Delayed unwrapped = other instanceof QueueDelayAwareFuture<?> wrapper ? wrapper.task : other;
+            return task.compareTo(unwrapped);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) { return task.cancel(mayInterruptIfRunning); }
+
+        @Override
+        public boolean isCancelled() { return task.isCancelled(); }
+
+        @Override
+        public boolean isDone() { return task.isDone(); }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException { return task.get(); }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+    }
+}
@@ -1,11 +1,36 @@
 package com.bank.movieservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
 @EnableScheduling
 @ConditionalOnProperty(name = "scheduler.enabled", matchIfMissing = true)
 public class SchedulingConfig {
+
+    // Долгий запуск планировщика фильмов не должен задерживать relay outbox и автоскейлинг слушателя
+    @Value("${scheduler.pool-size:4}")
+    private int poolSize;
+
+    @Value("${scheduler.await-termination-seconds:30}")
+    private int awaitTerminationSeconds;
+
+    /**
+     * Общий пул для всех @Scheduled задач (имя taskScheduler ищет ScheduledAnnotationBeanPostProcessor)
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(MeterRegistry meterRegistry) {
+        ThreadPoolTaskScheduler scheduler = new MonitoredTaskScheduler(meterRegistry);
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduled-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        return scheduler;
+    }
 }
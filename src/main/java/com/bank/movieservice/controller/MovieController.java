@@ -3,7 +3,9 @@ package com.bank.movieservice.controller;
 import com.bank.movieservice.DTO.response.MovieResponse;
 import com.bank.movieservice.DTO.response.MovieSearchResponseDTO;
 import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.service.CatalogBackfillService;
 import com.bank.movieservice.service.KinopoiskService;
+import com.bank.movieservice.service.EmailDispatcher;
 import com.bank.movieservice.service.EmailService;
 import com.bank.movieservice.service.MovieService;
 import lombok.RequiredArgsConstructor;
@@ -12,13 +14,21 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api")
@@ -27,7 +37,9 @@ public class MovieController {
 
     private final KinopoiskService kinopoiskService;
     private final EmailService emailService;
+    private final EmailDispatcher emailDispatcher;
     private final MovieService movieService;
+    private final CatalogBackfillService catalogBackfillService;
 
     // Поиск фильмов в Кинопоиске и сохранение в БД
     @GetMapping("/v2/films")
@@ -123,28 +135,61 @@ public class MovieController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
-    // Поиск фильмов по названию (новая ручка)
+    // Поиск фильмов по названию (новая ручка), fuzzy=true - с учетом опечаток
     @GetMapping("/movies/search")
-    public ResponseEntity<List<MovieSearchResponseDTO>> searchMovies(@RequestParam String query) {
+    public ResponseEntity<List<MovieSearchResponseDTO>> searchMovies(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
         if (query == null || query.trim().isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
 
-        List<MovieSearchResponseDTO> results = movieService.searchMoviesByName(query);
+        List<MovieSearchResponseDTO> results = fuzzy
+                ? movieService.fuzzySearchMoviesByName(query)
+                : movieService.searchMoviesByName(query);
         return ResponseEntity.ok(results);
     }
 
+    // Запуск полной выгрузки каталога Кинопоиска (продолжает с последней контрольной точки)
+    @PostMapping("/movies/backfill")
+    public ResponseEntity<CatalogBackfillService.Progress> startBackfill() {
+        boolean started = catalogBackfillService.start();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(catalogBackfillService.progress());
+    }
+
+    // Прогресс полной выгрузки: срезы, скорость и оценка оставшегося времени
+    @GetMapping("/movies/backfill")
+    public ResponseEntity<CatalogBackfillService.Progress> getBackfillProgress() {
+        return ResponseEntity.ok(catalogBackfillService.progress());
+    }
+
     // Генерация отчетов с обработкой null-safety
     @GetMapping("/reports/csv")
-    public ResponseEntity<String> generateCsvReport(
+    public ResponseEntity<?> generateCsvReport(
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false) Integer yearFrom,
             @RequestParam(required = false) Integer yearTo,
             @RequestParam(required = false) Double ratingFrom,
-            @RequestParam(required = false) Double ratingTo) {
+            @RequestParam(required = false) Double ratingTo,
+            @RequestParam(defaultValue = "false") boolean parallel) {
 
         try {
             BigDecimal ratingFromBigDecimal = ratingFrom != null ? BigDecimal.valueOf(ratingFrom) : null;
+            if (parallel) {
+                // Большие выгрузки: партиции пишутся в ответ по мере готовности, отчет целиком
+                // в памяти не собирается. Ошибка посреди потока обрывает ответ - статус уже отправлен
+                StreamingResponseBody body = out -> {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    emailService.writeCsvReportParallel(keyword, yearFrom, yearTo, ratingFromBigDecimal, ratingTo, writer);
+                    writer.flush();
+                };
+                return ResponseEntity.ok()
+                        .header("Content-Type", "text/csv; charset=UTF-8")
+                        .header("Content-Disposition", "attachment; filename=movies_report.csv")
+                        .body(body);
+            }
+
             String csv = emailService.generateCsvReport(keyword, yearFrom, yearTo, ratingFromBigDecimal, ratingTo);
 
             return ResponseEntity.ok()
@@ -180,7 +225,7 @@ public class MovieController {
     }
 
     @PostMapping("/reports/send")
-    public ResponseEntity<String> sendReportByEmail(
+    public CompletableFuture<ResponseEntity<String>> sendReportByEmail(
             @RequestParam String email,
             @RequestParam String reportType,
             @RequestParam(required = false) String keyword,
@@ -192,12 +237,12 @@ public class MovieController {
         try {
             // Валидация email
             if (email == null || email.trim().isEmpty() || !email.contains("@")) {
-                return ResponseEntity.badRequest().body("Invalid email address");
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Invalid email address"));
             }
 
             // Валидация типа отчета
             if (reportType == null || reportType.trim().isEmpty()) {
-                return ResponseEntity.badRequest().body("Report type is required");
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Report type is required"));
             }
 
             String reportContent;
@@ -208,15 +253,22 @@ public class MovieController {
             } else if ("xml".equalsIgnoreCase(reportType)) {
                 reportContent = emailService.generateXmlReport(keyword, yearFrom, yearTo, ratingFromBigDecimal, ratingTo);
             } else {
-                return ResponseEntity.badRequest().body("Invalid report type. Use 'csv' or 'xml'");
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.badRequest().body("Invalid report type. Use 'csv' or 'xml'"));
             }
 
-            emailService.sendReportByEmail(email, "Movies Report - " + reportType, reportContent, reportType);
-            return ResponseEntity.ok("Report sent successfully to " + email);
+            // Отправка идет в пуле EmailDispatcher, поток Tomcat освобождается сразу
+            return emailDispatcher.submit(email, "Movies Report - " + reportType, reportContent, reportType)
+                    .thenApply(sent -> ResponseEntity.ok("Report sent successfully to " + email))
+                    .exceptionally(e -> {
+                        // Причина приходит обернутой в CompletionException
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        return ResponseEntity.internalServerError().body("Error sending report: " + cause.getMessage());
+                    });
 
         } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body("Error sending report: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError()
+                    .body("Error sending report: " + e.getMessage()));
         }
     }
 }
@@ -0,0 +1,109 @@
+package com.bank.movieservice.entity;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Срез полной выгрузки каталога и его контрольная точка.
+ * После каждой обработанной страницы сохраняется next_page, поэтому перезапуск
+ * продолжает срез с места остановки.
+ */
+@Entity
+@Table(name = "backfill_partitions")
+public class BackfillPartition {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    @Id
+    @Column(name = "partition_key", length = 255)
+    private String partitionKey;
+
+    @Column(name = "genre", nullable = false, length = 100)
+    private String genre;
+
+    @Column(name = "year_from", nullable = false)
+    private int yearFrom;
+
+    @Column(name = "year_to", nullable = false)
+    private int yearTo;
+
+    @Column(name = "rating_from", nullable = false, precision = 3, scale = 1)
+    private BigDecimal ratingFrom;
+
+    @Column(name = "rating_to", nullable = false, precision = 3, scale = 1)
+    private BigDecimal ratingTo;
+
+    @Column(name = "next_page", nullable = false)
+    private int nextPage = 1;
+
+    // Известно после первой страницы
+    @Column(name = "total_pages")
+    private Integer totalPages;
+
+    @Column(name = "films_seen", nullable = false)
+    private long filmsSeen;
+
+    @Column(name = "films_saved", nullable = false)
+    private long filmsSaved;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "error", length = 500)
+    private String error;
+
+    // Конструкторы
+    public BackfillPartition() {}
+
+    public BackfillPartition(String genre, int yearFrom, int yearTo, BigDecimal ratingFrom, BigDecimal ratingTo) {
+        this.partitionKey = keyOf(genre, yearFrom, yearTo, ratingFrom, ratingTo);
+        this.genre = genre;
+        this.yearFrom = yearFrom;
+        this.yearTo = yearTo;
+        this.ratingFrom = ratingFrom;
+        this.ratingTo = ratingTo;
+    }
+
+    public static String keyOf(String genre, int yearFrom, int yearTo, BigDecimal ratingFrom, BigDecimal ratingTo) {
+        return genre + "|" + yearFrom + "-" + yearTo + "|" + ratingFrom.toPlainString() + "-" + ratingTo.toPlainString();
+    }
+
+    // Геттеры и сеттеры
+    public String getPartitionKey() { return partitionKey; }
+
+    public String getGenre() { return genre; }
+
+    public int getYearFrom() { return yearFrom; }
+
+    public int getYearTo() { return yearTo; }
+
+    public BigDecimal getRatingFrom() { return ratingFrom; }
+
+    public BigDecimal getRatingTo() { return ratingTo; }
+
+    public int getNextPage() { return nextPage; }
+    public void setNextPage(int nextPage) { this.nextPage = nextPage; }
+
+    public Integer getTotalPages() { return totalPages; }
+    public void setTotalPages(Integer totalPages) { this.totalPages = totalPages; }
+
+    public long getFilmsSeen() { return filmsSeen; }
+    public void setFilmsSeen(long filmsSeen) { this.filmsSeen = filmsSeen; }
+
+    public long getFilmsSaved() { return filmsSaved; }
+    public void setFilmsSaved(long filmsSaved) { this.filmsSaved = filmsSaved; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
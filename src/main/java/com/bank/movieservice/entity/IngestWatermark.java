@@ -0,0 +1,66 @@
+package com.bank.movieservice.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Водяной знак одного запроса планировщика (жанр + срез лет и рейтинга)
+ */
+@Entity
+@Table(name = "ingest_watermarks")
+public class IngestWatermark {
+
+    @Id
+    @Column(name = "query_key", length = 255)
+    private String queryKey;
+
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+
+    // Раньше этого времени запрос к API не выполняется
+    @Column(name = "next_run_at")
+    private LocalDateTime nextRunAt;
+
+    // Отпечаток списка filmId из последнего ответа: совпал - обрабатывать нечего
+    @Column(name = "film_ids_hash", length = 64)
+    private String filmIdsHash;
+
+    @Column(name = "last_film_count", nullable = false)
+    private int lastFilmCount;
+
+    @Column(name = "total_saved", nullable = false)
+    private long totalSaved;
+
+    // Запусков подряд без новых фильмов - от них зависит интервал до следующего
+    @Column(name = "empty_runs", nullable = false)
+    private int emptyRuns;
+
+    // Конструкторы
+    public IngestWatermark() {}
+
+    public IngestWatermark(String queryKey) {
+        this.queryKey = queryKey;
+    }
+
+    // Геттеры и сеттеры
+    public String getQueryKey() { return queryKey; }
+    public void setQueryKey(String queryKey) { this.queryKey = queryKey; }
+
+    public LocalDateTime getLastRunAt() { return lastRunAt; }
+    public void setLastRunAt(LocalDateTime lastRunAt) { this.lastRunAt = lastRunAt; }
+
+    public LocalDateTime getNextRunAt() { return nextRunAt; }
+    public void setNextRunAt(LocalDateTime nextRunAt) { this.nextRunAt = nextRunAt; }
+
+    public String getFilmIdsHash() { return filmIdsHash; }
+    public void setFilmIdsHash(String filmIdsHash) { this.filmIdsHash = filmIdsHash; }
+
+    public int getLastFilmCount() { return lastFilmCount; }
+    public void setLastFilmCount(int lastFilmCount) { this.lastFilmCount = lastFilmCount; }
+
+    public long getTotalSaved() { return totalSaved; }
+    public void setTotalSaved(long totalSaved) { this.totalSaved = totalSaved; }
+
+    public int getEmptyRuns() { return emptyRuns; }
+    public void setEmptyRuns(int emptyRuns) { this.emptyRuns = emptyRuns; }
+}
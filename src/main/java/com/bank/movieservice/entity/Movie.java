@@ -2,6 +2,7 @@ package com.bank.movieservice.entity;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -29,6 +30,15 @@ public class Movie {
     @Column(columnDefinition = "TEXT")
     private String description;
 
+    // Увеличивается при каждом изменении фильма, публикуется в claim-check сообщениях
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Когда фильм поставлен в дайджест; null - еще не отправлялся
+    @Column(name = "digest_sent_at")
+    private LocalDateTime digestSentAt;
+
     // Жанры хранятся в фильме - просто связь
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
@@ -69,6 +79,11 @@ public class Movie {
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
 
+    public Long getVersion() { return version; }
+
+    public LocalDateTime getDigestSentAt() { return digestSentAt; }
+    public void setDigestSentAt(LocalDateTime digestSentAt) { this.digestSentAt = digestSentAt; }
+
     // ТОЛЬКО ГЕТТЕР для жанров - получаем существующие
     public Set<Genre> getGenres() {
         return genres;
@@ -0,0 +1,62 @@
+package com.bank.movieservice.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Событие "фильм сохранен" в outbox. Данные фильма не копируются:
+ * relay читает актуальную версию фильма в момент отправки.
+ */
+@Entity
+@Table(name = "movie_outbox")
+public class MovieOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "film_id", nullable = false)
+    private Long filmId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // null - событие еще не подтверждено брокером
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    // Неудачные попытки отправки
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    // null - можно отправлять сразу, иначе не раньше этого времени
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // Не null - попытки исчерпаны, событие ждет разбора
+    @Column(name = "parked_at")
+    private LocalDateTime parkedAt;
+
+    // Конструкторы
+    public MovieOutboxEvent() {}
+
+    public MovieOutboxEvent(Long filmId, LocalDateTime createdAt) {
+        this.filmId = filmId;
+        this.createdAt = createdAt;
+    }
+
+    // Геттеры
+    public Long getId() { return id; }
+
+    public Long getFilmId() { return filmId; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getPublishedAt() { return publishedAt; }
+
+    public int getAttempts() { return attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+
+    public LocalDateTime getParkedAt() { return parkedAt; }
+}
@@ -0,0 +1,39 @@
+package com.bank.movieservice.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Аренда задачи планировщика. Строки меняются только условными UPDATE/INSERT
+ * из SchedulerLockRepository, сущность нужна для JPQL и чтения состояния.
+ */
+@Entity
+@Table(name = "scheduler_locks")
+public class SchedulerLock {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    // После этого момента аренда считается брошенной и ее может забрать другой узел
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "locked_at", nullable = false)
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_by", nullable = false)
+    private String lockedBy;
+
+    // Конструкторы
+    public SchedulerLock() {}
+
+    // Геттеры
+    public String getName() { return name; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+
+    public LocalDateTime getLockedAt() { return lockedAt; }
+
+    public String getLockedBy() { return lockedBy; }
+}
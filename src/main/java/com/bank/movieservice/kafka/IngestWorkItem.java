@@ -0,0 +1,30 @@
+package com.bank.movieservice.kafka;
+
+import com.bank.movieservice.entity.BackfillPartition;
+
+/**
+ * Задание распределенной выгрузки: одна страница поиска одного среза каталога.
+ * Публикуется в ingest-work топик с ключом partitionKey, поэтому страницы среза
+ * обрабатываются по порядку одним консьюмером группы.
+ *
+ * Параметры среза дублируются для читаемости топика, обработчик берет их из backfill_partitions.
+ */
+public record IngestWorkItem(String partitionKey,
+                             String genre,
+                             int yearFrom,
+                             int yearTo,
+                             double ratingFrom,
+                             double ratingTo,
+                             int page) {
+
+    public static IngestWorkItem of(BackfillPartition partition) {
+        return new IngestWorkItem(partition.getPartitionKey(), partition.getGenre(),
+                partition.getYearFrom(), partition.getYearTo(),
+                partition.getRatingFrom().doubleValue(), partition.getRatingTo().doubleValue(),
+                partition.getNextPage());
+    }
+
+    public IngestWorkItem nextPage() {
+        return new IngestWorkItem(partitionKey, genre, yearFrom, yearTo, ratingFrom, ratingTo, page + 1);
+    }
+}
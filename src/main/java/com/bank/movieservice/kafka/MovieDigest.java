@@ -0,0 +1,138 @@
+package com.bank.movieservice.kafka;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Дайджест фильмов одного получателя за одно окно Kafka Streams.
+ *
+ * В окне копятся только claim-check ссылки (filmId и version): значение целиком
+ * перезаписывается в RocksDB и changelog на каждый фильм, а полные данные подставит
+ * MovieRecordResolver при отправке. Фильм с уже встречавшимся filmId не добавляется
+ * повторно, сверх лимита фильмы только считаются в dropped.
+ *
+ * Окно собирается по частям (корзинам filmId), buckets - номера уже слитых частей.
+ * После отправки в хранилище сборки остается только метка окна с sentAt, а часть, пришедшая
+ * позже, отправляется отдельно с followUp = true.
+ */
+public class MovieDigest {
+
+    private String recipient;
+    private long windowStart;
+    private List<MovieRecord> movies = new ArrayList<>();
+    private int dropped;
+    private Set<Integer> buckets = new TreeSet<>();
+    // Когда пришла первая часть окна (время экземпляра), 0 - часть еще не слита
+    private long firstPartAt;
+    // Когда дайджест окна отправлен, 0 - еще собирается
+    private long sentAt;
+    private boolean followUp;
+
+    // Индекс filmId для проверки повторов, строится заново после чтения из хранилища
+    @JsonIgnore
+    private Set<Long> filmIds;
+
+    public MovieDigest() {}
+
+    public MovieDigest add(MovieRecord movie, int maxMovies) {
+        Long filmId = movie.filmId();
+        if (filmId != null && filmIds().contains(filmId)) {
+            return this;
+        }
+        if (movies.size() >= maxMovies) {
+            dropped++;
+            return this;
+        }
+        if (filmId != null) {
+            filmIds.add(filmId);
+            movies.add(MovieRecord.reference(filmId, movie.version()));
+        } else {
+            movies.add(movie);
+        }
+        return this;
+    }
+
+    /**
+     * Слить часть окна из других корзин. Корзины не пересекаются по filmId
+     */
+    public MovieDigest merge(MovieDigest part) {
+        movies.addAll(part.movies);
+        dropped += part.dropped;
+        buckets.addAll(part.buckets);
+        filmIds = null;
+        return this;
+    }
+
+    /**
+     * Часть окна из одной корзины
+     */
+    public MovieDigest asPart(String recipient, long windowStart, int bucket) {
+        buckets.add(bucket);
+        return withWindow(recipient, windowStart);
+    }
+
+    /**
+     * Метка отправленного окна: корзины и время отправки, без фильмов
+     */
+    public MovieDigest sentMarker(long sentAt) {
+        MovieDigest marker = new MovieDigest().withWindow(recipient, windowStart);
+        marker.buckets.addAll(buckets);
+        marker.sentAt = sentAt;
+        return marker;
+    }
+
+    @JsonIgnore
+    public boolean isSent() {
+        return sentAt > 0;
+    }
+
+    public MovieDigest withWindow(String recipient, long windowStart) {
+        this.recipient = recipient;
+        this.windowStart = windowStart;
+        return this;
+    }
+
+    private Set<Long> filmIds() {
+        if (filmIds == null) {
+            filmIds = new HashSet<>(movies.size() * 2);
+            for (MovieRecord movie : movies) {
+                if (movie.filmId() != null) {
+                    filmIds.add(movie.filmId());
+                }
+            }
+        }
+        return filmIds;
+    }
+
+    public String getRecipient() { return recipient; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+
+    public long getWindowStart() { return windowStart; }
+    public void setWindowStart(long windowStart) { this.windowStart = windowStart; }
+
+    public List<MovieRecord> getMovies() { return movies; }
+    public void setMovies(List<MovieRecord> movies) {
+        this.movies = movies;
+        this.filmIds = null;
+    }
+
+    public int getDropped() { return dropped; }
+    public void setDropped(int dropped) { this.dropped = dropped; }
+
+    public Set<Integer> getBuckets() { return buckets; }
+    public void setBuckets(Set<Integer> buckets) { this.buckets = buckets; }
+
+    public long getFirstPartAt() { return firstPartAt; }
+    public void setFirstPartAt(long firstPartAt) { this.firstPartAt = firstPartAt; }
+
+    public long getSentAt() { return sentAt; }
+    public void setSentAt(long sentAt) { this.sentAt = sentAt; }
+
+    public boolean isFollowUp() { return followUp; }
+    public void setFollowUp(boolean followUp) { this.followUp = followUp; }
+}
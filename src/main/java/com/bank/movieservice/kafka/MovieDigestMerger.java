@@ -0,0 +1,114 @@
+package com.bank.movieservice.kafka;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сборка дайджеста окна из частей по корзинам filmId.
+ *
+ * Части приходят с ключом "получатель@начало окна" по мере закрытия окна в каждой корзине.
+ * Дайджест отправляется дальше, когда слиты все корзины, либо по таймеру времени экземпляра,
+ * если с первой части прошло merge-timeout: в корзину без фильмов часть не придет вовсе,
+ * а корзина на отстающей партиции закроет окно позже остальных.
+ *
+ * После отправки в хранилище остается метка окна (sentAt и слитые корзины) до конца
+ * retention окна. Часть, пришедшая после отправки, не начинает новый дайджест: повтор уже
+ * слитой корзины отбрасывается, а фильмы новой корзины уходят отдельным дополнением
+ * (followUp) с предупреждением в логе.
+ */
+public class MovieDigestMerger implements Transformer<String, MovieDigest, KeyValue<String, MovieDigest>> {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieDigestMerger.class);
+
+    private final String storeName;
+    private final int buckets;
+    private final Duration mergeTimeout;
+    private final Duration retention;
+
+    private ProcessorContext context;
+    private KeyValueStore<String, MovieDigest> store;
+
+    public MovieDigestMerger(String storeName, int buckets, Duration mergeTimeout, Duration retention) {
+        this.storeName = storeName;
+        this.buckets = buckets;
+        this.mergeTimeout = mergeTimeout;
+        this.retention = retention;
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.store = context.getStateStore(storeName);
+        context.schedule(mergeTimeout, PunctuationType.WALL_CLOCK_TIME, this::emitExpired);
+    }
+
+    @Override
+    public KeyValue<String, MovieDigest> transform(String key, MovieDigest part) {
+        MovieDigest merged = store.get(key);
+        if (merged != null && merged.isSent()) {
+            return lateParts(key, merged, part);
+        }
+        if (merged == null) {
+            merged = new MovieDigest().withWindow(part.getRecipient(), part.getWindowStart());
+            merged.setFirstPartAt(context.currentSystemTimeMs());
+        }
+        merged.merge(part);
+
+        if (merged.getBuckets().size() >= buckets) {
+            store.put(key, merged.sentMarker(context.currentSystemTimeMs()));
+            return KeyValue.pair(key, merged);
+        }
+        store.put(key, merged);
+        return null;
+    }
+
+    private KeyValue<String, MovieDigest> lateParts(String key, MovieDigest marker, MovieDigest part) {
+        if (marker.getBuckets().containsAll(part.getBuckets())) {
+            log.debug("Часть {} корзин {} уже в отправленном дайджесте, пропускаем", key, part.getBuckets());
+            return null;
+        }
+        marker.getBuckets().addAll(part.getBuckets());
+        store.put(key, marker);
+        log.warn("⚠️ Часть дайджеста {} (корзины {}, фильмов {}) пришла после отправки - уходит дополнением",
+                key, part.getBuckets(), part.getMovies().size());
+        part.setFollowUp(true);
+        return KeyValue.pair(key, part);
+    }
+
+    private void emitExpired(long now) {
+        List<KeyValue<String, MovieDigest>> expired = new ArrayList<>();
+        List<String> retired = new ArrayList<>();
+        try (KeyValueIterator<String, MovieDigest> iterator = store.all()) {
+            while (iterator.hasNext()) {
+                KeyValue<String, MovieDigest> entry = iterator.next();
+                if (entry.value.isSent()) {
+                    if (now - entry.value.getWindowStart() >= retention.toMillis()) {
+                        retired.add(entry.key);
+                    }
+                } else if (now - entry.value.getFirstPartAt() >= mergeTimeout.toMillis()) {
+                    expired.add(entry);
+                }
+            }
+        }
+        for (KeyValue<String, MovieDigest> entry : expired) {
+            store.put(entry.key, entry.value.sentMarker(now));
+            context.forward(entry.key, entry.value);
+        }
+        // Окно вышло за retention: его корзины больше не закроются, метка не нужна
+        retired.forEach(store::delete);
+    }
+
+    @Override
+    public void close() {
+    }
+}
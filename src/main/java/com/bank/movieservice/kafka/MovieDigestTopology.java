@@ -0,0 +1,100 @@
+package com.bank.movieservice.kafka;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.time.Duration;
+
+/**
+ * Топология Kafka Streams для ежедневного дайджеста.
+ *
+ * Фильмы из movie-topic группируются по получателю и корзине filmId ("получатель#корзина")
+ * и агрегируются в tumbling-окна (по умолчанию сутки по времени записи) в хранилище RocksDB.
+ * Корзины расходятся по партициям repartition-топика, поэтому агрегацию делят между собой
+ * экземпляры с одним application.id, а значение окна в каждой корзине ограничено
+ * max-movies / buckets ссылками - оно укладывается в max.message.bytes changelog-топика.
+ *
+ * Когда окно корзины закрывается, ее часть публикуется один раз, и MovieDigestMerger
+ * собирает части в один дайджест получателя для топика дайджестов. Окна и метки
+ * отправленных дайджестов хранятся retention: часть, опоздавшая после отправки, уходит
+ * дополнением, а не вторым дайджестом за тот же день.
+ *
+ * Ключ - получатель без жанра: как и MovieDigestBuffer, за день уходит одно письмо со всеми
+ * жанрами срезов дня (жанры фильма - колонка CSV). У фильма обычно несколько жанров, а срез,
+ * в котором его нашли, в сообщение не попадает, поэтому ключ по жанру либо повторял бы фильм
+ * в нескольких письмах, либо относил его к жанру произвольно.
+ *
+ * Окно закрывается по времени потока, а не по часам: suppress выпускает дайджест только
+ * когда в партицию корзины придет запись позже конца окна + grace. Если после окна
+ * фильмов нет, дайджест ждет следующей публикации - при ежедневной загрузке это
+ * следующий запуск планировщика.
+ */
+public final class MovieDigestTopology {
+
+    public static final String STORE_NAME = "movie-digest-store";
+    public static final String MERGE_STORE_NAME = "movie-digest-merge-store";
+
+    private MovieDigestTopology() {}
+
+    public static KStream<String, MovieDigest> build(StreamsBuilder builder, String movieTopic, String digestTopic,
+                                                     String recipient, Duration windowSize, Duration grace,
+                                                     int buckets, int maxMovies, Duration mergeTimeout,
+                                                     Duration retention) {
+        MovieMessageDeserializer movieDeserializer = new MovieMessageDeserializer();
+        SmileSerde<MovieDigest> digestSerde = new SmileSerde<>(MovieDigest.class);
+        int maxMoviesPerBucket = Math.max(1, maxMovies / buckets);
+
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(MERGE_STORE_NAME), Serdes.String(), digestSerde));
+
+        KStream<String, MovieDigest> digests = builder
+                .stream(movieTopic, Consumed.with(Serdes.String(), Serdes.ByteArray()))
+                // Нечитаемые сообщения отбрасываются, как в KafkaMovieListener
+                .mapValues(bytes -> movieDeserializer.deserialize(movieTopic, bytes))
+                .filter((filmId, movie) -> movie != null)
+                .groupBy((filmId, movie) -> recipient + "#" + bucketOf(movie, buckets),
+                        Grouped.with("movie-digest-by-bucket", Serdes.String(), new SmileSerde<>(MovieRecord.class)))
+                .windowedBy(TimeWindows.ofSizeAndGrace(windowSize, grace))
+                .aggregate(MovieDigest::new,
+                        (key, movie, digest) -> digest.add(movie, maxMoviesPerBucket),
+                        Materialized.<String, MovieDigest, WindowStore<Bytes, byte[]>>as(STORE_NAME)
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(digestSerde)
+                                .withRetention(retention))
+                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()))
+                .toStream()
+                .map((window, part) -> KeyValue.pair(recipient + "@" + window.window().start(),
+                        part.asPart(recipient, window.window().start(), bucketOf(window.key()))))
+                // Части одного окна - на одну партицию, к одному сборщику
+                .repartition(Repartitioned.<String, MovieDigest>as("movie-digest-parts")
+                        .withKeySerde(Serdes.String())
+                        .withValueSerde(digestSerde))
+                .transform(() -> new MovieDigestMerger(MERGE_STORE_NAME, buckets, mergeTimeout, retention), MERGE_STORE_NAME);
+
+        digests.to(digestTopic, Produced.with(Serdes.String(), digestSerde));
+        return digests;
+    }
+
+    /**
+     * Корзина по filmId; фильмы без filmId не дедуплицируются и идут в нулевую корзину
+     */
+    static int bucketOf(MovieRecord movie, int buckets) {
+        return movie.filmId() != null ? Math.floorMod(Long.hashCode(movie.filmId()), buckets) : 0;
+    }
+
+    private static int bucketOf(String bucketKey) {
+        return Integer.parseInt(bucketKey.substring(bucketKey.lastIndexOf('#') + 1));
+    }
+}
@@ -0,0 +1,51 @@
+package com.bank.movieservice.kafka;
+
+import com.bank.movieservice.entity.Genre;
+import com.bank.movieservice.entity.Movie;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сообщение о фильме, которое планировщик публикует в Kafka.
+ * Имена полей совпадают с прежним JSON, поэтому старые и новые консьюмеры читают его одинаково.
+ * В формате CLAIM_CHECK из сообщения отправляются только filmId и version.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieMessage {
+
+    private Long id;
+    private Long filmId;
+    private String filmName;
+    private Integer year;
+    private String rating;
+    private String description;
+    private List<String> genres;
+    private Long version;
+
+    public static MovieMessage from(Movie movie) {
+        List<String> genreNames = new ArrayList<>();
+        if (movie.getGenres() != null) {
+            for (Genre genre : movie.getGenres()) {
+                genreNames.add(genre.getName());
+            }
+        }
+        return MovieMessage.builder()
+                .id(movie.getId())
+                .filmId(movie.getFilmId())
+                .filmName(movie.getFilmName())
+                .year(movie.getYear())
+                .rating(movie.getRating() != null ? movie.getRating().toString() : "0.0")
+                .description(movie.getDescription())
+                .genres(genreNames)
+                .version(movie.getVersion())
+                .build();
+    }
+}
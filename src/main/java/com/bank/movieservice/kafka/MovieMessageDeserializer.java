@@ -0,0 +1,95 @@
+package com.bank.movieservice.kafka;
+
+import com.bank.movieservice.service.KafkaMovieListener.MovieData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Десериализатор сообщений о фильмах. Формат определяется по первому байту:
+ * заголовок MAGIC + версия - Smile, иначе - JSON старых продюсеров.
+ * Разобранный MovieData сразу нормализуется в неизменяемый MovieRecord.
+ *
+ * Нечитаемое сообщение не роняет контейнер: ошибка логируется, возвращается null,
+ * и слушатель пропускает такую запись.
+ */
+public class MovieMessageDeserializer implements Deserializer<MovieRecord> {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieMessageDeserializer.class);
+
+    // ObjectReader неизменяем и потокобезопасен - создаются один раз на десериализатор
+    private final ObjectReader smileReader = MovieMessageFormat.smileMapperV1().readerFor(MovieData.class);
+    private final ObjectReader jsonReader = new ObjectMapper().readerFor(MovieData.class);
+
+    @Override
+    public MovieRecord deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            log.warn("Получено пустое сообщение");
+            return null;
+        }
+
+        try {
+            if (MovieMessageFormat.hasHeader(data) && data[1] == MovieMessageFormat.CLAIM_CHECK_V1) {
+                return readClaimCheck(data);
+            }
+            MovieData movie = MovieMessageFormat.hasHeader(data) ? readSmile(data) : readJson(data);
+            return movie != null ? MovieRecord.from(movie) : null;
+        } catch (Exception e) {
+            log.error("❌ Ошибка разбора сообщения о фильме: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ссылка на фильм без данных - MovieRecord заполнится из БД при отправке дайджеста
+     */
+    private MovieRecord readClaimCheck(byte[] data) {
+        if (data.length != MovieMessageFormat.CLAIM_CHECK_LENGTH) {
+            log.error("❌ Неверная длина claim-check сообщения: {}", data.length);
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, MovieMessageFormat.HEADER_LENGTH, 2 * Long.BYTES);
+        return MovieRecord.reference(buffer.getLong(), buffer.getLong());
+    }
+
+    private MovieData readSmile(byte[] data) throws Exception {
+        byte version = data[1];
+        if (version != MovieMessageFormat.SMILE_V1) {
+            log.error("❌ Неизвестная версия формата сообщения: {}", version);
+            return null;
+        }
+        return smileReader.readValue(data, MovieMessageFormat.HEADER_LENGTH,
+                data.length - MovieMessageFormat.HEADER_LENGTH);
+    }
+
+    /**
+     * JSON разбирается прямо из байтов записи: BOM и пробелы по краям пропускаются
+     * сдвигом границ, без промежуточной String и ее копий после trim()
+     */
+    private MovieData readJson(byte[] data) throws Exception {
+        int start = 0;
+        int end = data.length;
+        if (end >= 3 && data[0] == (byte) 0xEF && data[1] == (byte) 0xBB && data[2] == (byte) 0xBF) {
+            start = 3;
+        }
+        while (start < end && isJsonWhitespace(data[start])) {
+            start++;
+        }
+        while (end > start && isJsonWhitespace(data[end - 1])) {
+            end--;
+        }
+        if (start == end) {
+            log.warn("Получен пустой JSON");
+            return null;
+        }
+        return jsonReader.readValue(data, start, end - start);
+    }
+
+    private static boolean isJsonWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,53 @@
+package com.bank.movieservice.kafka;
+
+import com.bank.movieservice.service.KafkaMovieListener.MovieData;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Формат значения сообщения о фильме в Kafka.
+ *
+ * Бинарное сообщение начинается с заголовка из двух байт: MAGIC и версия схемы,
+ * дальше идет Smile. Байт 0xFF не встречается в UTF-8, поэтому JSON от старых
+ * продюсеров (в том числе с BOM) по первому байту отличается от бинарного сообщения.
+ *
+ * Схема Smile v1 - позиционный массив без имен полей в порядке SchemaV1.
+ * Новые поля добавляются только в конец массива, иначе нужна новая версия.
+ * Claim-check v1 - два long в big-endian: filmId и version.
+ */
+public enum MovieMessageFormat {
+
+    JSON,
+    SMILE,
+    // Только ссылка на фильм: filmId и version, остальное консьюмер берет из БД
+    CLAIM_CHECK;
+
+    public static final byte MAGIC = (byte) 0xFF;
+    public static final byte SMILE_V1 = 1;
+    public static final byte CLAIM_CHECK_V1 = 2;
+    public static final int HEADER_LENGTH = 2;
+    // Заголовок + filmId + version
+    public static final int CLAIM_CHECK_LENGTH = HEADER_LENGTH + 2 * Long.BYTES;
+
+    public static boolean hasHeader(byte[] data) {
+        return data.length >= HEADER_LENGTH && data[0] == MAGIC;
+    }
+
+    /**
+     * Smile-маппер схемы v1: и MovieMessage, и MovieData пишутся/читаются как массив полей
+     */
+    static ObjectMapper smileMapperV1() {
+        return new ObjectMapper(new SmileFactory())
+                .addMixIn(MovieMessage.class, SchemaV1.class)
+                .addMixIn(MovieData.class, SchemaV1.class);
+    }
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonIgnoreProperties({"version"})
+    @JsonPropertyOrder({"id", "filmId", "filmName", "year", "rating", "description", "genres"})
+    private interface SchemaV1 {
+    }
+}
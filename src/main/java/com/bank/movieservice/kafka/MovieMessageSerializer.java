@@ -0,0 +1,62 @@
+package com.bank.movieservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Сериализатор сообщений о фильмах: Smile с заголовком версии, claim-check ссылка
+ * или, на время миграции, обычный JSON. ObjectWriter потокобезопасен и создается один раз.
+ */
+public class MovieMessageSerializer implements Serializer<MovieMessage> {
+
+    private final MovieMessageFormat format;
+    private final ObjectWriter writer;
+
+    public MovieMessageSerializer() {
+        this(MovieMessageFormat.SMILE);
+    }
+
+    public MovieMessageSerializer(MovieMessageFormat format) {
+        this.format = format;
+        ObjectMapper mapper = format == MovieMessageFormat.JSON
+                ? new ObjectMapper()
+                : MovieMessageFormat.smileMapperV1();
+        this.writer = mapper.writerFor(MovieMessage.class);
+    }
+
+    @Override
+    public byte[] serialize(String topic, MovieMessage message) {
+        if (message == null) {
+            return null;
+        }
+        try {
+            if (format == MovieMessageFormat.JSON) {
+                return writer.writeValueAsBytes(message);
+            }
+            if (format == MovieMessageFormat.CLAIM_CHECK) {
+                return ByteBuffer.allocate(MovieMessageFormat.CLAIM_CHECK_LENGTH)
+                        .put(MovieMessageFormat.MAGIC)
+                        .put(MovieMessageFormat.CLAIM_CHECK_V1)
+                        .putLong(message.getFilmId())
+                        .putLong(message.getVersion() != null ? message.getVersion() : 0L)
+                        .array();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            out.write(MovieMessageFormat.MAGIC);
+            out.write(MovieMessageFormat.SMILE_V1);
+            writer.writeValue(out, message);
+            return out.toByteArray();
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Ошибка сериализации фильма " + message.getFilmId(), e);
+        } catch (IOException e) {
+            throw new SerializationException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.bank.movieservice.kafka;
+
+import com.bank.movieservice.entity.Genre;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.service.KafkaMovieListener.MovieData;
+
+import java.util.StringJoiner;
+
+/**
+ * Неизменяемый фильм из Kafka, нормализованный один раз при десериализации.
+ *
+ * В отличие от MovieData, геттеры которой заново тримят, парсят и склеивают значения
+ * при каждом вызове, здесь все поля уже готовы к записи в отчет: название без пробелов
+ * по краям, рейтинг и как число, и как текст, жанры склеены через запятую.
+ *
+ * Claim-check сообщение дает только ссылку (reference): filmId и version без данных,
+ * такой MovieRecord заменяется полным при отправке дайджеста.
+ *
+ * @param rating     числовой рейтинг, NaN если рейтинга нет или он не число
+ * @param ratingText рейтинг для отчета как пришел от продюсера, либо "N/A"
+ * @param version    версия фильма в БД, 0 если продюсер ее не передал
+ */
+public record MovieRecord(Long id,
+                          Long filmId,
+                          String filmName,
+                          Integer year,
+                          double rating,
+                          String ratingText,
+                          String description,
+                          String genres,
+                          long version) {
+
+    public static final String NO_RATING = "N/A";
+
+    public static MovieRecord from(MovieData data) {
+        String ratingText = data.getRating();
+        return new MovieRecord(
+                data.getId(),
+                data.getFilmId(),
+                data.getFilmName(),
+                data.getYear(),
+                parseRating(ratingText),
+                ratingText,
+                data.getDescription(),
+                data.getGenres(),
+                0L);
+    }
+
+    /**
+     * Фильм из БД (жанры должны быть загружены)
+     */
+    public static MovieRecord from(Movie movie) {
+        StringJoiner genres = new StringJoiner(", ");
+        for (Genre genre : movie.getGenres()) {
+            genres.add(genre.getName());
+        }
+        String filmName = movie.getFilmName() != null ? movie.getFilmName().trim() : "";
+        return new MovieRecord(
+                movie.getId(),
+                movie.getFilmId(),
+                filmName.isEmpty() ? "Unknown" : filmName,
+                movie.getYear(),
+                movie.getRating() != null ? movie.getRating().doubleValue() : Double.NaN,
+                movie.getRating() != null ? movie.getRating().toString() : NO_RATING,
+                movie.getDescription() != null ? movie.getDescription() : "",
+                genres.toString(),
+                movie.getVersion() != null ? movie.getVersion() : 0L);
+    }
+
+    /**
+     * Ссылка из claim-check сообщения
+     */
+    public static MovieRecord reference(long filmId, long version) {
+        return new MovieRecord(null, filmId, null, null, Double.NaN, NO_RATING, null, null, version);
+    }
+
+    public boolean isReference() {
+        return filmName == null;
+    }
+
+    public boolean hasRating() {
+        return !Double.isNaN(rating);
+    }
+
+    /**
+     * Числовая часть рейтинга: "8.5" -> 8.5, "8.5/10" -> 8.5, "N/A" -> NaN
+     */
+    private static double parseRating(String ratingText) {
+        if (NO_RATING.equals(ratingText)) {
+            return Double.NaN;
+        }
+        int slash = ratingText.indexOf('/');
+        String numericPart = slash >= 0 ? ratingText.substring(0, slash).trim() : ratingText;
+        try {
+            return Double.parseDouble(numericPart);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bank.movieservice.kafka;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+
+/**
+ * Smile-serde для внутренних данных Kafka Streams: repartition-топика, хранилища окна
+ * RocksDB и топика дайджестов. Неизвестные поля игнорируются, чтобы старое состояние
+ * читалось после добавления полей.
+ */
+public class SmileSerde<T> implements Serde<T> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    public SmileSerde(Class<T> type) {
+        this.writer = MAPPER.writerFor(type);
+        this.reader = MAPPER.readerFor(type);
+    }
+
+    @Override
+    public Serializer<T> serializer() {
+        return (topic, value) -> {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return writer.writeValueAsBytes(value);
+            } catch (IOException e) {
+                throw new SerializationException("Ошибка сериализации для топика " + topic, e);
+            }
+        };
+    }
+
+    @Override
+    public Deserializer<T> deserializer() {
+        return (topic, data) -> {
+            if (data == null) {
+                return null;
+            }
+            try {
+                return reader.readValue(data);
+            } catch (IOException e) {
+                throw new SerializationException("Ошибка разбора из топика " + topic, e);
+            }
+        };
+    }
+}
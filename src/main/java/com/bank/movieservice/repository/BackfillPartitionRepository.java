@@ -0,0 +1,50 @@
+package com.bank.movieservice.repository;
+
+import com.bank.movieservice.entity.BackfillPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface BackfillPartitionRepository extends JpaRepository<BackfillPartition, String> {
+
+    // Срезы, брошенные остановленным процессом, снова становятся доступными
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackfillPartition p SET p.status = :to WHERE p.status = :from")
+    int updateStatus(@Param("from") BackfillPartition.Status from, @Param("to") BackfillPartition.Status to);
+
+    // Контрольная точка распределенной выгрузки: сдвигается, только если страница еще не обработана.
+    // 0 - страницу уже засчитал другой узел (повторная доставка задания)
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackfillPartition p SET p.nextPage = :page + 1, p.totalPages = :totalPages, " +
+           "p.filmsSeen = p.filmsSeen + :seen, p.filmsSaved = p.filmsSaved + :saved, " +
+           "p.status = :status, p.error = NULL, p.updatedAt = :now " +
+           "WHERE p.partitionKey = :key AND p.nextPage = :page")
+    int advance(@Param("key") String key, @Param("page") int page, @Param("totalPages") int totalPages,
+                @Param("seen") long seen, @Param("saved") long saved,
+                @Param("status") BackfillPartition.Status status, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackfillPartition p SET p.status = :status, p.error = :error, p.updatedAt = :now " +
+           "WHERE p.partitionKey = :key AND p.nextPage = :page")
+    int updateStatusAtPage(@Param("key") String key, @Param("page") int page,
+                           @Param("status") BackfillPartition.Status status, @Param("error") String error,
+                           @Param("now") LocalDateTime now);
+
+    // Срез возобновляется после простоя: отметка времени не дает опубликовать его повторно до следующего простоя
+    @Transactional
+    @Modifying
+    @Query("UPDATE BackfillPartition p SET p.updatedAt = :now " +
+           "WHERE p.partitionKey = :key AND p.nextPage = :page AND p.status IN :statuses")
+    int touch(@Param("key") String key, @Param("page") int page,
+              @Param("statuses") Collection<BackfillPartition.Status> statuses, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,61 @@
+package com.bank.movieservice.repository;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.entity.MovieOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Repository
+public interface MovieOutboxRepository extends JpaRepository<MovieOutboxEvent, Long> {
+
+    // Поставить фильмы в outbox - вызывается в транзакции, которая их сохранила или отметила
+    default void enqueue(Collection<Movie> movies, LocalDateTime createdAt) {
+        saveAll(movies.stream()
+                .map(movie -> new MovieOutboxEvent(movie.getFilmId(), createdAt))
+                .collect(Collectors.toList()));
+    }
+
+    // Очередная пачка событий к отправке в порядке записи: без ждущих backoff и отложенных
+    @Query("SELECT e FROM MovieOutboxEvent e WHERE e.publishedAt IS NULL AND e.parkedAt IS NULL " +
+           "AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now) ORDER BY e.id")
+    List<MovieOutboxEvent> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByPublishedAtIsNullAndParkedAtIsNull();
+
+    long countByParkedAtIsNotNull();
+
+    @Query("SELECT MIN(e.createdAt) FROM MovieOutboxEvent e WHERE e.publishedAt IS NULL AND e.parkedAt IS NULL")
+    LocalDateTime findOldestPendingCreatedAt();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MovieOutboxEvent e SET e.publishedAt = :publishedAt WHERE e.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MovieOutboxEvent e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt " +
+           "WHERE e.id IN :ids")
+    int scheduleRetry(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MovieOutboxEvent e SET e.attempts = e.attempts + 1, e.parkedAt = :parkedAt WHERE e.id IN :ids")
+    int park(@Param("ids") Collection<Long> ids, @Param("parkedAt") LocalDateTime parkedAt);
+
+    // Отправленные события хранятся retention-ms для разбора инцидентов, затем удаляются
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MovieOutboxEvent e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
@@ -5,10 +5,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,9 +24,44 @@ public interface MovieRepository extends JpaRepository<Movie, Long>, JpaSpecific
     boolean existsByFilmId(Long filmId);
     List<Movie> findByFilmIdIn(List<Long> filmIds);
 
+    // Пачка фильмов вместе с жанрами одним запросом - для claim-check сообщений из Kafka
+    @Query("SELECT DISTINCT m FROM Movie m LEFT JOIN FETCH m.genres WHERE m.filmId IN :filmIds")
+    List<Movie> findWithGenresByFilmIdIn(@Param("filmIds") Collection<Long> filmIds);
+
+    // Лучшие еще не отправленные в дайджест фильмы жанра - локальный пул перед обращением к API
+    @Query("SELECT m FROM Movie m JOIN m.genres g WHERE g.name = :genre AND m.digestSentAt IS NULL " +
+           "AND m.rating >= :ratingFrom AND (:anyYear = true OR m.year BETWEEN :yearFrom AND :yearTo) " +
+           "ORDER BY m.rating DESC, m.id")
+    List<Movie> findUnsentByGenre(@Param("genre") String genre, @Param("ratingFrom") BigDecimal ratingFrom,
+                                  @Param("anyYear") boolean anyYear, @Param("yearFrom") int yearFrom,
+                                  @Param("yearTo") int yearTo, Pageable pageable);
+
+    // Без увеличения version: отметка дайджеста не меняет данные фильма для консьюмеров
+    @Transactional
+    @Modifying
+    @Query("UPDATE Movie m SET m.digestSentAt = :sentAt WHERE m.id IN :ids AND m.digestSentAt IS NULL")
+    int markDigestSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    // Какие из ids отметила именно эта транзакция: конкурирующий запуск мог успеть раньше
+    @Query("SELECT m.id FROM Movie m WHERE m.id IN :ids AND m.digestSentAt = :sentAt")
+    List<Long> findIdsByDigestSentAt(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
     // Поиск фильмов по названию (регистронезависимый, поиск по началу слов)
     @Query("SELECT DISTINCT m FROM Movie m LEFT JOIN FETCH m.genres WHERE " +
            "LOWER(m.filmName) LIKE LOWER(CONCAT(:query, '%')) OR " +
            "LOWER(m.filmName) LIKE LOWER(CONCAT('% ', :query, '%'))")
     List<Movie> searchByName(@Param("query") String query);
+
+    // Фильмы с жанрами по диапазону id - загрузка индекса названий частями
+    @Query("SELECT DISTINCT m FROM Movie m LEFT JOIN FETCH m.genres WHERE m.id BETWEEN :fromId AND :toId")
+    List<Movie> findWithGenresByIdBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Диапазон первичных ключей - используется для разбиения больших отчетов на партиции
+    @Query("SELECT MIN(m.id) AS minId, MAX(m.id) AS maxId FROM Movie m")
+    IdRange findIdRange();
+
+    interface IdRange {
+        Long getMinId();
+        Long getMaxId();
+    }
 }
\ No newline at end of file
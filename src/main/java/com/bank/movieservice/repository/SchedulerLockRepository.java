@@ -0,0 +1,39 @@
+package com.bank.movieservice.repository;
+
+import com.bank.movieservice.entity.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    // Забрать истекшую аренду: атомарно, обновит строку только один из узлов
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until, l.lockedAt = :now, l.lockedBy = :owner " +
+           "WHERE l.name = :name AND l.lockedUntil <= :now")
+    int acquireExpired(@Param("name") String name, @Param("now") LocalDateTime now,
+                       @Param("until") LocalDateTime until, @Param("owner") String owner);
+
+    // Первая аренда задачи: при гонке второй INSERT упадет на первичном ключе
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO scheduler_locks (name, locked_until, locked_at, locked_by) " +
+                   "VALUES (:name, :until, :now, :owner)", nativeQuery = true)
+    int insertLock(@Param("name") String name, @Param("now") LocalDateTime now,
+                   @Param("until") LocalDateTime until, @Param("owner") String owner);
+
+    // Завершить аренду, только если она все еще наша
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until WHERE l.name = :name AND l.lockedBy = :owner " +
+           "AND l.lockedAt = :lockedAt")
+    int release(@Param("name") String name, @Param("owner") String owner,
+                @Param("lockedAt") LocalDateTime lockedAt, @Param("until") LocalDateTime until);
+}
@@ -0,0 +1,654 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.DTO.response.KinopoiskResponse;
+import com.bank.movieservice.entity.BackfillPartition;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.kafka.IngestWorkItem;
+import com.bank.movieservice.repository.BackfillPartitionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Полная выгрузка каталога Кинопоиска в базу.
+ *
+ * Пространство поиска делится на срезы жанр x диапазон лет x полоса рейтинга, чтобы каждый
+ * срез укладывался в лимит API (не больше 20 страниц на запрос). Срезы выполняются пулом
+ * backfill.workers под общим KinopoiskRateLimiter, каждая страница сразу сохраняется через
+ * KinopoiskService.saveAllNewFilms без постановки в дайджест. Только после того как сохранены
+ * все новые фильмы страницы, в backfill_partitions записывается следующая страница среза,
+ * поэтому перезапуск продолжает с места остановки, а срезы в статусе FAILED повторяются
+ * при следующем запуске с той же страницы.
+ *
+ * При backfill.distributed=true срезы не выполняются локально: на каждый срез в топик
+ * kafka.topics.ingest-work публикуется задание со следующей страницей. Задания разбирает
+ * IngestWorkListener любого экземпляра, страница засчитывается условным UPDATE по next_page,
+ * так что повторная доставка не сдвигает срез дважды. Задание следующей страницы публикуется
+ * до сдвига контрольной точки: если публикация не удалась, задание повторяется целиком.
+ * Срезы, которые дольше backfill.stale-after-ms не сдвигались (цепочка заданий оборвалась),
+ * узел-координатор публикует заново - по таймеру и при повторном запуске.
+ *
+ * KinopoiskRateLimiter считает запросы только своего экземпляра: при N обработчиках заданий
+ * суммарная нагрузка на ключ API - N x kinopoisk.api.requests-per-second, лимит на узел
+ * нужно делить на число узлов.
+ *
+ * Метрики: backfill.pages, backfill.films{result}, backfill.pages.per.second,
+ * backfill.partitions.remaining, backfill.eta.seconds.
+ */
+@Service
+public class CatalogBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogBackfillService.class);
+    // Больше страниц API не отдает, даже если фильмов в срезе больше
+    static final int MAX_PAGES = 20;
+
+    private final KinopoiskService kinopoiskService;
+    private final BackfillPartitionRepository partitionRepository;
+    private final KafkaTemplate<String, IngestWorkItem> ingestWorkTemplate;
+
+    private final Counter pagesCounter;
+    private final Counter seenCounter;
+    private final Counter savedCounter;
+
+    @Value("${backfill.workers:4}")
+    private int workers;
+
+    // Пусто - все жанры из справочника KinopoiskService
+    @Value("${backfill.genres:}")
+    private String genres;
+
+    @Value("${backfill.year-from:1950}")
+    private int yearFrom;
+
+    // 0 - текущий год
+    @Value("${backfill.year-to:0}")
+    private int yearTo;
+
+    @Value("${backfill.year-step:5}")
+    private int yearStep;
+
+    @Value("${backfill.rating-bands:0-5,5-6,6-7,7-8,8-10}")
+    private String ratingBands;
+
+    @Value("${backfill.distributed:false}")
+    private boolean distributed;
+
+    @Value("${kafka.topics.ingest-work:ingest-work-topic}")
+    private String workTopic;
+
+    @Value("${kafka.producer.publish-timeout-ms:60000}")
+    private long publishTimeoutMs;
+
+    // Как часто перечитывать срезы из базы для прогресса распределенной выгрузки
+    @Value("${backfill.progress-refresh-ms:5000}")
+    private long progressRefreshMs;
+
+    // Срез распределенной выгрузки без сдвига дольше этого считается брошенным
+    @Value("${backfill.stale-after-ms:600000}")
+    private long staleAfterMs;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private volatile ExecutorService workerPool;
+    private volatile long startedAtNanos;
+    private volatile LocalDateTime startedAt;
+    // Состояние срезов текущего запуска для прогресса и ETA. Локальные воркеры обновляют его сами,
+    // в распределенном режиме оно перечитывается из базы не чаще progress-refresh-ms
+    private final Map<String, PartitionState> states = new ConcurrentHashMap<>();
+    private volatile Totals baseline = new Totals(0, 0, 0);
+    private volatile long statesRefreshedAt;
+    // Фильмы, которые сохраняют задания распределенной выгрузки на этом узле
+    private final Set<Long> workerClaimed = ConcurrentHashMap.newKeySet();
+
+    public CatalogBackfillService(KinopoiskService kinopoiskService,
+                                  BackfillPartitionRepository partitionRepository,
+                                  KafkaTemplate<String, IngestWorkItem> ingestWorkTemplate,
+                                  MeterRegistry meterRegistry) {
+        this.kinopoiskService = kinopoiskService;
+        this.partitionRepository = partitionRepository;
+        this.ingestWorkTemplate = ingestWorkTemplate;
+        this.pagesCounter = Counter.builder("backfill.pages")
+                .description("Страницы поиска, обработанные полной выгрузкой")
+                .register(meterRegistry);
+        this.seenCounter = Counter.builder("backfill.films")
+                .tag("result", "seen")
+                .register(meterRegistry);
+        this.savedCounter = Counter.builder("backfill.films")
+                .tag("result", "saved")
+                .register(meterRegistry);
+        meterRegistry.gauge("backfill.pages.per.second", this, s -> s.progress().pagesPerSecond());
+        meterRegistry.gauge("backfill.partitions.remaining", this, s -> s.progress().partitionsRemaining());
+        meterRegistry.gauge("backfill.eta.seconds", this, s -> {
+            Long eta = s.progress().etaSeconds();
+            return eta != null ? eta : Double.NaN;
+        });
+    }
+
+    /**
+     * Запустить выгрузку в фоне. Если распределенная выгрузка уже идет, брошенные срезы
+     * публикуются заново.
+     *
+     * @return false, если выгрузка уже идет и брошенных срезов нет
+     */
+    public boolean start() {
+        if (distributed && running.get()) {
+            refreshStates(true);
+            if (running.get() && resumeStalled() > 0) {
+                return true;
+            }
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        List<BackfillPartition> work;
+        try {
+            work = preparePartitions();
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+
+        stopRequested = false;
+        baseline = totals();
+        startedAtNanos = System.nanoTime();
+        startedAt = LocalDateTime.now();
+
+        if (work.isEmpty()) {
+            log.info("✅ Выгрузка каталога уже завершена: все {} срезов обработаны", states.size());
+            running.set(false);
+            return true;
+        }
+
+        if (distributed) {
+            try {
+                publishWork(work);
+            } catch (RuntimeException e) {
+                running.set(false);
+                throw e;
+            }
+            return true;
+        }
+
+        int poolSize = Math.max(1, Math.min(workers, work.size()));
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "backfill-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workerPool = pool;
+
+        // Защита от одновременной вставки одного фильма из пересекающихся жанров
+        Set<Long> claimed = ConcurrentHashMap.newKeySet();
+        CompletableFuture<?>[] tasks = work.stream()
+                .map(partition -> CompletableFuture.runAsync(() -> runPartition(partition, claimed), pool))
+                .toArray(CompletableFuture[]::new);
+
+        log.info("🚚 Выгрузка каталога: {} срезов из {}, потоков {}", work.size(), states.size(), poolSize);
+        CompletableFuture.allOf(tasks).whenComplete((result, error) -> {
+            pool.shutdown();
+            running.set(false);
+            logSummary();
+        });
+        return true;
+    }
+
+    /**
+     * Опубликовать по заданию на каждый незавершенный срез, начиная со страницы контрольной точки.
+     * Если задание среза уже в топике, дубль отсеется условным UPDATE в processWorkItem.
+     */
+    private void publishWork(List<BackfillPartition> work) {
+        CompletableFuture<?>[] sends = work.stream()
+                .map(partition -> ingestWorkTemplate.send(workTopic, partition.getPartitionKey(),
+                        IngestWorkItem.of(partition)).completable())
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(sends).get(publishTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Публикация заданий выгрузки прервана", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Не удалось опубликовать задания выгрузки: " + e.getMessage(), e);
+        }
+        log.info("📨 Выгрузка каталога: {} заданий из {} срезов отправлено в {}", work.size(), states.size(), workTopic);
+    }
+
+    /**
+     * Проверка распределенной выгрузки на узле, который ее запустил
+     */
+    @Scheduled(initialDelayString = "${backfill.stale-check-ms:60000}",
+            fixedDelayString = "${backfill.stale-check-ms:60000}")
+    public void checkStalled() {
+        if (!distributed || !running.get()) {
+            return;
+        }
+        try {
+            refreshStates(true);
+            if (running.get()) {
+                resumeStalled();
+            }
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Не удалось проверить брошенные срезы выгрузки: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Заново опубликовать задания срезов, которые не сдвигались дольше stale-after-ms с момента
+     * запуска. Так бывает, если задание следующей страницы потерялось - например, при ребалансе
+     * обогнало сдвиг контрольной точки и было отброшено как устаревшее.
+     *
+     * @return сколько срезов возобновлено
+     */
+    int resumeStalled() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(Duration.ofMillis(staleAfterMs));
+        if (startedAt == null || startedAt.isAfter(staleBefore)) {
+            return 0;
+        }
+        Set<BackfillPartition.Status> active = EnumSet.of(BackfillPartition.Status.PENDING,
+                BackfillPartition.Status.RUNNING);
+        List<BackfillPartition> stalled = partitionRepository.findAllById(new ArrayList<>(states.keySet())).stream()
+                .filter(partition -> active.contains(partition.getStatus()))
+                .filter(partition -> partition.getUpdatedAt() == null || partition.getUpdatedAt().isBefore(staleBefore))
+                // Отметка времени под условием страницы: срез, сдвинутый в этот момент, не публикуется
+                .filter(partition -> partitionRepository.touch(partition.getPartitionKey(), partition.getNextPage(),
+                        active, now) > 0)
+                .collect(Collectors.toList());
+        if (stalled.isEmpty()) {
+            return 0;
+        }
+        log.warn("⚠️ Срезов выгрузки без движения дольше {} мс: {}, публикую их задания заново",
+                staleAfterMs, stalled.size());
+        publishWork(stalled);
+        return stalled.size();
+    }
+
+    private void logSummary() {
+        Progress progress = progress();
+        log.info("🏁 Выгрузка каталога остановлена: готово {} из {} срезов, ошибок {}, страниц {}, новых фильмов {}",
+                progress.partitionsDone(), progress.partitionsTotal(), progress.partitionsFailed(),
+                progress.pagesFetched(), progress.filmsSaved());
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Срезы текущей конфигурации: новые создаются, брошенные (RUNNING) возвращаются в очередь
+     */
+    List<BackfillPartition> preparePartitions() {
+        List<BackfillPartition> plan = planPartitions();
+        partitionRepository.updateStatus(BackfillPartition.Status.RUNNING, BackfillPartition.Status.PENDING);
+
+        List<String> keys = plan.stream().map(BackfillPartition::getPartitionKey).collect(Collectors.toList());
+        Map<String, BackfillPartition> existing = partitionRepository.findAllById(keys).stream()
+                .collect(Collectors.toMap(BackfillPartition::getPartitionKey, Function.identity()));
+
+        List<BackfillPartition> created = plan.stream()
+                .filter(partition -> !existing.containsKey(partition.getPartitionKey()))
+                .collect(Collectors.toList());
+        if (!created.isEmpty()) {
+            partitionRepository.saveAll(created);
+        }
+
+        states.clear();
+        List<BackfillPartition> work = new ArrayList<>();
+        for (BackfillPartition planned : plan) {
+            BackfillPartition partition = existing.getOrDefault(planned.getPartitionKey(), planned);
+            track(partition);
+            if (partition.getStatus() != BackfillPartition.Status.DONE) {
+                work.add(partition);
+            }
+        }
+        return work;
+    }
+
+    List<BackfillPartition> planPartitions() {
+        List<String> genreNames = genres == null || genres.isBlank()
+                ? kinopoiskService.getAvailableGenres().keySet().stream().sorted().collect(Collectors.toList())
+                : Arrays.stream(genres.split(",")).map(String::trim).filter(g -> !g.isEmpty())
+                        .map(String::toLowerCase).collect(Collectors.toList());
+
+        int lastYear = yearTo > 0 ? yearTo : Year.now().getValue();
+        int step = Math.max(1, yearStep);
+        List<BigDecimal[]> bands = parseRatingBands(ratingBands);
+
+        List<BackfillPartition> plan = new ArrayList<>();
+        for (String genre : genreNames) {
+            for (int from = yearFrom; from <= lastYear; from += step) {
+                int to = Math.min(lastYear, from + step - 1);
+                for (BigDecimal[] band : bands) {
+                    plan.add(new BackfillPartition(genre, from, to, band[0], band[1]));
+                }
+            }
+        }
+        return plan;
+    }
+
+    static List<BigDecimal[]> parseRatingBands(String spec) {
+        List<BigDecimal[]> bands = new ArrayList<>();
+        for (String band : spec.split(",")) {
+            String trimmed = band.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] bounds = trimmed.split("-");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Некорректная полоса рейтинга: " + trimmed);
+            }
+            bands.add(new BigDecimal[]{
+                    new BigDecimal(bounds[0].trim()).setScale(1),
+                    new BigDecimal(bounds[1].trim()).setScale(1)
+            });
+        }
+        return bands;
+    }
+
+    /**
+     * Пройти срез постранично с места последней контрольной точки
+     */
+    void runPartition(BackfillPartition partition, Set<Long> claimed) {
+        partition.setStatus(BackfillPartition.Status.RUNNING);
+        partition.setError(null);
+        checkpoint(partition);
+
+        int page = partition.getNextPage();
+        try {
+            while (true) {
+                if (stopRequested || Thread.currentThread().isInterrupted()) {
+                    partition.setStatus(BackfillPartition.Status.PENDING);
+                    checkpoint(partition);
+                    return;
+                }
+
+                PageResult result = fetchPage(partition, page, claimed);
+                if (!result.complete()) {
+                    // Остановка прервала загрузку деталей: страница повторится целиком
+                    partition.setFilmsSaved(partition.getFilmsSaved() + result.saved());
+                    partition.setStatus(BackfillPartition.Status.PENDING);
+                    checkpoint(partition);
+                    return;
+                }
+                partition.setNextPage(page + 1);
+                partition.setTotalPages(result.totalPages());
+                partition.setFilmsSeen(partition.getFilmsSeen() + result.seen());
+                partition.setFilmsSaved(partition.getFilmsSaved() + result.saved());
+                if (result.last()) {
+                    partition.setStatus(BackfillPartition.Status.DONE);
+                }
+                checkpoint(partition);
+
+                if (result.last()) {
+                    log.debug("Срез {} выгружен: страниц {}, новых фильмов {}",
+                            partition.getPartitionKey(), page, partition.getFilmsSaved());
+                    return;
+                }
+                page++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            partition.setStatus(BackfillPartition.Status.PENDING);
+            checkpoint(partition);
+        } catch (Exception e) {
+            log.error("❌ Срез {} остановлен на странице {}: {}", partition.getPartitionKey(), page, e.getMessage());
+            partition.setStatus(BackfillPartition.Status.FAILED);
+            String message = String.valueOf(e.getMessage());
+            partition.setError(message.length() > 500 ? message.substring(0, 500) : message);
+            checkpoint(partition);
+        }
+    }
+
+    /**
+     * Загрузить и сохранить одну страницу среза. Контрольную точку пишет вызывающий и только
+     * для complete-результата; ошибка сохранения пробрасывается.
+     */
+    PageResult fetchPage(BackfillPartition partition, int page, Set<Long> claimed) throws InterruptedException {
+        KinopoiskResponse response = kinopoiskService.searchFilmsPage(partition.getGenre(),
+                partition.getYearFrom(), partition.getYearTo(),
+                partition.getRatingFrom().doubleValue(), partition.getRatingTo().doubleValue(), page);
+        List<KinopoiskResponse.Film> items = response == null || response.getItems() == null
+                ? Collections.emptyList() : response.getItems();
+        int totalPages = response == null || response.getTotalPages() == null ? 0 : response.getTotalPages();
+
+        if (page == 1 && totalPages >= MAX_PAGES) {
+            log.warn("⚠️ Срез {} упирается в лимит API ({} страниц), часть фильмов может не попасть в выгрузку",
+                    partition.getPartitionKey(), MAX_PAGES);
+        }
+
+        KinopoiskService.SavedFilms result = items.isEmpty()
+                ? new KinopoiskService.SavedFilms(Collections.emptyList(), true)
+                : kinopoiskService.saveAllNewFilms(items, claimed, 0);
+        List<Movie> saved = result.movies();
+        // Сохраненные фильмы уже закоммичены и видны existsByFilmId, держать их в claimed незачем
+        saved.forEach(movie -> claimed.remove(movie.getFilmId()));
+        savedCounter.increment(saved.size());
+        if (!result.complete()) {
+            return new PageResult(items.size(), saved.size(), totalPages, false, false);
+        }
+
+        pagesCounter.increment();
+        seenCounter.increment(items.size());
+
+        boolean last = items.isEmpty() || page >= Math.min(totalPages, MAX_PAGES);
+        return new PageResult(items.size(), saved.size(), totalPages, last, true);
+    }
+
+    /**
+     * Обработать задание распределенной выгрузки и опубликовать задание следующей страницы.
+     * Устаревшее задание (страница уже засчитана или срез завершен) пропускается без запроса к API.
+     * Исключение означает, что страницу нужно повторить: ошибку сохранения saveAllNewFilms
+     * пробрасывает с откатом страницы, а прерванная загрузка деталей дает InterruptedException.
+     * Задание подтверждается и сдвигает срез, только когда сохранены все новые фильмы страницы;
+     * фильмы, сохраненные до прерывания, при повторе отсеет existsByFilmId.
+     *
+     * Следующее задание публикуется до сдвига контрольной точки: иначе при сбое публикации
+     * или падении узла между ними срез остался бы RUNNING без единого задания в топике.
+     * Если страницу засчитал другой обработчик, опубликованный дубль отсеется как устаревший.
+     */
+    public void processWorkItem(IngestWorkItem item) throws InterruptedException {
+        Optional<BackfillPartition> found = partitionRepository.findById(item.partitionKey());
+        if (found.isEmpty()
+                || found.get().getStatus() == BackfillPartition.Status.DONE
+                || found.get().getNextPage() != item.page()) {
+            log.debug("Задание {} стр. {} устарело, пропускаем", item.partitionKey(), item.page());
+            return;
+        }
+
+        BackfillPartition partition = found.get();
+        PageResult result = fetchPage(partition, item.page(), workerClaimed);
+        if (!result.complete()) {
+            // Флаг прерывания уже выставлен saveAllNewFilms - его заменяет исключение
+            Thread.interrupted();
+            throw new InterruptedException("Страница " + item.page() + " среза " + item.partitionKey()
+                    + " сохранена не полностью");
+        }
+        if (!result.last()) {
+            try {
+                ingestWorkTemplate.send(workTopic, item.partitionKey(), item.nextPage())
+                        .get(publishTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // Контрольная точка не сдвинута - задание повторит обработчик ошибок контейнера
+                throw new IllegalStateException("Задание стр. " + (item.page() + 1) + " среза "
+                        + item.partitionKey() + " не опубликовано: " + e.getMessage(), e);
+            }
+        }
+
+        BackfillPartition.Status status = result.last()
+                ? BackfillPartition.Status.DONE : BackfillPartition.Status.RUNNING;
+        int advanced = partitionRepository.advance(item.partitionKey(), item.page(), result.totalPages(),
+                result.seen(), result.saved(), status, LocalDateTime.now());
+        if (advanced == 0) {
+            log.debug("Страницу {} среза {} уже засчитал другой обработчик", item.page(), item.partitionKey());
+        }
+    }
+
+    /**
+     * Задание не удалось обработать за все попытки: срез повторится при следующем запуске
+     */
+    public void markWorkFailed(IngestWorkItem item, Exception error) {
+        String message = String.valueOf(error.getMessage());
+        partitionRepository.updateStatusAtPage(item.partitionKey(), item.page(), BackfillPartition.Status.FAILED,
+                message.length() > 500 ? message.substring(0, 500) : message, LocalDateTime.now());
+        log.error("❌ Срез {} остановлен на странице {}: {}", item.partitionKey(), item.page(), message);
+    }
+
+    private void checkpoint(BackfillPartition partition) {
+        partition.setUpdatedAt(LocalDateTime.now());
+        track(partition);
+        try {
+            partitionRepository.save(partition);
+        } catch (Exception e) {
+            // Срез останется в прежнем состоянии в базе и будет повторен со старой страницы
+            log.error("❌ Не удалось сохранить контрольную точку среза {}: {}",
+                    partition.getPartitionKey(), e.getMessage());
+        }
+    }
+
+    private void track(BackfillPartition partition) {
+        states.put(partition.getPartitionKey(), PartitionState.of(partition));
+    }
+
+    private void refreshStates(boolean force) {
+        long now = System.currentTimeMillis();
+        if (states.isEmpty() || (!force && now - statesRefreshedAt < progressRefreshMs)) {
+            return;
+        }
+        statesRefreshedAt = now;
+        partitionRepository.findAllById(new ArrayList<>(states.keySet())).forEach(this::track);
+        boolean active = states.values().stream().anyMatch(state ->
+                state.status() == BackfillPartition.Status.PENDING || state.status() == BackfillPartition.Status.RUNNING);
+        if (!active && running.compareAndSet(true, false)) {
+            logSummary();
+        }
+    }
+
+    private Totals totals() {
+        long pages = 0;
+        long seen = 0;
+        long saved = 0;
+        for (PartitionState state : states.values()) {
+            pages += state.nextPage() - 1;
+            seen += state.filmsSeen();
+            saved += state.filmsSaved();
+        }
+        return new Totals(pages, seen, saved);
+    }
+
+    /**
+     * Снимок прогресса. Оставшиеся страницы для еще не начатых срезов оцениваются
+     * средним числом страниц уже известных срезов.
+     */
+    public Progress progress() {
+        if (distributed && running.get()) {
+            refreshStates(false);
+        }
+
+        int total = 0;
+        int done = 0;
+        int failed = 0;
+        long knownPages = 0;
+        int knownPartitions = 0;
+        long remainingKnown = 0;
+        int unknown = 0;
+
+        for (PartitionState state : states.values()) {
+            total++;
+            if (state.totalPages() != null) {
+                int pages = Math.min(state.totalPages(), MAX_PAGES);
+                knownPages += pages;
+                knownPartitions++;
+                if (state.status() != BackfillPartition.Status.DONE) {
+                    remainingKnown += Math.max(0, pages - state.nextPage() + 1);
+                }
+            } else if (state.status() != BackfillPartition.Status.DONE) {
+                unknown++;
+            }
+            if (state.status() == BackfillPartition.Status.DONE) {
+                done++;
+            } else if (state.status() == BackfillPartition.Status.FAILED) {
+                failed++;
+            }
+        }
+
+        double averagePages = knownPartitions > 0 ? (double) knownPages / knownPartitions : 1.0;
+        long remainingPages = remainingKnown + Math.round(unknown * averagePages);
+
+        Totals current = totals();
+        long pages = current.pages() - baseline.pages();
+        double elapsedSeconds = startedAtNanos == 0 ? 0 : (System.nanoTime() - startedAtNanos) / 1e9;
+        double pagesPerSecond = elapsedSeconds > 0 ? pages / elapsedSeconds : 0;
+        Long etaSeconds = pagesPerSecond > 0 && running.get()
+                ? Math.round(remainingPages / pagesPerSecond)
+                : null;
+
+        return new Progress(running.get(), startedAt, total, done, failed, total - done, pages,
+                current.filmsSeen() - baseline.filmsSeen(), current.filmsSaved() - baseline.filmsSaved(),
+                Math.round(pagesPerSecond * 100) / 100.0, remainingPages, etaSeconds);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopRequested = true;
+        ExecutorService pool = workerPool;
+        if (pool == null) {
+            return;
+        }
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PartitionState(BackfillPartition.Status status, int nextPage, Integer totalPages,
+                                  long filmsSeen, long filmsSaved) {
+
+        static PartitionState of(BackfillPartition partition) {
+            return new PartitionState(partition.getStatus(), partition.getNextPage(), partition.getTotalPages(),
+                    partition.getFilmsSeen(), partition.getFilmsSaved());
+        }
+    }
+
+    private record Totals(long pages, long filmsSeen, long filmsSaved) {}
+
+    // complete = false: сохранены не все новые фильмы страницы, засчитывать ее нельзя
+    record PageResult(int seen, int saved, int totalPages, boolean last, boolean complete) {}
+
+    public record Progress(boolean running, LocalDateTime startedAt,
+                           int partitionsTotal, int partitionsDone, int partitionsFailed, int partitionsRemaining,
+                           long pagesFetched, long filmsSeen, long filmsSaved,
+                           double pagesPerSecond, long remainingPages, Long etaSeconds) {}
+}
@@ -0,0 +1,168 @@
+package com.bank.movieservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронная отправка писем через EmailService.
+ *
+ * Письма ставятся в ограниченную очередь и отправляются пулом воркеров, поэтому
+ * ни потоки Kafka, ни потоки Tomcat не ждут SMTP. Неудачная отправка повторяется
+ * с экспоненциальной задержкой; результат возвращается через CompletableFuture.
+ */
+@Component
+public class EmailDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    private final EmailService emailService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${email.dispatcher.workers:2}")
+    private int workers;
+
+    @Value("${email.dispatcher.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${email.dispatcher.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${email.dispatcher.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${email.dispatcher.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    private ThreadPoolExecutor workerPool;
+    // Письма, ожидающие повтора - при остановке их future завершаются с ошибкой
+    private final Set<EmailTask> awaitingRetry = ConcurrentHashMap.newKeySet();
+    // Отложенные повторы ждут здесь, не занимая воркеров
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "email-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public EmailDispatcher(EmailService emailService, MeterRegistry meterRegistry) {
+        this.emailService = emailService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        workerPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "email-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("email.dispatcher.queue", queue, BlockingQueue::size);
+    }
+
+    /**
+     * Поставить письмо с отчетом в очередь отправки.
+     * Future завершается успешно после отправки или с ошибкой после исчерпания попыток,
+     * а при переполненной очереди - сразу с RejectedExecutionException.
+     */
+    public CompletableFuture<Void> submit(String toEmail, String subject, String reportContent, String reportType) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        EmailTask task = new EmailTask(toEmail, subject, reportContent, reportType, result);
+        try {
+            workerPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Очередь писем переполнена ({}), письмо на {} отклонено", queueCapacity, toEmail);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void scheduleRetry(EmailTask task) {
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(task.attempt - 1, 16));
+        log.warn("🔁 Повтор отправки на {} через {} мс (попытка {} из {})",
+                task.toEmail, backoff, task.attempt + 1, maxAttempts);
+        awaitingRetry.add(task);
+        try {
+            retryScheduler.schedule(() -> {
+                awaitingRetry.remove(task);
+                try {
+                    workerPool.execute(task);
+                } catch (RejectedExecutionException e) {
+                    task.result.completeExceptionally(e);
+                }
+            }, backoff, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            awaitingRetry.remove(task);
+            task.result.completeExceptionally(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        for (EmailTask task : awaitingRetry) {
+            task.result.completeExceptionally(new RejectedExecutionException("Email dispatcher is shutting down"));
+        }
+        awaitingRetry.clear();
+        workerPool.shutdown();
+        try {
+            if (!workerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+                workerPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workerPool.shutdownNow();
+        }
+    }
+
+    private final class EmailTask implements Runnable {
+        private final String toEmail;
+        private final String subject;
+        private final String reportContent;
+        private final String reportType;
+        private final CompletableFuture<Void> result;
+        private int attempt;
+
+        private EmailTask(String toEmail, String subject, String reportContent, String reportType,
+                          CompletableFuture<Void> result) {
+            this.toEmail = toEmail;
+            this.subject = subject;
+            this.reportContent = reportContent;
+            this.reportType = reportType;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            attempt++;
+            try {
+                emailService.sendReportByEmail(toEmail, subject, reportContent, reportType);
+                result.complete(null);
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    log.error("❌ Письмо на {} не отправлено после {} попыток", toEmail, attempt);
+                    result.completeExceptionally(e);
+                } else {
+                    scheduleRetry(this);
+                }
+            }
+        }
+    }
+}
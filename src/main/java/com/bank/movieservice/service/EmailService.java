@@ -6,17 +6,28 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.mail.internet.MimeMessage;
 import javax.persistence.criteria.Predicate;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @RequiredArgsConstructor
@@ -29,7 +40,14 @@ public class EmailService {
 
     private final MovieRepository movieRepository;
 
-    private final DecimalFormat decimalFormat;  // Внедряем через Spring
+    private final ReportRowWriter rowWriter;
+
+    // Количество потоков для параллельной генерации CSV отчета
+    @Value("${reports.csv.parallelism:4}")
+    private int reportParallelism;
+
+    // Пул создается лениво - только при первом параллельном отчете
+    private volatile ExecutorService reportExecutor;
 
     public void sendReportByEmail(String toEmail, String subject, String reportContent, String reportType) {
         // Если mailSender не настроен - логируем и выходим
@@ -103,25 +121,114 @@ public class EmailService {
                 .getContent();
 
         StringBuilder csv = new StringBuilder();
-        csv.append("filmId,filmName,year,rating,description\n");
+        csv.append(ReportRowWriter.MOVIE_CSV_HEADER);
 
         for (Movie movie : movies) {
-            // Форматируем рейтинг с помощью DecimalFormat для гарантированного использования точки
-            String formattedRating = "0.0";
-            if (movie.getRating() != null) {
-                formattedRating = decimalFormat.format(movie.getRating());
+            rowWriter.writeMovieCsvRow(csv, movie);
+        }
+
+        return csv.toString();
+    }
+
+    /**
+     * Параллельная генерация CSV отчета.
+     * Диапазон id разбивается на партиции, каждая партиция запрашивается и форматируется
+     * в отдельном потоке, а готовые куски склеиваются строго в порядке партиций.
+     */
+    public String generateCsvReportParallel(String keyword, Integer yearFrom, Integer yearTo,
+                                            BigDecimal ratingFrom, Double ratingTo) {
+        StringWriter writer = new StringWriter();
+        try {
+            writeCsvReportParallel(keyword, yearFrom, yearTo, ratingFrom, ratingTo, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    public void writeCsvReportParallel(String keyword, Integer yearFrom, Integer yearTo,
+                                       BigDecimal ratingFrom, Double ratingTo, Writer out) throws IOException {
+
+        BigDecimal ratingToBigDecimal = ratingTo != null ? BigDecimal.valueOf(ratingTo) : null;
+        Specification<Movie> filter = buildFilter(keyword, yearFrom, yearTo, ratingFrom, ratingToBigDecimal);
+
+        out.write(ReportRowWriter.MOVIE_CSV_HEADER);
+
+        MovieRepository.IdRange range = movieRepository.findIdRange();
+        if (range == null || range.getMinId() == null || range.getMaxId() == null) {
+            return;
+        }
+
+        // Партиций больше, чем потоков, чтобы неравномерные диапазоны не тормозили весь отчет
+        int parallelism = Math.max(1, reportParallelism);
+        long minId = range.getMinId();
+        long maxId = range.getMaxId();
+        long span = maxId - minId + 1;
+        int partitions = (int) Math.max(1, Math.min(span, (long) parallelism * 4));
+        long step = (span + partitions - 1) / partitions;
+
+        ExecutorService executor = getReportExecutor();
+        List<Future<String>> chunks = new ArrayList<>(partitions);
+        for (long from = minId; from <= maxId; from += step) {
+            long lower = from;
+            long upper = Math.min(maxId, from + step - 1);
+            chunks.add(executor.submit(() -> formatCsvPartition(filter, lower, upper)));
+        }
+
+        try {
+            // Порядок склейки совпадает с порядком партиций - результат детерминирован
+            // Каждая готовая партиция сразу уходит клиенту
+            for (Future<String> chunk : chunks) {
+                out.write(chunk.get());
+                out.flush();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new IllegalStateException("CSV report generation interrupted", e);
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new IllegalStateException("Failed to generate CSV partition: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private String formatCsvPartition(Specification<Movie> filter, long lowerId, long upperId) {
+        Specification<Movie> partition = filter.and((root, query, cb) ->
+                cb.between(root.get("id"), lowerId, upperId));
 
-            csv.append(String.format("%d,\"%s\",%d,%s,\"%s\"\n",
-                    movie.getFilmId(),
-                    escapeCsv(movie.getFilmName()),
-                    movie.getYear(),
-                    formattedRating,  // Используем форматированное значение
-                    escapeCsv(movie.getDescription())
-            ));
+        List<Movie> movies = movieRepository.findAll(partition, Sort.by("id"));
+
+        StringBuilder chunk = new StringBuilder(movies.size() * 128);
+        for (Movie movie : movies) {
+            rowWriter.writeMovieCsvRow(chunk, movie);
         }
+        return chunk.toString();
+    }
 
-        return csv.toString();
+    private ExecutorService getReportExecutor() {
+        ExecutorService executor = reportExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = reportExecutor;
+                if (executor == null) {
+                    AtomicInteger threadCounter = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(Math.max(1, reportParallelism), runnable -> {
+                        Thread thread = new Thread(runnable, "csv-report-" + threadCounter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    reportExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdownReportExecutor() {
+        if (reportExecutor != null) {
+            reportExecutor.shutdownNow();
+        }
     }
 
     public String generateXmlReport(String keyword, Integer yearFrom, Integer yearTo,
@@ -141,13 +248,7 @@ public class EmailService {
         xml.append("<movies>\n");
 
         for (Movie movie : movies) {
-            xml.append("  <movie>\n");
-            xml.append("    <filmId>").append(movie.getFilmId()).append("</filmId>\n");
-            xml.append("    <filmName>").append(escapeXml(movie.getFilmName())).append("</filmName>\n");
-            xml.append("    <year>").append(movie.getYear()).append("</year>\n");
-            xml.append("    <rating>").append(movie.getRating()).append("</rating>\n");
-            xml.append("    <description>").append(escapeXml(movie.getDescription())).append("</description>\n");
-            xml.append("  </movie>\n");
+            rowWriter.writeMovieXmlRow(xml, movie);
         }
 
         xml.append("</movies>");
@@ -157,7 +258,13 @@ public class EmailService {
     private Page<Movie> findMovies(String keyword, Integer yearFrom, Integer yearTo,
                                    BigDecimal ratingFrom, BigDecimal ratingTo, Pageable pageable) {
 
-        return movieRepository.findAll((root, query, cb) -> {
+        return movieRepository.findAll(buildFilter(keyword, yearFrom, yearTo, ratingFrom, ratingTo), pageable);
+    }
+
+    private Specification<Movie> buildFilter(String keyword, Integer yearFrom, Integer yearTo,
+                                             BigDecimal ratingFrom, BigDecimal ratingTo) {
+
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             if (keyword != null && !keyword.trim().isEmpty()) {
@@ -177,21 +284,7 @@ public class EmailService {
             }
 
             return cb.and(predicates.toArray(new Predicate[0]));
-        }, pageable);
-    }
-
-    private String escapeCsv(String value) {
-        if (value == null) return "";
-        return value.replace("\"", "\"\"");
-    }
-
-    private String escapeXml(String value) {
-        if (value == null) return "";
-        return value.replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&apos;");
+        };
     }
 
     private String getFromAddress() {
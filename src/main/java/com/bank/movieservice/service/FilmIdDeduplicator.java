@@ -0,0 +1,116 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.kafka.MovieRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Отсев повторно опубликованных фильмов перед буферизацией дайджеста.
+ *
+ * Планировщик может отправить один и тот же фильм несколько раз. Просмотренные filmId
+ * хранятся в двух поколениях LongHashSet: текущем и предыдущем. Раз в window-ms поколения
+ * меняются местами, а старое очищается без выделения памяти, так что фильм считается
+ * повтором, если встречался за последние window-ms .. 2 * window-ms.
+ *
+ * Проверка идет под одной блокировкой на весь poll() - это короткий проход по long[].
+ */
+@Component
+public class FilmIdDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(FilmIdDeduplicator.class);
+
+    private final Counter duplicatesCounter;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    @Value("${kafka.consumer.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kafka.consumer.dedup.window-ms:86400000}")
+    private long windowMs;
+
+    private LongHashSet current;
+    private LongHashSet previous;
+    // Начало текущего окна, 0 - еще не было ни одной пачки
+    private long windowStartedAt;
+
+    public FilmIdDeduplicator(MeterRegistry meterRegistry,
+                              @Value("${kafka.consumer.dedup.expected-ids:10000}") int expectedIds) {
+        this.current = new LongHashSet(expectedIds);
+        this.previous = new LongHashSet(expectedIds);
+        this.duplicatesCounter = Counter.builder("movie.digest.duplicates")
+                .description("Фильмы, отброшенные как повторы внутри окна дедупликации")
+                .register(meterRegistry);
+        meterRegistry.gauge("movie.digest.dedup.tracked", this, FilmIdDeduplicator::trackedIds);
+        meterRegistry.gauge("movie.digest.dedup.bytes", this, FilmIdDeduplicator::memoryBytes);
+    }
+
+    /**
+     * Оставить только фильмы, которых не было в окне. Фильмы без filmId пропускаются как есть.
+     * Повторы внутри одной пачки тоже отбрасываются.
+     */
+    public List<MovieRecord> filterNew(List<MovieRecord> movies) {
+        if (!enabled || movies.isEmpty()) {
+            return movies;
+        }
+
+        List<MovieRecord> fresh = new ArrayList<>(movies.size());
+        int duplicates = 0;
+        synchronized (this) {
+            rotateIfExpired();
+            for (MovieRecord movie : movies) {
+                Long filmId = movie.filmId();
+                if (filmId == null) {
+                    fresh.add(movie);
+                } else if (previous.contains(filmId) || !current.add(filmId)) {
+                    duplicates++;
+                } else {
+                    fresh.add(movie);
+                }
+            }
+        }
+
+        if (duplicates > 0) {
+            duplicatesCounter.increment(duplicates);
+            log.info("🔁 Отброшено повторов: {} из {}", duplicates, movies.size());
+        }
+        return fresh;
+    }
+
+    public synchronized int trackedIds() {
+        return current.size() + previous.size();
+    }
+
+    public synchronized long memoryBytes() {
+        return current.memoryBytes() + previous.memoryBytes();
+    }
+
+    private void rotateIfExpired() {
+        long now = clock.getAsLong();
+        if (windowStartedAt == 0) {
+            windowStartedAt = now;
+            return;
+        }
+        if (now - windowStartedAt < windowMs) {
+            return;
+        }
+        LongHashSet expired = previous;
+        // Если окно простаивало дольше двух периодов, текущее поколение тоже устарело
+        if (now - windowStartedAt >= 2 * windowMs) {
+            current.clear();
+        }
+        previous = current;
+        expired.clear();
+        current = expired;
+        windowStartedAt = now;
+        log.debug("Окно дедупликации сменилось, в предыдущем поколении {} filmId ({} байт)",
+                previous.size(), previous.memoryBytes());
+    }
+}
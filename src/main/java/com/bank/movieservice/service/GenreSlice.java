@@ -0,0 +1,65 @@
+package com.bank.movieservice.service;
+
+/**
+ * Один срез ежедневной загрузки: жанр и необязательные диапазон лет и минимальный рейтинг.
+ *
+ * Формат в daily-genre.schedule.*: "жанр[:годОт-годДо[:рейтингОт]]", например
+ * "драма", "драма:2010-2019", "комедия:2000-:7.5", "боевик::8". Если рейтинг не указан,
+ * берется рейтинг по умолчанию.
+ */
+public record GenreSlice(String genre, Integer yearFrom, Integer yearTo, Double ratingFrom) {
+
+    public static GenreSlice parse(String spec, double defaultRatingFrom) {
+        String[] parts = spec.trim().split(":", -1);
+        String genre = parts[0].trim();
+        if (genre.isEmpty() || parts.length > 3) {
+            throw new IllegalArgumentException("Некорректный срез жанра: '" + spec + "'");
+        }
+
+        Integer yearFrom = null;
+        Integer yearTo = null;
+        if (parts.length > 1 && !parts[1].isBlank()) {
+            String years = parts[1].trim();
+            int dash = years.indexOf('-');
+            if (dash < 0) {
+                yearFrom = Integer.valueOf(years);
+                yearTo = yearFrom;
+            } else {
+                yearFrom = parseYear(years.substring(0, dash));
+                yearTo = parseYear(years.substring(dash + 1));
+            }
+        }
+
+        Double ratingFrom = parts.length > 2 && !parts[2].isBlank()
+                ? Double.valueOf(parts[2].trim())
+                : defaultRatingFrom;
+        return new GenreSlice(genre, yearFrom, yearTo, ratingFrom);
+    }
+
+    /**
+     * Стабильный ключ среза для таблицы ingest_watermarks
+     */
+    public String queryKey() {
+        return genre + "|" + (yearFrom != null ? yearFrom : "") + "|" + (yearTo != null ? yearTo : "")
+                + "|" + (ratingFrom != null ? ratingFrom : "");
+    }
+
+    private static Integer parseYear(String value) {
+        return value.isBlank() ? null : Integer.valueOf(value.trim());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder label = new StringBuilder(genre);
+        if (yearFrom != null || yearTo != null) {
+            label.append(' ')
+                    .append(yearFrom != null ? yearFrom : "")
+                    .append('-')
+                    .append(yearTo != null ? yearTo : "");
+        }
+        if (ratingFrom != null) {
+            label.append(" ≥").append(ratingFrom);
+        }
+        return label.toString();
+    }
+}
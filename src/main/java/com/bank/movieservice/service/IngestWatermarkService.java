@@ -0,0 +1,124 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.DTO.response.KinopoiskResponse;
+import com.bank.movieservice.entity.IngestWatermark;
+import com.bank.movieservice.repository.IngestWatermarkRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Водяные знаки запросов планировщика.
+ *
+ * Для каждого среза хранится отпечаток последнего ответа API и время следующего запуска.
+ * Если ответ не изменился, фильмы не обрабатываются (нет проверок в БД и запросов деталей).
+ * Каждый запуск без новых фильмов удваивает интервал до следующего обращения к API
+ * (от initial-ms до max-ms), первый же новый фильм возвращает срез к каждому тику cron.
+ */
+@Service
+public class IngestWatermarkService {
+
+    // Тик cron может сработать на доли секунды раньше рассчитанного времени
+    private static final Duration DUE_TOLERANCE = Duration.ofSeconds(1);
+
+    private final IngestWatermarkRepository watermarkRepository;
+    // UTC, как и serverTimezone в JDBC URL: по местному времени переход на летнее/зимнее время
+    // сдвигает сроки на час в ту или другую сторону
+    private Clock clock = Clock.systemUTC();
+
+    @Value("${scheduler.backoff.initial-ms:120000}")
+    private long initialBackoffMs;
+
+    @Value("${scheduler.backoff.max-ms:3600000}")
+    private long maxBackoffMs;
+
+    public IngestWatermarkService(IngestWatermarkRepository watermarkRepository) {
+        this.watermarkRepository = watermarkRepository;
+    }
+
+    /**
+     * Водяные знаки срезов одним запросом; для новых срезов создаются пустые
+     */
+    public Map<String, IngestWatermark> load(Collection<String> queryKeys) {
+        Map<String, IngestWatermark> watermarks = watermarkRepository.findAllById(queryKeys).stream()
+                .collect(Collectors.toMap(IngestWatermark::getQueryKey, Function.identity()));
+        for (String key : queryKeys) {
+            watermarks.computeIfAbsent(key, IngestWatermark::new);
+        }
+        return watermarks;
+    }
+
+    public boolean isDue(IngestWatermark watermark) {
+        return watermark.getNextRunAt() == null
+                || !LocalDateTime.now(clock).plus(DUE_TOLERANCE).isBefore(watermark.getNextRunAt());
+    }
+
+    public boolean isUnchanged(IngestWatermark watermark, String fingerprint) {
+        return fingerprint != null && fingerprint.equals(watermark.getFilmIdsHash());
+    }
+
+    /**
+     * Сохранить итог запуска и рассчитать время следующего
+     * @param fingerprint отпечаток ответа API, null - ответ пустой (старый отпечаток сохраняется)
+     */
+    public IngestWatermark record(IngestWatermark watermark, String fingerprint, int listed, int saved) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        watermark.setLastRunAt(now);
+        if (fingerprint != null) {
+            watermark.setFilmIdsHash(fingerprint);
+            watermark.setLastFilmCount(listed);
+        }
+        watermark.setTotalSaved(watermark.getTotalSaved() + saved);
+        watermark.setEmptyRuns(saved > 0 ? 0 : watermark.getEmptyRuns() + 1);
+        watermark.setNextRunAt(now.plus(backoff(watermark.getEmptyRuns())));
+        return watermarkRepository.save(watermark);
+    }
+
+    /**
+     * Интервал до следующего запуска: 0 после новых фильмов, затем initial, 2 * initial, ... до max
+     */
+    public Duration backoff(int emptyRuns) {
+        if (emptyRuns <= 0) {
+            return Duration.ZERO;
+        }
+        long delay = initialBackoffMs << Math.min(emptyRuns - 1, 20);
+        return Duration.ofMillis(Math.min(delay, maxBackoffMs));
+    }
+
+    /**
+     * SHA-256 отсортированных filmId ответа - порядок выдачи API на результат не влияет
+     */
+    public static String fingerprint(List<KinopoiskResponse.Film> films) {
+        if (films.isEmpty()) {
+            return null;
+        }
+        long[] filmIds = films.stream()
+                .map(KinopoiskResponse.Film::getKinopoiskId)
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * filmIds.length);
+        for (long filmId : filmIds) {
+            buffer.putLong(filmId);
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(buffer.array()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
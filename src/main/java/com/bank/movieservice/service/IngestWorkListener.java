@@ -0,0 +1,33 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.kafka.IngestWorkItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+/**
+ * Обработчик заданий распределенной выгрузки каталога.
+ *
+ * Запускается на каждом экземпляре в общей группе, поэтому новые узлы забирают часть
+ * партиций топика заданий. Задание подтверждается только после того, как страница сохранена
+ * и засчитана; ошибка уходит в DefaultErrorHandler фабрики ingestWorkListenerContainerFactory.
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestWorkListener {
+
+    public static final String LISTENER_ID = "ingestWorkListener";
+
+    private final CatalogBackfillService backfillService;
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false,
+            autoStartup = "${backfill.worker.enabled:true}",
+            topics = "${kafka.topics.ingest-work:ingest-work-topic}",
+            groupId = "${backfill.worker.group-id:movie-ingest-workers}",
+            containerFactory = "ingestWorkListenerContainerFactory")
+    public void consume(IngestWorkItem item, Acknowledgment acknowledgment) throws InterruptedException {
+        backfillService.processWorkItem(item);
+        acknowledgment.acknowledge();
+    }
+}
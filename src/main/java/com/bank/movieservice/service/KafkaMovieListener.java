@@ -1,20 +1,21 @@
 package com.bank.movieservice.service;
 
+import com.bank.movieservice.kafka.MovieRecord;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.*;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @RequiredArgsConstructor
@@ -22,151 +23,76 @@ public class KafkaMovieListener {
 
     private static final Logger log = LoggerFactory.getLogger(KafkaMovieListener.class);
 
-    private final EmailService emailService;
-    private final ObjectMapper objectMapper; // Внедряем через конструктор
+    public static final String LISTENER_ID = "movieDigestListener";
 
-    // Thread-safe список для хранения фильмов
-    private final List<MovieData> movies = new ArrayList<>();
-    private final Lock lock = new ReentrantLock();
+    private final MovieDigestBuffer digestBuffer;
+    private final FilmIdDeduplicator deduplicator;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
 
-    @Value("${email.daily-report.recipient:mym99527@gmail.com}")
-    private String recipientEmail;
-
-    @Value("${email.daily-report.subject-prefix:🎬 Ежедневные фильмы}")
-    private String emailSubjectPrefix;
-
-    @Value("${kafka.consumer.batch-size:50}")
-    private int batchSize;
-
-    @KafkaListener(topics = "${kafka.topics.movie-daily:movie-topic}",
-            groupId = "${kafka.consumer.group-id:movie-email-consumer-group}")
-    public void consumeMovie(String movieJson) {
-        lock.lock();
-        try {
-            // 1. Парсим JSON с использованием ObjectMapper.readValue()
-            MovieData movieData = parseMovieJson(movieJson);
-
-            if (movieData == null) {
-                log.warn("⚠️ Не удалось распарсить JSON, пропускаем сообщение");
-                return;
-            }
-
-            // 2. Добавляем в список
-            movies.add(movieData);
-            log.info("📥 Получен фильм: {} (всего в буфере: {})",
-                    movieData.getFilmName(), movies.size());
+    @PostConstruct
+    public void registerBackpressure() {
+        digestBuffer.setPressureListener(this::applyBackpressure);
+    }
 
-            // 3. Если набралось достаточно фильмов - отправляем email
-            if (movies.size() >= batchSize) {
-                sendToEmail();
+    // При kafka.streams.enabled=true дайджест собирает Kafka Streams, этот слушатель не запускается
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false,
+            autoStartup = "#{!${kafka.streams.enabled:false}}",
+            topics = "${kafka.topics.movie-daily:movie-topic}",
+            groupId = "${kafka.consumer.group-id:movie-email-consumer-group}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consumeMovies(List<ConsumerRecord<String, MovieRecord>> records, Acknowledgment acknowledgment) {
+        // 1. Собираем весь poll в локальный список потока-консьюмера.
+        // Значения уже разобраны MovieMessageDeserializer, нечитаемые сообщения приходят как null
+        List<MovieRecord> parsed = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, MovieRecord> record : records) {
+            MovieRecord movie = record.value();
+            if (movie != null) {
+                parsed.add(movie);
             }
-        } catch (Exception e) {
-            log.error("❌ Ошибка обработки сообщения Kafka", e);
-        } finally {
-            lock.unlock();
         }
-    }
 
-    /**
-     * Парсинг JSON с использованием ObjectMapper.readValue()
-     * Вместо ручного разбора через JsonNode
-     */
-    private MovieData parseMovieJson(String movieJson) {
-        if (movieJson == null || movieJson.trim().isEmpty()) {
-            log.warn("Получен пустой JSON");
-            return null;
+        if (parsed.isEmpty()) {
+            log.warn("⚠️ В пачке из {} сообщений нет валидных фильмов", records.size());
         }
 
-        try {
-            // Очистка JSON от BOM и лишних пробелов
-            String cleanedJson = cleanJsonString(movieJson);
-
-            // ОСНОВНОЕ ИЗМЕНЕНИЕ: используем readValue() вместо readTree()
-            // ObjectMapper сам преобразует JSON в объект MovieData
-            // Вся логика обработки null и преобразований теперь в геттерах/сеттерах MovieData
-            return objectMapper.readValue(cleanedJson, MovieData.class);
-
-        } catch (JsonProcessingException e) {
-            log.error("❌ Ошибка парсинга JSON: {}", e.getMessage());
-            log.debug("Проблемный JSON: {}",
-                    getJsonPreview(movieJson));
-            return null;
-        } catch (Exception e) {
-            log.error("❌ Неожиданная ошибка при парсинге JSON", e);
-            return null;
-        }
-    }
+        // 2. Отбрасываем фильмы, уже попавшие в дайджест за окно дедупликации
+        List<MovieRecord> fresh = deduplicator.filterNew(parsed);
 
-    private String getJsonPreview(String json) {
-        if (json == null) return "null";
-        int previewLength = Math.min(json.length(), 500);
-        return json.substring(0, previewLength) + (json.length() > 500 ? "..." : "");
+        // 3. Передаем пачку в общий буфер без блокировок. Email отправляет поток-флашер,
+        // он же подтвердит пачку после отправки
+        int buffered = digestBuffer.addAll(fresh, acknowledgment);
+        log.info("📥 Получено фильмов: {} из {} сообщений, новых: {} (всего в буфере: {})",
+                parsed.size(), records.size(), fresh.size(), buffered);
     }
 
     /**
-     * Очистка JSON строки от BOM и лишних символов
+     * Пауза/возобновление всех партиций контейнера по сигналу буфера.
+     * Приостановленный контейнер продолжает poll() - группа не ребалансируется, а отложенные
+     * подтверждения из потока-флашера коммитятся.
      */
-    private String cleanJsonString(String json) {
-        if (json == null) return "";
-
-        // Удаляем BOM (Byte Order Mark) если он есть
-        if (json.startsWith("\uFEFF")) {
-            json = json.substring(1);
-        }
-
-        // Удаляем невидимые символы и обрезаем пробелы
-        return json.trim();
-    }
-
-    public void sendToEmail() {
-        if (movies.isEmpty()) {
-            log.info("⚠️ Нет фильмов для отправки");
+    private void applyBackpressure(boolean pause) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
             return;
         }
-
-        try {
-            // Формируем отчет и отправляем через EmailService
-            String report = generateReport(movies);
-            String subject = emailSubjectPrefix + " - " + java.time.LocalDate.now();
-
-            emailService.sendReportByEmail(recipientEmail, subject, report, "csv");
-
-            log.info("✅ Отправлен email с {} фильмами на адрес: {}",
-                    movies.size(), recipientEmail);
-
-            // Очищаем список после отправки
-            movies.clear();
-        } catch (Exception e) {
-            log.error("❌ Ошибка отправки email", e);
+        if (pause) {
+            container.pause();
+        } else {
+            container.resume();
         }
     }
 
-    private String generateReport(List<MovieData> movieList) {
-        StringBuilder csv = new StringBuilder();
-        csv.append("filmId,filmName,year,rating,description,genres\n");
-
-        for (MovieData movie : movieList) {
-            csv.append(String.format("%s,\"%s\",%s,%s,\"%s\",\"%s\"\n",
-                    movie.getFilmId() != null ? movie.getFilmId() : "",
-                    escapeCsv(movie.getFilmName()),
-                    movie.getYear() != null ? movie.getYear() : "",
-                    movie.getRating(),
-                    escapeCsv(movie.getDescription()),
-                    escapeCsv(movie.getGenres())
-            ));
-        }
-
-        return csv.toString();
-    }
-
-    private String escapeCsv(String value) {
-        if (value == null) return "";
-        return value.replace("\"", "\"\"");
+    /**
+     * Принудительно отправить накопленные фильмы (асинхронно, в потоке-флашере)
+     */
+    public void sendToEmail() {
+        digestBuffer.requestFlush();
     }
 
     /**
      * DTO класс для представления данных фильма
-     * ВСЯ логика обработки null и преобразований теперь в геттерах
+     * ВСЯ логика обработки null и преобразований теперь в геттерах.
+     * Используется только для разбора сообщения - дальше по конвейеру идет MovieRecord
      */
     @Data
     @Builder
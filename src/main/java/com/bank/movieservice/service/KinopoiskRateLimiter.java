@@ -0,0 +1,52 @@
+package com.bank.movieservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общий на все потоки лимит запросов к API Кинопоиска.
+ *
+ * Каждый acquire() резервирует следующий свободный интервал 1 / requests-per-second
+ * и спит до него, поэтому параллельная загрузка нескольких жанров в сумме не превышает
+ * лимит API - в отличие от Thread.sleep() в каждом потоке.
+ */
+@Component
+public class KinopoiskRateLimiter {
+
+    private final long intervalNanos;
+    private final Timer waitTimer;
+    // Время (nanoTime), начиная с которого свободен следующий запрос
+    private long nextFreeAt = System.nanoTime();
+
+    public KinopoiskRateLimiter(MeterRegistry meterRegistry,
+                                @Value("${kinopoisk.api.requests-per-second:10}") double requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("kinopoisk.api.requests-per-second должен быть больше 0");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.waitTimer = Timer.builder("kinopoisk.ratelimit.wait")
+                .description("Ожидание очереди на запрос к API Кинопоиска")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Дождаться разрешения на один запрос
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(nextFreeAt, now);
+            nextFreeAt = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+}
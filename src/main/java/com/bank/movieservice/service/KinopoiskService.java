@@ -4,6 +4,7 @@ import com.bank.movieservice.DTO.response.KinopoiskResponse;
 import com.bank.movieservice.entity.Genre;
 import com.bank.movieservice.entity.Movie;
 import com.bank.movieservice.repository.GenreRepository;
+import com.bank.movieservice.repository.MovieOutboxRepository;
 import com.bank.movieservice.repository.MovieRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +15,7 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -24,6 +26,9 @@ public class KinopoiskService {
     private final RestTemplate restTemplate;
     private final MovieRepository movieRepository;
     private final GenreRepository genreRepository;
+    private final KinopoiskRateLimiter rateLimiter;
+    private final MovieOutboxRepository outboxRepository;
+    private final MovieNameIndex movieNameIndex;
 
     @Value("${kinopoisk.api.key:45d26e72-1903-4a28-8482-d59a02b9b36a}")
     private String apiKey;
@@ -147,6 +152,7 @@ public class KinopoiskService {
 
         try {
             // Запрос к Кинопоиску
+            rateLimiter.acquire();
             ResponseEntity<KinopoiskResponse> response = restTemplate.exchange(
                     builder.toUriString(),
                     HttpMethod.GET,
@@ -161,24 +167,80 @@ public class KinopoiskService {
             }
 
             System.out.println("📊 Найдено фильмов в API: " + kinopoiskResponse.getItems().size());
+            return saveFilms(kinopoiskResponse.getItems(), new HashSet<>(), 0, false).movies();
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("⚠️ Поиск фильмов прерван");
+            return Collections.emptyList();
+        } catch (Exception e) {
+            System.err.println("❌ Ошибка при работе с API Кинопоиска: " + e.getMessage());
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Сохранить фильмы из результата поиска, которых еще нет в базе (с деталями и жанрами).
+     * Первые maxDigestMovies из них отмечаются отправленными в дайджест, и в той же транзакции
+     * для них пишутся события в movie_outbox - их отправит MovieOutboxRelay. Остальные
+     * остаются в локальном пуле для следующих запусков.
+     * @param films результат поиска, например searchFilmsOnly (отсортирован по рейтингу)
+     * @param claimedFilmIds общий для всех срезов запуска набор filmId (потокобезопасный):
+     *                       фильм, найденный сразу в двух жанрах, загружается и сохраняется
+     *                       только одним из них - без лишнего запроса деталей и без
+     *                       нарушения уникальности film_id
+     * @param maxDigestMovies сколько сохраненных фильмов поставить в дайджест
+     * @return сохраненные фильмы; complete = false, если загрузка прервана, фильм не сохранился
+     *         или список не обработан из-за ошибки
+     */
+    @Transactional
+    public SavedFilms saveNewFilms(List<KinopoiskResponse.Film> films, Set<Long> claimedFilmIds,
+                                   int maxDigestMovies) {
+        return saveFilms(films, claimedFilmIds, maxDigestMovies, false);
+    }
+
+    /**
+     * То же, что saveNewFilms, но для постраничной выгрузки: ошибка проверки или сохранения
+     * любого фильма пробрасывается и откатывает всю страницу, а прерывание загрузки деталей
+     * возвращает complete = false. Страницу можно засчитывать, только если complete.
+     * Фильмы, которые не сохранены, освобождаются в claimedFilmIds для повтора страницы.
+     */
+    @Transactional
+    public SavedFilms saveAllNewFilms(List<KinopoiskResponse.Film> films, Set<Long> claimedFilmIds,
+                                      int maxDigestMovies) {
+        return saveFilms(films, claimedFilmIds, maxDigestMovies, true);
+    }
+
+    /**
+     * Сохраненные фильмы и признак, что сохранены все новые фильмы списка
+     */
+    public record SavedFilms(List<Movie> movies, boolean complete) {}
+
+    private SavedFilms saveFilms(List<KinopoiskResponse.Film> films, Set<Long> claimedFilmIds,
+                                 int maxDigestMovies, boolean rethrow) {
+        List<KinopoiskResponse.Film> newFilms = new ArrayList<>();
+        List<Movie> savedMovies = new ArrayList<>();
+        try {
             // Фильтруем фильмы, которых нет в базе
-            List<KinopoiskResponse.Film> newFilms = kinopoiskResponse.getItems().stream()
+            films.stream()
                     .filter(film -> !movieRepository.existsByFilmId(film.getKinopoiskId()))
-                    .collect(Collectors.toList());
+                    .filter(film -> claimedFilmIds.add(film.getKinopoiskId()))
+                    .forEach(newFilms::add);
 
             System.out.println("🆕 Новых фильмов для сохранения: " + newFilms.size());
 
             if (newFilms.isEmpty()) {
                 System.out.println("✅ Все фильмы уже есть в базе данных");
-                return Collections.emptyList();
+                return new SavedFilms(Collections.emptyList(), true);
             }
 
             // Получаем детали для каждого фильма (чтобы получить жанры)
+            boolean complete = true;
             List<KinopoiskResponse.Film> filmsWithDetails = new ArrayList<>();
             for (KinopoiskResponse.Film film : newFilms) {
                 try {
-                    Thread.sleep(100); // Небольшая задержка, чтобы не превысить лимиты API
+                    rateLimiter.acquire(); // Общий лимит API на все параллельные загрузки
                     KinopoiskResponse.Film details = getFilmDetails(film.getKinopoiskId());
                     if (details != null) {
                         filmsWithDetails.add(details);
@@ -189,35 +251,73 @@ public class KinopoiskService {
                         System.out.println("⚠️ Использую базовую информацию для фильма ID: " + film.getKinopoiskId());
                     }
                 } catch (InterruptedException e) {
+                    // Запуск отменен по таймауту: больше не ходим в API, сохраняем уже загруженные.
+                    // Остальные фильмы не заняты в базе - их найдет следующий запуск
                     Thread.currentThread().interrupt();
-                    System.err.println("⚠️ Задержка прервана для фильма ID: " + film.getKinopoiskId());
-                    filmsWithDetails.add(film);
+                    complete = false;
+                    System.err.println("⚠️ Загрузка деталей прервана на фильме ID: " + film.getKinopoiskId());
+                    break;
                 }
             }
 
             // Сохраняем новые фильмы
-            List<Movie> savedMovies = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            List<Movie> digestMovies = new ArrayList<>();
             for (KinopoiskResponse.Film film : filmsWithDetails) {
                 try {
                     Movie movie = convertToMovieEntity(film);
+                    boolean toDigest = digestMovies.size() < maxDigestMovies;
+                    if (toDigest) {
+                        movie.setDigestSentAt(now);
+                    }
                     Movie saved = movieRepository.save(movie);
                     savedMovies.add(saved);
+                    if (toDigest) {
+                        digestMovies.add(saved);
+                    }
                     System.out.println("💾 Сохранен фильм: " + saved.getFilmName() + " (ID: " + saved.getFilmId() + ")");
-                } catch (Exception e) {
+                } catch (RuntimeException e) {
+                    if (rethrow) {
+                        throw e;
+                    }
                     System.err.println("❌ Ошибка сохранения фильма ID " + film.getKinopoiskId() + ": " + e.getMessage());
+                    complete = false;
                 }
             }
 
+            // Ошибка записи outbox откатит и сами фильмы: фильма без события не будет
+            if (!digestMovies.isEmpty()) {
+                outboxRepository.enqueue(digestMovies, now);
+            }
+            movieNameIndex.indexAfterCommit(savedMovies);
+
             System.out.println("🎉 Всего сохранено фильмов: " + savedMovies.size());
-            return savedMovies;
+            if (!complete) {
+                releaseUnsaved(newFilms, savedMovies, claimedFilmIds);
+            }
+            return new SavedFilms(savedMovies, complete);
 
-        } catch (Exception e) {
-            System.err.println("❌ Ошибка при работе с API Кинопоиска: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Проброшенная ошибка откатит транзакцию целиком - тогда не сохранен ни один фильм
+            releaseUnsaved(newFilms, rethrow ? Collections.emptyList() : savedMovies, claimedFilmIds);
+            if (rethrow) {
+                throw e;
+            }
+            System.err.println("❌ Ошибка сохранения фильмов: " + e.getMessage());
             e.printStackTrace();
-            return Collections.emptyList();
+            return new SavedFilms(Collections.emptyList(), false);
         }
     }
 
+    private static void releaseUnsaved(List<KinopoiskResponse.Film> newFilms, List<Movie> savedMovies,
+                                       Set<Long> claimedFilmIds) {
+        Set<Long> savedIds = savedMovies.stream().map(Movie::getFilmId).collect(Collectors.toSet());
+        newFilms.stream()
+                .map(KinopoiskResponse.Film::getKinopoiskId)
+                .filter(filmId -> !savedIds.contains(filmId))
+                .forEach(claimedFilmIds::remove);
+    }
+
     /**
      * Преобразование Film API в сущность Movie с получением существующих жанров
      */
@@ -305,6 +405,58 @@ public class KinopoiskService {
                                                         Integer yearFrom, Integer yearTo,
                                                         Double ratingFrom, Double ratingTo) {
 
+        UriComponentsBuilder builder = searchUri(keyword, genre, yearFrom, yearTo, ratingFrom, ratingTo);
+        HttpEntity<String> entity = apiEntity();
+
+        try {
+            rateLimiter.acquire();
+            ResponseEntity<KinopoiskResponse> response = restTemplate.exchange(
+                    builder.toUriString(),
+                    HttpMethod.GET,
+                    entity,
+                    KinopoiskResponse.class
+            );
+
+            KinopoiskResponse kinopoiskResponse = response.getBody();
+            if (kinopoiskResponse == null || kinopoiskResponse.getItems() == null) {
+                return Collections.emptyList();
+            }
+
+            return kinopoiskResponse.getItems();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (Exception e) {
+            System.err.println("❌ Ошибка поиска фильмов: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Одна страница поиска для полной выгрузки каталога.
+     * В отличие от searchFilmsOnly ошибки не глотаются: вызывающий сохраняет страницу,
+     * на которой остановился, и повторяет ее позже.
+     */
+    public KinopoiskResponse searchFilmsPage(String genre, Integer yearFrom, Integer yearTo,
+                                             Double ratingFrom, Double ratingTo, int page)
+            throws InterruptedException {
+
+        UriComponentsBuilder builder = searchUri(null, genre, yearFrom, yearTo, ratingFrom, ratingTo);
+        builder.queryParam("page", page);
+
+        rateLimiter.acquire();
+        ResponseEntity<KinopoiskResponse> response = restTemplate.exchange(
+                builder.toUriString(),
+                HttpMethod.GET,
+                apiEntity(),
+                KinopoiskResponse.class
+        );
+        return response.getBody();
+    }
+
+    private UriComponentsBuilder searchUri(String keyword, String genre,
+                                           Integer yearFrom, Integer yearTo,
+                                           Double ratingFrom, Double ratingTo) {
         UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(apiUrl);
 
         if (genre != null && !genre.trim().isEmpty()) {
@@ -328,29 +480,13 @@ public class KinopoiskService {
         builder.queryParam("order", "RATING");
         builder.queryParam("type", "ALL");
 
+        return builder;
+    }
+
+    private HttpEntity<String> apiEntity() {
         HttpHeaders headers = new HttpHeaders();
         headers.set("X-API-KEY", apiKey);
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-
-        try {
-            ResponseEntity<KinopoiskResponse> response = restTemplate.exchange(
-                    builder.toUriString(),
-                    HttpMethod.GET,
-                    entity,
-                    KinopoiskResponse.class
-            );
-
-            KinopoiskResponse kinopoiskResponse = response.getBody();
-            if (kinopoiskResponse == null || kinopoiskResponse.getItems() == null) {
-                return Collections.emptyList();
-            }
-
-            return kinopoiskResponse.getItems();
-        } catch (Exception e) {
-            System.err.println("❌ Ошибка поиска фильмов: " + e.getMessage());
-            return Collections.emptyList();
-        }
+        return new HttpEntity<>(headers);
     }
 }
\ No newline at end of file
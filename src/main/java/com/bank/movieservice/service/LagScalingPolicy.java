@@ -0,0 +1,78 @@
+package com.bank.movieservice.service;
+
+/**
+ * Решение о числе потоков слушателя по lag с гистерезисом.
+ *
+ * Поток добавляется, если lag на поток держится выше scale-up-lag несколько замеров подряд,
+ * и убирается, если lag ниже scale-down-lag дольше. Между порогами число потоков не меняется,
+ * а после каждого изменения выдерживается пауза cooldown - иначе перезапуск контейнера
+ * и ребаланс сами бы создавали lag и число потоков бы колебалось.
+ */
+public class LagScalingPolicy {
+
+    private final int minConcurrency;
+    private final long scaleUpLagPerConsumer;
+    private final long scaleDownLagPerConsumer;
+    private final int scaleUpSamples;
+    private final int scaleDownSamples;
+    private final long cooldownMs;
+
+    private int highSamples;
+    private int lowSamples;
+    private long lastChangeAt = Long.MIN_VALUE / 2;
+
+    public LagScalingPolicy(int minConcurrency, long scaleUpLagPerConsumer, long scaleDownLagPerConsumer,
+                            int scaleUpSamples, int scaleDownSamples, long cooldownMs) {
+        if (scaleDownLagPerConsumer >= scaleUpLagPerConsumer) {
+            throw new IllegalArgumentException("scale-down-lag должен быть меньше scale-up-lag");
+        }
+        this.minConcurrency = minConcurrency;
+        this.scaleUpLagPerConsumer = scaleUpLagPerConsumer;
+        this.scaleDownLagPerConsumer = scaleDownLagPerConsumer;
+        this.scaleUpSamples = scaleUpSamples;
+        this.scaleDownSamples = scaleDownSamples;
+        this.cooldownMs = cooldownMs;
+    }
+
+    /**
+     * @param current        текущее число потоков
+     * @param totalLag       суммарный lag группы по всем партициям
+     * @param maxConcurrency верхняя граница (не больше числа партиций)
+     * @param now            время замера, мс
+     * @return новое число потоков (равно current, если менять не нужно)
+     */
+    public int next(int current, long totalLag, int maxConcurrency, long now) {
+        long lagPerConsumer = totalLag / Math.max(current, 1);
+        if (lagPerConsumer > scaleUpLagPerConsumer) {
+            highSamples++;
+            lowSamples = 0;
+        } else if (lagPerConsumer < scaleDownLagPerConsumer) {
+            lowSamples++;
+            highSamples = 0;
+        } else {
+            highSamples = 0;
+            lowSamples = 0;
+        }
+
+        if (now - lastChangeAt < cooldownMs) {
+            return current;
+        }
+
+        int target = current;
+        if (highSamples >= scaleUpSamples && current < maxConcurrency) {
+            target = current + 1;
+        } else if (lowSamples >= scaleDownSamples && current > minConcurrency) {
+            target = current - 1;
+        } else if (current > maxConcurrency) {
+            // Партиций стало меньше, чем потоков - лишние потоки простаивали бы
+            target = Math.max(maxConcurrency, minConcurrency);
+        }
+
+        if (target != current) {
+            highSamples = 0;
+            lowSamples = 0;
+            lastChangeAt = now;
+        }
+        return target;
+    }
+}
@@ -0,0 +1,209 @@
+package com.bank.movieservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Автомасштабирование числа потоков слушателя дайджеста по lag группы.
+ *
+ * Раз в interval-ms через AdminClient читаются закоммиченные оффсеты группы и последние
+ * оффсеты партиций топика, считается lag по каждой партиции. LagScalingPolicy решает,
+ * добавить или убрать поток (не больше числа партиций), и контейнер перезапускается
+ * с новым числом потоков. Пока буфер дайджеста держит контейнер на паузе, масштабирование
+ * не выполняется - больше потоков там не помогут. Перед перезапуском буфер дайджеста
+ * отправляется, чтобы его подтверждения закоммитили текущие консьюмеры.
+ *
+ * Метрики: kafka.listener.lag, kafka.listener.lag.max, kafka.listener.concurrency,
+ * kafka.listener.records.per.second.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.autoscale.enabled", havingValue = "true", matchIfMissing = true)
+public class ListenerConcurrencyController {
+
+    private static final Logger log = LoggerFactory.getLogger(ListenerConcurrencyController.class);
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final KafkaAdmin kafkaAdmin;
+    private final LagScalingPolicy policy;
+    private final MovieDigestBuffer digestBuffer;
+
+    private final AtomicLong totalLag = new AtomicLong();
+    private final AtomicLong maxPartitionLag = new AtomicLong();
+    private final AtomicInteger concurrency = new AtomicInteger();
+    private final AtomicLong recordsPerSecond = new AtomicLong();
+
+    // Сумма закоммиченных оффсетов на прошлом замере - по ее приросту считается скорость обработки
+    private long lastCommittedTotal = -1;
+    private long lastSampleAt;
+
+    private AdminClient adminClient;
+
+    @Value("${kafka.topics.movie-daily:movie-topic}")
+    private String movieTopic;
+
+    @Value("${spring.kafka.consumer.group-id:movie-email-consumer-group}")
+    private String groupId;
+
+    @Value("${kafka.autoscale.max-concurrency:6}")
+    private int maxConcurrency;
+
+    @Value("${kafka.autoscale.request-timeout-ms:10000}")
+    private long requestTimeoutMs;
+
+    // Сколько ждать отправки буфера дайджеста перед перезапуском контейнера
+    @Value("${kafka.autoscale.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+
+    public ListenerConcurrencyController(KafkaListenerEndpointRegistry listenerRegistry, KafkaAdmin kafkaAdmin,
+                                         MovieDigestBuffer digestBuffer, MeterRegistry meterRegistry,
+                                         @Value("${kafka.autoscale.min-concurrency:1}") int minConcurrency,
+                                         @Value("${kafka.autoscale.scale-up-lag:1000}") long scaleUpLag,
+                                         @Value("${kafka.autoscale.scale-down-lag:100}") long scaleDownLag,
+                                         @Value("${kafka.autoscale.scale-up-samples:2}") int scaleUpSamples,
+                                         @Value("${kafka.autoscale.scale-down-samples:5}") int scaleDownSamples,
+                                         @Value("${kafka.autoscale.cooldown-ms:120000}") long cooldownMs) {
+        this.listenerRegistry = listenerRegistry;
+        this.kafkaAdmin = kafkaAdmin;
+        this.digestBuffer = digestBuffer;
+        this.policy = new LagScalingPolicy(minConcurrency, scaleUpLag, scaleDownLag,
+                scaleUpSamples, scaleDownSamples, cooldownMs);
+        meterRegistry.gauge("kafka.listener.lag", totalLag);
+        meterRegistry.gauge("kafka.listener.lag.max", maxPartitionLag);
+        meterRegistry.gauge("kafka.listener.concurrency", concurrency);
+        meterRegistry.gauge("kafka.listener.records.per.second", recordsPerSecond);
+    }
+
+    @PostConstruct
+    public void start() {
+        adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+    }
+
+    @PreDestroy
+    public void stop() {
+        adminClient.close();
+    }
+
+    @Scheduled(initialDelayString = "${kafka.autoscale.interval-ms:30000}",
+            fixedDelayString = "${kafka.autoscale.interval-ms:30000}")
+    public void sample() {
+        MessageListenerContainer listener = listenerRegistry.getListenerContainer(KafkaMovieListener.LISTENER_ID);
+        if (!(listener instanceof ConcurrentMessageListenerContainer) || !listener.isRunning()) {
+            return;
+        }
+        ConcurrentMessageListenerContainer<?, ?> container = (ConcurrentMessageListenerContainer<?, ?>) listener;
+
+        try {
+            Map<TopicPartition, Long> endOffsets = endOffsets();
+            Map<TopicPartition, OffsetAndMetadata> committed = adminClient
+                    .listConsumerGroupOffsets(groupId)
+                    .partitionsToOffsetAndMetadata()
+                    .get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+
+            long lag = 0;
+            long maxLag = 0;
+            long committedTotal = 0;
+            for (Map.Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
+                OffsetAndMetadata offset = committed.get(entry.getKey());
+                long position = offset != null ? offset.offset() : 0;
+                long partitionLag = Math.max(0, entry.getValue() - position);
+                lag += partitionLag;
+                maxLag = Math.max(maxLag, partitionLag);
+                committedTotal += position;
+            }
+            updateMetrics(lag, maxLag, committedTotal, container.getConcurrency());
+
+            if (container.isPauseRequested()) {
+                return;
+            }
+            int current = container.getConcurrency();
+            int limit = Math.min(maxConcurrency, endOffsets.size());
+            int target = policy.next(current, lag, limit, System.currentTimeMillis());
+            if (target != current) {
+                resize(container, current, target, lag);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось получить lag группы {}: {}", groupId, e.getMessage());
+        }
+    }
+
+    private Map<TopicPartition, Long> endOffsets() throws Exception {
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        adminClient.describeTopics(List.of(movieTopic))
+                .allTopicNames()
+                .get(requestTimeoutMs, TimeUnit.MILLISECONDS)
+                .get(movieTopic)
+                .partitions()
+                .forEach(partition -> request.put(new TopicPartition(movieTopic, partition.partition()),
+                        OffsetSpec.latest()));
+
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latest = adminClient.listOffsets(request)
+                .all()
+                .get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        latest.forEach((partition, info) -> endOffsets.put(partition, info.offset()));
+        return endOffsets;
+    }
+
+    private void updateMetrics(long lag, long maxLag, long committedTotal, int currentConcurrency) {
+        long now = System.currentTimeMillis();
+        if (lastCommittedTotal >= 0 && now > lastSampleAt) {
+            long processed = Math.max(0, committedTotal - lastCommittedTotal);
+            recordsPerSecond.set(processed * 1000 / (now - lastSampleAt));
+        }
+        lastCommittedTotal = committedTotal;
+        lastSampleAt = now;
+        totalLag.set(lag);
+        maxPartitionLag.set(maxLag);
+        concurrency.set(currentConcurrency);
+    }
+
+    /**
+     * Число потоков применяется только при старте контейнера, поэтому он перезапускается.
+     * Подтверждения фильмов из буфера принадлежат текущим консьюмерам и после ребаланса
+     * не закоммитятся, поэтому сначала чтение ставится на паузу и буфер отправляется.
+     * Если буфер не ушел за drain-timeout-ms, перезапуск откладывается до следующего замера.
+     */
+    private void resize(ConcurrentMessageListenerContainer<?, ?> container, int current, int target, long lag)
+            throws InterruptedException {
+        container.pause();
+        if (!digestBuffer.drain(drainTimeoutMs)) {
+            log.warn("⚠️ Буфер дайджеста не отправлен за {} мс (фильмов: {}), потоки слушателя не меняются",
+                    drainTimeoutMs, digestBuffer.size());
+            container.resume();
+            return;
+        }
+
+        log.info("⚖️ Lag {}: потоков слушателя {} -> {}", lag, current, target);
+        container.stop(() -> {
+            container.setConcurrency(target);
+            container.resume();
+            container.start();
+            concurrency.set(target);
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.MovieOutboxRepository;
+import com.bank.movieservice.repository.MovieRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Локальный пул дайджеста: фильмы, которые уже есть в базе, но еще не отправлялись.
+ *
+ * Планировщик сначала берет отсюда лучшие по рейтингу фильмы жанра дня и идет в API
+ * Кинопоиска только за недостающими. Выбранные фильмы отмечаются digest_sent_at и ставятся
+ * в movie_outbox в одной транзакции, так что фильм не уйдет в дайджест дважды.
+ */
+@Service
+public class LocalMoviePool {
+
+    private final MovieRepository movieRepository;
+    private final MovieOutboxRepository outboxRepository;
+
+    public LocalMoviePool(MovieRepository movieRepository, MovieOutboxRepository outboxRepository) {
+        this.movieRepository = movieRepository;
+        this.outboxRepository = outboxRepository;
+    }
+
+    /**
+     * Взять до limit лучших неотправленных фильмов среза и поставить их в дайджест
+     * @param claimedFilmIds общий для срезов запуска набор: фильм двух жанров берет один срез
+     */
+    @Transactional
+    public List<Movie> takeUnsent(GenreSlice slice, int limit, Set<Long> claimedFilmIds) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        boolean anyYear = slice.yearFrom() == null && slice.yearTo() == null;
+        BigDecimal ratingFrom = BigDecimal.valueOf(slice.ratingFrom() != null ? slice.ratingFrom() : 0.0);
+        // С запасом: часть кандидатов может оказаться уже взята другим срезом этого запуска
+        List<Movie> candidates = movieRepository.findUnsentByGenre(slice.genre(), ratingFrom, anyYear,
+                slice.yearFrom() != null ? slice.yearFrom() : 0,
+                slice.yearTo() != null ? slice.yearTo() : 9999,
+                PageRequest.of(0, limit * 2));
+
+        List<Movie> taken = new ArrayList<>(limit);
+        for (Movie movie : candidates) {
+            if (taken.size() == limit) {
+                break;
+            }
+            if (claimedFilmIds.add(movie.getFilmId())) {
+                taken.add(movie);
+            }
+        }
+        if (taken.isEmpty()) {
+            return taken;
+        }
+
+        // DATETIME(3) хранит миллисекунды - иначе отметку не найти сравнением на равенство
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        List<Long> ids = taken.stream().map(Movie::getId).collect(Collectors.toList());
+        int marked = movieRepository.markDigestSent(ids, now);
+        if (marked < taken.size()) {
+            // Часть фильмов уже отметил другой запуск - в outbox только свои, иначе фильм уйдет дважды
+            Set<Long> ours = new HashSet<>(movieRepository.findIdsByDigestSentAt(ids, now));
+            taken.removeIf(movie -> !ours.contains(movie.getId()));
+            if (taken.isEmpty()) {
+                return taken;
+            }
+        }
+        outboxRepository.enqueue(taken, now);
+        return taken;
+    }
+}
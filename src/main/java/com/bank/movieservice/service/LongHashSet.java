@@ -0,0 +1,121 @@
+package com.bank.movieservice.service;
+
+import java.util.Arrays;
+
+/**
+ * Множество примитивных long с открытой адресацией и линейным пробированием.
+ *
+ * Ключи хранятся прямо в long[], без Long и узлов HashMap: при заполнении не больше чем
+ * наполовину это 16-32 байта на элемент. clear() обнуляет массив и не выделяет память,
+ * поэтому одно и то же множество можно переиспользовать между окнами дедупликации.
+ * Не потокобезопасно.
+ */
+public final class LongHashSet {
+
+    // 0 - признак пустой ячейки, сам ключ 0 хранится отдельным флагом
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // Заполнение не больше 50%, чтобы цепочки пробирования оставались короткими
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return true, если значение добавлено, false - если уже было в множестве
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int slot = slotOf(value);
+        long current;
+        while ((current = keys[slot]) != EMPTY) {
+            if (current == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+        int slot = slotOf(value);
+        long current;
+        while ((current = keys[slot]) != EMPTY) {
+            if (current == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Очистить множество, сохранив выделенный массив
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Память, занимаемая массивом ключей (без заголовка объекта)
+     */
+    public long memoryBytes() {
+        return 8L * keys.length;
+    }
+
+    private int slotOf(long value) {
+        // Перемешивание битов (finalizer из MurmurHash3): filmId идут подряд и без него
+        // собирались бы в длинные кластеры
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                int slot = slotOf(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.kafka.MovieRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Буфер фильмов для ежедневного email-дайджеста.
+ *
+ * Потоки-консьюмеры собирают фильмы своего poll() в локальный список и передают его сюда
+ * без блокировок (ConcurrentLinkedQueue). Поток-флашер собирает отчет и передает письмо
+ * в EmailDispatcher, поэтому SMTP не задерживает ни один консьюмер.
+ *
+ * Буфер отправляется, когда срабатывает любое из условий:
+ * набралось batch-size фильмов, самый старый фильм ждет дольше linger-ms,
+ * оценочный размер превысил max-buffer-bytes, приложение останавливается.
+ *
+ * Буфер ограничен: при заполнении до max-buffered-movies или серии неудачных отправок
+ * подписчик получает сигнал приостановить чтение, а после разгрузки - продолжить.
+ * Acknowledgment пачки подтверждается только когда все ее фильмы ушли в письме,
+ * поэтому при падении неотправленные сообщения будут прочитаны заново. Пачка, целиком
+ * отсеянная дедупликацией, встает в очередь за уже буферизованными фильмами и
+ * подтверждается после них - коммит оффсета не обгоняет неотправленные фильмы.
+ */
+@Component
+public class MovieDigestBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieDigestBuffer.class);
+
+    public enum FlushReason { SIZE, LINGER, BYTES, MANUAL, RETRY, SHUTDOWN }
+
+    private final EmailDispatcher emailDispatcher;
+    private final ReportRowWriter rowWriter;
+    private final MovieRecordResolver recordResolver;
+
+    // Очередь передачи от консьюмеров к флашеру
+    private final Queue<BufferedMovie> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    // Время попадания в буфер самого старого фильма, 0 - буфер пуст
+    private final AtomicLong oldestBufferedAt = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // Фильмы, которые не удалось отправить (учтены в счетчиках). Доступ только из потока флашера
+    private final List<BufferedMovie> unsent = new ArrayList<>();
+    private int consecutiveFailures;
+    // Пачка, которая сейчас отправляется, и отложенный запрос отправки. Доступ только из потока флашера
+    private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+    private FlushReason deferredReason;
+
+    // Состояние backpressure и подписчик на его изменения (пауза/возобновление чтения)
+    private final AtomicBoolean saturated = new AtomicBoolean();
+    private volatile Consumer<Boolean> pressureListener = paused -> { };
+    private volatile boolean flusherHealthy = true;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "movie-email-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<FlushReason, Counter> flushCounters = new EnumMap<>(FlushReason.class);
+
+    @Value("${email.daily-report.recipient:mym99527@gmail.com}")
+    private String recipientEmail;
+
+    @Value("${email.daily-report.subject-prefix:🎬 Ежедневные фильмы}")
+    private String emailSubjectPrefix;
+
+    @Value("${kafka.consumer.batch-size:50}")
+    private int batchSize;
+
+    @Value("${kafka.consumer.linger-ms:600000}")
+    private long lingerMs;
+
+    @Value("${kafka.consumer.max-buffer-bytes:1048576}")
+    private long maxBufferBytes;
+
+    @Value("${kafka.consumer.flush-check-interval-ms:1000}")
+    private long flushCheckIntervalMs;
+
+    @Value("${kafka.consumer.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+
+    @Value("${kafka.consumer.max-buffered-movies:1000}")
+    private int maxBufferedMovies;
+
+    // После стольких неудачных отправок подряд флашер считается нездоровым
+    @Value("${kafka.consumer.max-flush-failures:3}")
+    private int maxFlushFailures;
+
+    @Value("${kafka.consumer.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    @Value("${kafka.consumer.max-retry-backoff-ms:300000}")
+    private long maxRetryBackoffMs;
+
+    public MovieDigestBuffer(EmailDispatcher emailDispatcher, ReportRowWriter rowWriter,
+                             MovieRecordResolver recordResolver, MeterRegistry meterRegistry) {
+        this.emailDispatcher = emailDispatcher;
+        this.rowWriter = rowWriter;
+        this.recordResolver = recordResolver;
+        for (FlushReason reason : FlushReason.values()) {
+            flushCounters.put(reason, Counter.builder("movie.digest.flush")
+                    .description("Отправки email-дайджеста по причине срабатывания")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        meterRegistry.gauge("movie.digest.buffered", pendingCount);
+        meterRegistry.gauge("movie.digest.buffered.bytes", pendingBytes);
+        meterRegistry.gauge("movie.digest.saturated", saturated, flag -> flag.get() ? 1 : 0);
+    }
+
+    /**
+     * Подписчик на изменение состояния буфера: true - читать нельзя, false - можно продолжать
+     */
+    public void setPressureListener(Consumer<Boolean> pressureListener) {
+        this.pressureListener = pressureListener;
+    }
+
+    @PostConstruct
+    public void startLingerCheck() {
+        flusher.scheduleWithFixedDelay(this::checkLinger, flushCheckIntervalMs, flushCheckIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Передать фильмы одного poll() в буфер. Вызывается из потоков-консьюмеров.
+     * Acknowledgment подтверждается после отправки последнего фильма пачки.
+     * @return количество фильмов в буфере после добавления
+     */
+    public int addAll(List<MovieRecord> movies, Acknowledgment acknowledgment) {
+        if (movies.isEmpty()) {
+            if (pendingCount.get() == 0) {
+                // Подтверждать нечего ждать - в пачке не было валидных фильмов
+                acknowledgment.acknowledge();
+                return 0;
+            }
+            // Повторная доставка после ребаланса: фильмы пачки отсеяны как повторы, но их
+            // оригиналы могут еще лежать в буфере. Подтверждение встает в очередь за ними
+            pending.add(new BufferedMovie(null, new PollAck(acknowledgment, 1), 0));
+            oldestBufferedAt.compareAndSet(0, System.currentTimeMillis());
+            if (pendingCount.get() == 0) {
+                // Буфер успел опустеть - отдельное письмо не нужно, флашер просто подтвердит пачку
+                requestFlush(FlushReason.MANUAL);
+            }
+            return pendingCount.get();
+        }
+
+        PollAck pollAck = new PollAck(acknowledgment, movies.size());
+        long bytes = 0;
+        for (MovieRecord movie : movies) {
+            BufferedMovie buffered = new BufferedMovie(movie, pollAck, estimateBytes(movie));
+            bytes += buffered.bytes;
+            pending.add(buffered);
+        }
+
+        oldestBufferedAt.compareAndSet(0, System.currentTimeMillis());
+        int buffered = pendingCount.addAndGet(movies.size());
+        long bufferedBytes = pendingBytes.addAndGet(bytes);
+
+        if (buffered >= batchSize) {
+            requestFlush(FlushReason.SIZE);
+        } else if (bufferedBytes >= maxBufferBytes) {
+            requestFlush(FlushReason.BYTES);
+        }
+        updatePressure();
+        return buffered;
+    }
+
+    public boolean isSaturated() {
+        return saturated.get();
+    }
+
+    public int size() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Отправить все накопленное и дождаться подтверждения пачек. Вызывается перед
+     * перезапуском контейнера: подтверждения принадлежат его текущим консьюмерам
+     * @return true, если буфер опустел за timeoutMs
+     */
+    public boolean drain(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        requestFlush(FlushReason.MANUAL);
+        while (pendingCount.get() > 0 || !pending.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(Math.min(flushCheckIntervalMs, remaining));
+        }
+        return true;
+    }
+
+    /**
+     * Запросить асинхронную отправку всего, что накопилось в буфере
+     */
+    public void requestFlush() {
+        requestFlush(FlushReason.MANUAL);
+    }
+
+    private void requestFlush(FlushReason reason) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> flush(reason));
+        }
+    }
+
+    private void checkLinger() {
+        long oldest = oldestBufferedAt.get();
+        if (oldest != 0 && System.currentTimeMillis() - oldest >= lingerMs) {
+            requestFlush(FlushReason.LINGER);
+        }
+    }
+
+    private CompletableFuture<Void> flush(FlushReason reason) {
+        flushScheduled.set(false);
+
+        // В полете не больше одной пачки: подтверждения Kafka идут строго по порядку
+        if (!inFlight.isDone()) {
+            deferredReason = reason;
+            return inFlight;
+        }
+
+        // Сбрасываем возраст до разбора очереди: фильмы, пришедшие во время отправки,
+        // заново выставят время и запланируют еще один проход
+        oldestBufferedAt.set(0);
+
+        List<BufferedMovie> batch = new ArrayList<>(unsent);
+        BufferedMovie movie;
+        while ((movie = pending.poll()) != null) {
+            batch.add(movie);
+        }
+        unsent.clear();
+
+        if (batch.isEmpty()) {
+            log.debug("Нет фильмов для отправки ({})", reason);
+            return inFlight;
+        }
+        List<MovieRecord> records = toRecords(batch);
+        if (records.isEmpty()) {
+            // Только подтверждения отсеянных пачек - письмо не нужно
+            release(batch);
+            return inFlight;
+        }
+
+        // Формируем отчет здесь, а SMTP оставляем воркерам EmailDispatcher.
+        // Claim-check ссылки разрешаются одним запросом к БД на всю пачку
+        String report;
+        try {
+            report = rowWriter.digestCsv(recordResolver.resolve(records));
+        } catch (Exception e) {
+            // БД недоступна - пачка возвращается в буфер, как при ошибке отправки
+            inFlight = CompletableFuture.failedFuture(e);
+            onFlushCompleted(batch, reason, e);
+            return inFlight;
+        }
+        String subject = emailSubjectPrefix + " - " + java.time.LocalDate.now();
+
+        inFlight = emailDispatcher.submit(recipientEmail, subject, report, "csv")
+                .whenCompleteAsync((ignored, error) -> onFlushCompleted(batch, reason, error), flusher);
+        return inFlight;
+    }
+
+    private void onFlushCompleted(List<BufferedMovie> batch, FlushReason reason, Throwable error) {
+        int movies = countMovies(batch);
+        try {
+            if (error == null) {
+                release(batch);
+                consecutiveFailures = 0;
+                flusherHealthy = true;
+                flushCounters.get(reason).increment();
+                log.info("✅ Отправлен email с {} фильмами на адрес: {} (причина: {})",
+                        movies, recipientEmail, reason);
+            } else {
+                // Возвращаем фильмы в начало следующей пачки. Возраст отсчитываем заново,
+                // чтобы проверка linger не повторяла неудачную отправку каждую секунду
+                unsent.addAll(0, batch);
+                oldestBufferedAt.compareAndSet(0, System.currentTimeMillis());
+                consecutiveFailures++;
+                flusherHealthy = consecutiveFailures < maxFlushFailures;
+
+                long backoff = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(consecutiveFailures - 1, 16));
+                if (!flusher.isShutdown()) {
+                    flusher.schedule(() -> requestFlush(FlushReason.RETRY), backoff, TimeUnit.MILLISECONDS);
+                }
+                log.error("❌ Ошибка отправки email ({} подряд), фильмов отложено: {}, повтор через {} мс",
+                        consecutiveFailures, movies, backoff, error);
+            }
+        } finally {
+            updatePressure();
+            // После ошибки отложенный запрос не нужен - повтор уже запланирован
+            FlushReason next = deferredReason;
+            deferredReason = null;
+            if (next != null && error == null) {
+                requestFlush(next);
+            }
+        }
+    }
+
+    private void release(List<BufferedMovie> batch) {
+        long bytes = 0;
+        for (BufferedMovie movie : batch) {
+            bytes += movie.bytes;
+            // Пачка из Kafka подтверждается, когда отправлен последний ее фильм
+            if (movie.pollAck.remaining.decrementAndGet() == 0) {
+                movie.pollAck.acknowledgment.acknowledge();
+            }
+        }
+        pendingCount.addAndGet(-countMovies(batch));
+        pendingBytes.addAndGet(-bytes);
+    }
+
+    private static int countMovies(List<BufferedMovie> batch) {
+        int movies = 0;
+        for (BufferedMovie buffered : batch) {
+            if (buffered.movie != null) {
+                movies++;
+            }
+        }
+        return movies;
+    }
+
+    /**
+     * Пауза при заполнении буфера или нездоровом флашере, возобновление - после разгрузки
+     * до половины емкости при здоровом флашере
+     */
+    private void updatePressure() {
+        int buffered = pendingCount.get();
+        boolean shouldPause = buffered >= maxBufferedMovies || !flusherHealthy;
+        boolean canResume = buffered <= maxBufferedMovies / 2 && flusherHealthy;
+
+        if (shouldPause && saturated.compareAndSet(false, true)) {
+            log.warn("⏸️ Буфер дайджеста переполнен (фильмов: {}, флашер {}), чтение Kafka приостанавливается",
+                    buffered, flusherHealthy ? "работает" : "недоступен");
+            pressureListener.accept(true);
+        } else if (canResume && saturated.compareAndSet(true, false)) {
+            log.info("▶️ Буфер дайджеста разгружен (фильмов: {}), чтение Kafka возобновляется", buffered);
+            pressureListener.accept(false);
+        }
+    }
+
+    /**
+     * Грубая оценка занимаемой памяти: строки в UTF-16 плюс накладные расходы объекта.
+     * У claim-check ссылки строк нет
+     */
+    private static long estimateBytes(MovieRecord movie) {
+        return 64 + 2L * (lengthOf(movie.filmName()) + lengthOf(movie.description())
+                + lengthOf(movie.ratingText()) + lengthOf(movie.genres()));
+    }
+
+    private static int lengthOf(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static List<MovieRecord> toRecords(List<BufferedMovie> batch) {
+        List<MovieRecord> records = new ArrayList<>(batch.size());
+        for (BufferedMovie buffered : batch) {
+            if (buffered.movie != null) {
+                records.add(buffered.movie);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Гарантированная отправка остатка буфера при остановке приложения.
+     * Контейнеры Kafka к этому моменту уже остановлены, новых фильмов не будет.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (flusher.isShutdown()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        try {
+            // Дожидаемся пачки в полете и отправляем все, что осталось
+            while (pendingCount.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                CompletableFuture.supplyAsync(() -> flush(FlushReason.SHUTDOWN), flusher)
+                        .thenCompose(sent -> sent)
+                        .get(remaining, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            log.warn("⚠️ Не удалось отправить остаток буфера за {} мс, фильмов: {}",
+                    shutdownTimeoutMs, pendingCount.get());
+        } catch (ExecutionException e) {
+            log.error("❌ Остаток буфера не отправлен при остановке, фильмов: {}", pendingCount.get(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flusher.shutdownNow();
+        }
+    }
+
+    /**
+     * Acknowledgment одного poll() и число его фильмов, еще не ушедших в письме
+     */
+    private static final class PollAck {
+        private final Acknowledgment acknowledgment;
+        private final AtomicInteger remaining;
+
+        private PollAck(Acknowledgment acknowledgment, int size) {
+            this.acknowledgment = acknowledgment;
+            this.remaining = new AtomicInteger(size);
+        }
+    }
+
+    /**
+     * Фильм в буфере. Без фильма (movie == null) - только подтверждение отсеянной пачки
+     */
+    private static final class BufferedMovie {
+        private final MovieRecord movie;
+        private final PollAck pollAck;
+        private final long bytes;
+
+        private BufferedMovie(MovieRecord movie, PollAck pollAck, long bytes) {
+            this.movie = movie;
+            this.pollAck = pollAck;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.kafka.MovieDigest;
+import com.bank.movieservice.kafka.MovieRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправка дайджестов, собранных Kafka Streams (kafka.streams.enabled=true).
+ * Письмо отправляется синхронно: оффсет дайджеста коммитится только после успешной отправки.
+ */
+@Service
+@ConditionalOnProperty(name = "kafka.streams.enabled", havingValue = "true")
+public class MovieDigestStreamListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieDigestStreamListener.class);
+
+    private final EmailDispatcher emailDispatcher;
+    private final ReportRowWriter rowWriter;
+    private final MovieRecordResolver recordResolver;
+
+    @Value("${email.daily-report.subject-prefix:🎬 Ежедневные фильмы}")
+    private String emailSubjectPrefix;
+
+    @Value("${kafka.streams.send-timeout-ms:120000}")
+    private long sendTimeoutMs;
+
+    public MovieDigestStreamListener(EmailDispatcher emailDispatcher, ReportRowWriter rowWriter,
+                                     MovieRecordResolver recordResolver) {
+        this.emailDispatcher = emailDispatcher;
+        this.rowWriter = rowWriter;
+        this.recordResolver = recordResolver;
+    }
+
+    @KafkaListener(topics = "${kafka.topics.movie-digest:movie-digest-topic}",
+            containerFactory = "digestKafkaListenerContainerFactory")
+    public void sendDigest(MovieDigest digest) throws Exception {
+        List<MovieRecord> movies = recordResolver.resolve(digest.getMovies());
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(digest.getWindowStart()), ZoneId.systemDefault());
+        if (digest.getDropped() > 0) {
+            log.warn("⚠️ Дайджест за {} для {} превысил лимит, не вошло фильмов: {}",
+                    day, digest.getRecipient(), digest.getDropped());
+        }
+        if (movies.isEmpty()) {
+            log.warn("⚠️ Дайджест за {} для {} пуст", day, digest.getRecipient());
+            return;
+        }
+
+        String report = rowWriter.digestCsv(movies);
+        // Дополнение - фильмы корзины, окно которой закрылось уже после отправки дайджеста
+        String subject = emailSubjectPrefix + " - " + day + (digest.isFollowUp() ? " (дополнение)" : "");
+        emailDispatcher.submit(digest.getRecipient(), subject, report, "csv")
+                .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        if (digest.isFollowUp()) {
+            log.info("✅ Отправлено дополнение к дайджесту за {} с {} фильмами на адрес: {}",
+                    day, movies.size(), digest.getRecipient());
+        } else {
+            log.info("✅ Отправлен дайджест за {} с {} фильмами на адрес: {}", day, movies.size(), digest.getRecipient());
+        }
+    }
+}
@@ -0,0 +1,744 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.DTO.response.MovieSearchResponseDTO;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Поиск фильмов по началу слов названия в памяти, без запроса к БД.
+ *
+ * Семантика совпадает с MovieRepository.searchByName: запрос должен быть префиксом названия
+ * или префиксом его части, начинающейся после пробела. Названия приводятся к нижнему регистру
+ * (кириллица и латиница), ё заменяется на е.
+ *
+ * Основной сегмент - отсортированный long[] ссылок (номер фильма, смещение начала слова)
+ * на нормализованные названия: поиск - бинарный поиск нижней границы и проход по соседним
+ * ссылкам, без выделения строк на каждое слово. Фильмы, сохраненные после построения,
+ * попадают в небольшой ConcurrentSkipListMap и вливаются в новый основной сегмент,
+ * когда в нем набирается merge-threshold слов. Сегмент пересобирается в отдельном потоке,
+ * чтобы не задерживать сохраняющий поток; построение и слияние не пересекаются. Пока индекс
+ * строится, поиск идет в БД.
+ *
+ * Нечеткий поиск (fuzzySearch) прощает опечатки: в сегменте для каждой триграммы названия хранится
+ * int[] номеров фильмов. Кандидаты отбираются по числу общих с запросом триграмм (одна правка
+ * портит не больше трех), затем проверяются расстоянием редактирования запроса до ближайшего
+ * фрагмента названия и сортируются по нему. Кандидатов дают только самые короткие списки
+ * триграмм запроса, которых хватает по принципу Дирихле; триграммы длиннее common-gram-limit
+ * кандидатов не дают, если у запроса есть более редкая, и только добавляют счет найденным.
+ */
+@Component
+public class MovieNameIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieNameIndex.class);
+    private static final int LOAD_CHUNK_IDS = 5000;
+
+    private final MovieRepository movieRepository;
+    private final Timer searchTimer;
+    private final Timer fuzzySearchTimer;
+
+    @Value("${movie.search.index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${movie.search.index.merge-threshold:10000}")
+    private int mergeThreshold;
+
+    @Value("${movie.search.fuzzy.max-edits:2}")
+    private int fuzzyMaxEdits;
+
+    @Value("${movie.search.fuzzy.candidate-limit:500}")
+    private int fuzzyCandidateLimit;
+
+    @Value("${movie.search.fuzzy.limit:20}")
+    private int fuzzyLimit;
+
+    @Value("${movie.search.fuzzy.common-gram-limit:20000}")
+    private int commonGramLimit;
+
+    // Все проиндексированные фильмы по id: готовый ответ и нормализованное название для проверки
+    private final Map<Long, IndexedMovie> movies = new ConcurrentHashMap<>();
+    // Слова фильмов, добавленных после построения основного сегмента: "слово...\0id" -> id
+    private final ConcurrentSkipListMap<String, Long> recent = new ConcurrentSkipListMap<>();
+    // Фильмы, которых нет в основном сегменте: для нечеткого поиска проверяются перебором
+    private final Set<Long> recentIds = ConcurrentHashMap.newKeySet();
+    private volatile Segment segment = Segment.EMPTY;
+    private volatile boolean ready;
+
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private final ExecutorService merger = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "movie-name-index-merge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MovieNameIndex(MovieRepository movieRepository, MeterRegistry meterRegistry) {
+        this.movieRepository = movieRepository;
+        this.searchTimer = Timer.builder("movie.search.index.duration")
+                .description("Время поиска по индексу названий")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.fuzzySearchTimer = Timer.builder("movie.search.fuzzy.duration")
+                .description("Время нечеткого поиска по триграммам названий")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("movie.search.index.movies", movies, Map::size);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Построить индекс в фоне после старта, чтобы не задерживать готовность приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread builder = new Thread(this::rebuild, "movie-name-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        merger.shutdownNow();
+    }
+
+    /**
+     * Полное построение из БД. Под той же блокировкой, что и слияние: слияние во время загрузки
+     * поставило бы сегмент только из уже прочитанных фильмов
+     */
+    public synchronized void rebuild() {
+        long startedAt = System.nanoTime();
+        try {
+            MovieRepository.IdRange range = movieRepository.findIdRange();
+            if (range != null && range.getMinId() != null && range.getMaxId() != null) {
+                for (long from = range.getMinId(); from <= range.getMaxId(); from += LOAD_CHUNK_IDS) {
+                    long to = Math.min(range.getMaxId(), from + LOAD_CHUNK_IDS - 1);
+                    for (Movie movie : movieRepository.findWithGenresByIdBetween(from, to)) {
+                        put(movie);
+                    }
+                }
+            }
+            installSegment();
+            ready = true;
+            log.info("🔎 Индекс названий построен: фильмов {}, слов {} за {} мс",
+                    movies.size(), segment.size(), (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (Exception e) {
+            log.error("❌ Не удалось построить индекс названий, поиск остается в БД: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Добавить сохраненные фильмы. Внутри транзакции - только после коммита,
+     * чтобы откаченные фильмы не появились в поиске.
+     */
+    public void indexAfterCommit(Collection<Movie> saved) {
+        if (!enabled || saved.isEmpty()) {
+            return;
+        }
+        List<Movie> snapshot = new ArrayList<>(saved);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(snapshot);
+                }
+            });
+        } else {
+            index(snapshot);
+        }
+    }
+
+    public void index(Collection<Movie> saved) {
+        for (Movie movie : saved) {
+            IndexedMovie indexed = put(movie);
+            if (indexed == null) {
+                continue;
+            }
+            recentIds.add(movie.getId());
+            String name = indexed.normalizedName();
+            for (int offset = 0; offset < name.length(); offset++) {
+                if (isWordStart(name, offset)) {
+                    recent.put(name.substring(offset) + '\0' + movie.getId(), movie.getId());
+                }
+            }
+        }
+        if (recent.size() >= mergeThreshold && mergeScheduled.compareAndSet(false, true)) {
+            merger.execute(() -> {
+                try {
+                    merge();
+                } finally {
+                    mergeScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    public List<MovieSearchResponseDTO> search(String query) {
+        long startedAt = System.nanoTime();
+        String normalized = normalize(query.trim());
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        TreeSet<Long> found = new TreeSet<>();
+
+        segment.collect(normalized, found);
+        for (Map.Entry<String, Long> entry : recent.tailMap(normalized).entrySet()) {
+            if (!entry.getKey().startsWith(normalized)) {
+                break;
+            }
+            found.add(entry.getValue());
+        }
+
+        List<MovieSearchResponseDTO> results = new ArrayList<>(found.size());
+        for (Long id : found) {
+            IndexedMovie movie = movies.get(id);
+            // Название могло смениться после индексации - старые слова остаются в сегменте до слияния
+            if (movie != null && matches(movie.normalizedName(), normalized)) {
+                results.add(movie.response());
+            }
+        }
+        searchTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return results;
+    }
+
+    /**
+     * Поиск с опечатками: до max-edits правок (одна на каждые 4 символа запроса) относительно
+     * любого фрагмента названия. Короткие запросы ищутся обычным префиксным поиском.
+     */
+    public List<MovieSearchResponseDTO> fuzzySearch(String query) {
+        String normalized = normalize(query.trim());
+        int maxEdits = Math.min(fuzzyMaxEdits, normalized.length() / 4);
+        if (maxEdits == 0) {
+            return search(normalized);
+        }
+        long startedAt = System.nanoTime();
+        long[] queryGrams = trigrams(normalized);
+        int minShared = Math.max(1, queryGrams.length - 3 * maxEdits);
+
+        Map<Long, Integer> candidates = new HashMap<>();
+        segment.collectSimilar(queryGrams, minShared, fuzzyCandidateLimit, commonGramLimit, candidates);
+        for (Long id : recentIds) {
+            IndexedMovie movie = movies.get(id);
+            if (movie != null) {
+                int shared = sharedCount(queryGrams, trigrams(movie.normalizedName()));
+                if (shared >= minShared) {
+                    candidates.merge(id, shared, Math::max);
+                }
+            }
+        }
+
+        List<FuzzyMatch> matches = new ArrayList<>();
+        candidates.forEach((id, shared) -> {
+            IndexedMovie movie = movies.get(id);
+            if (movie == null) {
+                return;
+            }
+            // Проверка по текущему названию: в сегменте могли остаться триграммы старого
+            int distance = substringDistance(normalized, movie.normalizedName(), maxEdits);
+            if (distance <= maxEdits) {
+                matches.add(new FuzzyMatch(id, distance, shared, movie));
+            }
+        });
+        matches.sort(Comparator.comparingInt(FuzzyMatch::distance)
+                .thenComparing(Comparator.comparingInt(FuzzyMatch::shared).reversed())
+                .thenComparingInt(match -> match.movie().normalizedName().length())
+                .thenComparingLong(FuzzyMatch::id));
+
+        List<MovieSearchResponseDTO> results = matches.stream()
+                .limit(fuzzyLimit)
+                .map(match -> match.movie().response())
+                .toList();
+        fuzzySearchTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return results;
+    }
+
+    private synchronized void merge() {
+        // До готовности все недавние фильмы войдут в сегмент rebuild
+        if (!ready || recent.size() < mergeThreshold) {
+            return;
+        }
+        try {
+            installSegment();
+            log.debug("Индекс названий пересобран: фильмов {}, слов {}", movies.size(), segment.size());
+        } catch (RuntimeException e) {
+            log.error("❌ Не удалось пересобрать индекс названий: {}", e.getMessage());
+        }
+    }
+
+    private void installSegment() {
+        List<String> merged = new ArrayList<>(recent.keySet());
+        List<Long> mergedIds = new ArrayList<>(recentIds);
+        segment = Segment.build(movies);
+        // Слова, добавленные во время построения, остаются в recent до следующего слияния
+        merged.forEach(recent::remove);
+        mergedIds.forEach(recentIds::remove);
+    }
+
+    private IndexedMovie put(Movie movie) {
+        if (movie.getId() == null || movie.getFilmName() == null) {
+            return null;
+        }
+        IndexedMovie indexed = new IndexedMovie(normalize(movie.getFilmName()), MovieSearchResponseDTO.fromEntity(movie));
+        movies.put(movie.getId(), indexed);
+        return indexed;
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private static boolean isWordStart(String name, int offset) {
+        return offset == 0 || name.charAt(offset - 1) == ' ';
+    }
+
+    /**
+     * Различные триграммы строки, упакованные в long по 16 бит на символ, по возрастанию
+     */
+    static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static int sharedCount(long[] a, long[] b) {
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Наименьшее расстояние Левенштейна от запроса до фрагмента текста (алгоритм Селлерса).
+     * Если оно больше maxEdits, возвращается maxEdits + 1. В каждом столбце считаются только строки
+     * до последней, уложившейся в порог в предыдущем столбце, плюс одна (отсечение Укконена).
+     */
+    static int substringDistance(String query, String text, int maxEdits) {
+        int length = query.length();
+        int[] previous = new int[length + 1];
+        int[] current = new int[length + 1];
+        for (int i = 0; i <= length; i++) {
+            previous[i] = i;
+        }
+        int lastActive = Math.min(length, maxEdits);
+        int best = length;
+        for (int j = 0; j < text.length() && best > 0; j++) {
+            char c = text.charAt(j);
+            int rows = Math.min(length, lastActive + 1);
+            current[0] = 0;
+            for (int i = 1; i <= rows; i++) {
+                int cost = query.charAt(i - 1) == c ? 0 : 1;
+                current[i] = Math.min(Math.min(previous[i] + 1, current[i - 1] + 1), previous[i - 1] + cost);
+            }
+            if (rows < length) {
+                // Непосчитанная строка точно больше порога - следующий столбец прочитает ее как границу
+                current[rows + 1] = maxEdits + 1;
+            } else {
+                best = Math.min(best, current[length]);
+            }
+            lastActive = rows;
+            while (current[lastActive] > maxEdits) {
+                lastActive--;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(best, maxEdits + 1);
+    }
+
+    private static boolean matches(String name, String query) {
+        if (name.startsWith(query)) {
+            return true;
+        }
+        for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+            if (name.startsWith(query, i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record IndexedMovie(String normalizedName, MovieSearchResponseDTO response) {}
+
+    private record FuzzyMatch(long id, int distance, int shared, IndexedMovie movie) {}
+
+    /**
+     * Неизменяемый отсортированный массив ссылок на начала слов: старшие 48 бит - номер фильма
+     * в names/ids, младшие 16 - смещение слова в названии. Рядом - списки номеров фильмов
+     * по триграммам для нечеткого поиска.
+     */
+    private static final class Segment {
+
+        static final Segment EMPTY = new Segment(new String[0], new long[0], new long[0], new TrigramTable(), new int[0][]);
+
+        private final String[] names;
+        private final long[] ids;
+        private final long[] refs;
+        // Номер триграммы в gramIds -> номера фильмов по возрастанию
+        private final TrigramTable gramIds;
+        private final int[][] postings;
+
+        private Segment(String[] names, long[] ids, long[] refs, TrigramTable gramIds, int[][] postings) {
+            this.names = names;
+            this.ids = ids;
+            this.refs = refs;
+            this.gramIds = gramIds;
+            this.postings = postings;
+        }
+
+        static Segment build(Map<Long, IndexedMovie> movies) {
+            List<Map.Entry<Long, IndexedMovie>> entries = new ArrayList<>(movies.entrySet());
+            String[] names = new String[entries.size()];
+            long[] ids = new long[entries.size()];
+            List<Long> refs = new ArrayList<>(entries.size() * 3);
+            for (int slot = 0; slot < entries.size(); slot++) {
+                names[slot] = entries.get(slot).getValue().normalizedName();
+                ids[slot] = entries.get(slot).getKey();
+                String name = names[slot];
+                for (int offset = 0; offset < name.length() && offset <= 0xFFFF; offset++) {
+                    if (isWordStart(name, offset)) {
+                        refs.add(((long) slot << 16) | offset);
+                    }
+                }
+            }
+            Comparator<Long> bySuffix = (a, b) -> compareSuffixes(names, a, b);
+            refs.sort(bySuffix);
+            long[] sortedRefs = refs.stream().mapToLong(Long::longValue).toArray();
+
+            // Два прохода по триграммам: длины списков, затем заполнение массивов точного размера
+            TrigramTable gramIds = new TrigramTable();
+            int[] sizes = new int[1024];
+            for (String name : names) {
+                for (long gram : trigrams(name)) {
+                    int gramId = gramIds.add(gram);
+                    if (gramId == sizes.length) {
+                        sizes = Arrays.copyOf(sizes, sizes.length * 2);
+                    }
+                    sizes[gramId]++;
+                }
+            }
+            int[][] postings = new int[gramIds.size()][];
+            for (int gramId = 0; gramId < postings.length; gramId++) {
+                postings[gramId] = new int[sizes[gramId]];
+                sizes[gramId] = 0;
+            }
+            for (int slot = 0; slot < names.length; slot++) {
+                for (long gram : trigrams(names[slot])) {
+                    int gramId = gramIds.get(gram);
+                    postings[gramId][sizes[gramId]++] = slot;
+                }
+            }
+            return new Segment(names, ids, sortedRefs, gramIds, postings);
+        }
+
+        int size() {
+            return refs.length;
+        }
+
+        void collect(String query, Collection<Long> found) {
+            int low = 0;
+            int high = refs.length;
+            // Нижняя граница: первое слово, которое не меньше запроса
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareToQuery(refs[mid], query) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < refs.length; i++) {
+                long ref = refs[i];
+                if (!names[(int) (ref >>> 16)].startsWith(query, (int) (ref & 0xFFFF))) {
+                    break;
+                }
+                found.add(ids[(int) (ref >>> 16)]);
+            }
+        }
+
+        /**
+         * Фильмы, у которых не меньше minShared общих с запросом триграмм; при избытке -
+         * limit фильмов с наибольшим числом общих. Фильм с minShared общими триграммами есть
+         * хотя бы в одном из (триграмм - minShared + 1) самых коротких списков: только они
+         * заводят кандидатов, а из них - не длиннее commonGramLimit, кроме самого короткого.
+         * Остальные списки лишь досчитывают уже найденных кандидатов.
+         */
+        void collectSimilar(long[] queryGrams, int minShared, int limit, int commonGramLimit, Map<Long, Integer> found) {
+            int[][] lists = new int[queryGrams.length][];
+            int listCount = 0;
+            for (long gram : queryGrams) {
+                int gramId = gramIds.get(gram);
+                if (gramId >= 0) {
+                    lists[listCount++] = postings[gramId];
+                }
+            }
+            if (listCount < minShared) {
+                return;
+            }
+            Arrays.sort(lists, 0, listCount, Comparator.comparingInt(list -> list.length));
+
+            int probeCount = listCount - minShared + 1;
+            int probed = 0;
+            for (int i = 0; i < probeCount; i++) {
+                if (i > 0 && lists[i].length > commonGramLimit) {
+                    probeCount = i;
+                    break;
+                }
+                probed += lists[i].length;
+            }
+            SlotCounter counts = new SlotCounter(Math.min(probed, names.length));
+            for (int i = 0; i < probeCount; i++) {
+                for (int slot : lists[i]) {
+                    counts.increment(slot);
+                }
+            }
+            for (int i = probeCount; i < listCount; i++) {
+                counts.incrementExisting(lists[i]);
+            }
+
+            // Число общих триграмм в старших битах: сортировка по убыванию дает лучших кандидатов
+            long[] ranked = new long[counts.size()];
+            int rankedCount = 0;
+            for (int i = 0; i < counts.size(); i++) {
+                int slot = counts.slotAt(i);
+                int shared = counts.get(slot);
+                if (shared >= minShared) {
+                    ranked[rankedCount++] = ((long) shared << 32) | (Integer.MAX_VALUE - slot);
+                }
+            }
+            Arrays.sort(ranked, 0, rankedCount);
+            for (int i = rankedCount - 1; i >= Math.max(0, rankedCount - limit); i--) {
+                int slot = Integer.MAX_VALUE - (int) ranked[i];
+                found.put(ids[slot], (int) (ranked[i] >>> 32));
+            }
+        }
+
+        private int compareToQuery(long ref, String query) {
+            String name = names[(int) (ref >>> 16)];
+            int offset = (int) (ref & 0xFFFF);
+            int length = Math.min(name.length() - offset, query.length());
+            for (int i = 0; i < length; i++) {
+                int diff = name.charAt(offset + i) - query.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return (name.length() - offset) - query.length();
+        }
+
+        private static int compareSuffixes(String[] names, long a, long b) {
+            String nameA = names[(int) (a >>> 16)];
+            String nameB = names[(int) (b >>> 16)];
+            int offsetA = (int) (a & 0xFFFF);
+            int offsetB = (int) (b & 0xFFFF);
+            int length = Math.min(nameA.length() - offsetA, nameB.length() - offsetB);
+            for (int i = 0; i < length; i++) {
+                int diff = nameA.charAt(offsetA + i) - nameB.charAt(offsetB + i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return (nameA.length() - offsetA) - (nameB.length() - offsetB);
+        }
+    }
+
+    /**
+     * Счетчики общих триграмм запроса по номерам фильмов: открытая адресация на размер
+     * кандидатов одного запроса, а не всего сегмента
+     */
+    private static final class SlotCounter {
+
+        // Номер фильма + 1, 0 - пустая ячейка
+        private final int[] keys;
+        private final int[] values;
+        // Номера фильмов в порядке добавления
+        private final int[] slots;
+        private int size;
+
+        SlotCounter(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(2, expected) * 2 - 1) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+            slots = new int[Math.max(1, expected)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int slotAt(int index) {
+            return slots[index];
+        }
+
+        void increment(int slot) {
+            int mask = keys.length - 1;
+            int i = hash(slot) & mask;
+            for (; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == slot + 1) {
+                    values[i]++;
+                    return;
+                }
+            }
+            keys[i] = slot + 1;
+            values[i] = 1;
+            slots[size++] = slot;
+        }
+
+        int get(int slot) {
+            int i = find(slot);
+            return i >= 0 ? values[i] : 0;
+        }
+
+        /**
+         * Досчитать список триграммы только для уже найденных фильмов. Длинный список не
+         * проходится целиком: номера в нем по возрастанию, кандидаты ищутся бинарным поиском
+         */
+        void incrementExisting(int[] list) {
+            if (list.length > size * 8) {
+                for (int index = 0; index < size; index++) {
+                    if (Arrays.binarySearch(list, slots[index]) >= 0) {
+                        values[find(slots[index])]++;
+                    }
+                }
+                return;
+            }
+            for (int slot : list) {
+                int i = find(slot);
+                if (i >= 0) {
+                    values[i]++;
+                }
+            }
+        }
+
+        private int find(int slot) {
+            int mask = keys.length - 1;
+            for (int i = hash(slot) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == slot + 1) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int hash(int slot) {
+            return slot * 0x9E3779B9;
+        }
+    }
+
+    /**
+     * Триграмма -> плотный номер, открытая адресация на примитивных массивах: на миллионе названий
+     * это десятки миллионов обращений при построении, без упаковки ключей в Long
+     */
+    private static final class TrigramTable {
+
+        private long[] keys = new long[1024];
+        // Номер триграммы + 1, 0 - пустая ячейка
+        private int[] values = new int[1024];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(long gram) {
+            int mask = keys.length - 1;
+            for (int i = hash(gram) & mask; values[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == gram) {
+                    return values[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        int add(long gram) {
+            int mask = keys.length - 1;
+            int i = hash(gram) & mask;
+            for (; values[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == gram) {
+                    return values[i] - 1;
+                }
+            }
+            keys[i] = gram;
+            values[i] = ++size;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != 0) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (values[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int hash(long gram) {
+            long h = gram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.entity.MovieOutboxEvent;
+import com.bank.movieservice.repository.MovieOutboxRepository;
+import com.bank.movieservice.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Отправка событий из movie_outbox в Kafka.
+ *
+ * Раз в poll-interval-ms берется пачка неотправленных событий в порядке id, фильмы
+ * подгружаются одним запросом с жанрами и публикуются через MoviePublisher (асинхронные
+ * send() с общим ожиданием подтверждений). Подтвержденные события помечаются отправленными,
+ * у остальных растет attempts, и следующая попытка откладывается на retry-backoff-ms * 2^(attempts-1)
+ * (не больше max-retry-backoff-ms), чтобы постоянно падающие события в начале outbox не занимали
+ * каждую пачку. После max-attempts событие откладывается насовсем (parked_at) до ручного
+ * разбора: сбросить parked_at в NULL - и relay отправит его снова. Пачки идут строго
+ * последовательно под арендой scheduler_locks, поэтому при нескольких экземплярах
+ * relay работает один. Доставка at-least-once: повтор после сбоя отсеет дедупликация
+ * консьюмера.
+ *
+ * Метрики: movie.outbox.events{result}, movie.outbox.batch.duration, movie.outbox.pending,
+ * movie.outbox.parked, movie.outbox.lag.seconds (возраст самого старого неотправленного события).
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class MovieOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieOutboxRelay.class);
+    static final String RELAY_LOCK = "movie-outbox-relay";
+
+    private final MovieOutboxRepository outboxRepository;
+    private final MovieRepository movieRepository;
+    private final MoviePublisher moviePublisher;
+    private final SchedulerLockService schedulerLock;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter missingCounter;
+    private final Counter parkedCounter;
+    private final Timer batchTimer;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    @Value("${kafka.outbox.batch-size:500}")
+    private int batchSize;
+
+    // Сколько пачек подряд отправить за один запуск, если outbox не опустел
+    @Value("${kafka.outbox.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${kafka.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${kafka.outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${kafka.outbox.max-retry-backoff-ms:300000}")
+    private long maxRetryBackoffMs;
+
+    @Value("${kafka.outbox.retention-ms:604800000}")
+    private long retentionMs;
+
+    public MovieOutboxRelay(MovieOutboxRepository outboxRepository, MovieRepository movieRepository,
+                            MoviePublisher moviePublisher, SchedulerLockService schedulerLock,
+                            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.movieRepository = movieRepository;
+        this.moviePublisher = moviePublisher;
+        this.schedulerLock = schedulerLock;
+        this.sentCounter = Counter.builder("movie.outbox.events")
+                .tag("result", "sent")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("movie.outbox.events")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        this.missingCounter = Counter.builder("movie.outbox.events")
+                .tag("result", "missing")
+                .register(meterRegistry);
+        this.parkedCounter = Counter.builder("movie.outbox.events")
+                .tag("result", "parked")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("movie.outbox.batch.duration")
+                .description("Время отправки одной пачки outbox до подтверждения брокером")
+                .register(meterRegistry);
+        meterRegistry.gauge("movie.outbox.pending", pending);
+        meterRegistry.gauge("movie.outbox.parked", parked);
+        meterRegistry.gauge("movie.outbox.lag.seconds", lagSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        schedulerLock.runLocked(RELAY_LOCK, Duration.ZERO, this::drain);
+    }
+
+    /**
+     * Отправить накопившиеся события пачками, пока outbox не опустеет или не кончится лимит пачек
+     */
+    void drain() {
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            if (relayBatch() < batchSize) {
+                break;
+            }
+        }
+        updateBacklogGauges();
+    }
+
+    /**
+     * @return размер обработанной пачки
+     */
+    int relayBatch() {
+        List<MovieOutboxEvent> events = outboxRepository.findDue(LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        long startedAt = System.nanoTime();
+        Map<Long, Movie> moviesByFilmId = movieRepository.findWithGenresByFilmIdIn(events.stream()
+                        .map(MovieOutboxEvent::getFilmId)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Movie::getFilmId, Function.identity()));
+
+        // Порядок отправки - порядок событий; фильм публикуется один раз на пачку
+        List<Movie> movies = events.stream()
+                .map(event -> moviesByFilmId.get(event.getFilmId()))
+                .filter(movie -> movie != null)
+                .distinct()
+                .collect(Collectors.toList());
+        MoviePublisher.PublishResult result = movies.isEmpty()
+                ? new MoviePublisher.PublishResult(0, 0, 0)
+                : moviePublisher.publish(movies);
+
+        Set<Long> failedFilmIds = result.getFailedFilmIds();
+        List<Long> done = new ArrayList<>(events.size());
+        // Номер попытки -> события: у каждой группы свой backoff
+        Map<Integer, List<Long>> retryByAttempt = new TreeMap<>();
+        List<Long> exhausted = new ArrayList<>();
+        int missing = 0;
+        for (MovieOutboxEvent event : events) {
+            if (failedFilmIds.contains(event.getFilmId())) {
+                int attempt = event.getAttempts() + 1;
+                if (attempt >= maxAttempts) {
+                    exhausted.add(event.getId());
+                } else {
+                    retryByAttempt.computeIfAbsent(attempt, key -> new ArrayList<>()).add(event.getId());
+                }
+            } else {
+                // Фильм удален до отправки - отправлять нечего, событие закрывается
+                if (!moviesByFilmId.containsKey(event.getFilmId())) {
+                    missing++;
+                }
+                done.add(event.getId());
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!done.isEmpty()) {
+            outboxRepository.markPublished(done, now);
+        }
+        int retried = 0;
+        for (Map.Entry<Integer, List<Long>> retry : retryByAttempt.entrySet()) {
+            outboxRepository.scheduleRetry(retry.getValue(), now.plus(retryBackoff(retry.getKey())));
+            retried += retry.getValue().size();
+        }
+        if (!exhausted.isEmpty()) {
+            outboxRepository.park(exhausted, now);
+            log.error("❌ Outbox: события {} не отправлены за {} попыток и отложены до разбора (parked_at)",
+                    exhausted, maxAttempts);
+        }
+
+        long elapsedNanos = System.nanoTime() - startedAt;
+        batchTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        sentCounter.increment(done.size() - missing);
+        failedCounter.increment(retried);
+        parkedCounter.increment(exhausted.size());
+        missingCounter.increment(missing);
+
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        log.info("📤 Outbox: отправлено {}, повтор {}, отложено {}, без фильма {} за {} мс ({} событий/с)",
+                done.size() - missing, retried, exhausted.size(), missing, elapsedMs, events.size() * 1000L / elapsedMs);
+        return events.size();
+    }
+
+    private Duration retryBackoff(int attempt) {
+        long backoffMs = retryBackoffMs << Math.min(attempt - 1, 30);
+        return Duration.ofMillis(backoffMs <= 0 || backoffMs > maxRetryBackoffMs ? maxRetryBackoffMs : backoffMs);
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.outbox.purge-interval-ms:3600000}")
+    public void purgePublished() {
+        int deleted = outboxRepository.deletePublishedBefore(LocalDateTime.now().minus(Duration.ofMillis(retentionMs)));
+        if (deleted > 0) {
+            log.info("🧹 Из outbox удалено отправленных событий: {}", deleted);
+        }
+    }
+
+    private void updateBacklogGauges() {
+        pending.set(outboxRepository.countByPublishedAtIsNullAndParkedAtIsNull());
+        parked.set(outboxRepository.countByParkedAtIsNotNull());
+        LocalDateTime oldest = outboxRepository.findOldestPendingCreatedAt();
+        lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()));
+    }
+}
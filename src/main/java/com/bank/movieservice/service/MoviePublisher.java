@@ -0,0 +1,154 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.kafka.MovieMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Публикация фильмов в Kafka пачкой.
+ *
+ * Сообщения отправляются с ключом filmId, чтобы один фильм всегда попадал в одну партицию.
+ * Все send() выполняются без ожидания, продюсер собирает их в сжатые пачки (linger.ms),
+ * затем подтверждения ждутся вместе с общим таймаутом. Результат каждого запуска
+ * попадает в лог и метрики movie.publish.*.
+ */
+@Component
+public class MoviePublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(MoviePublisher.class);
+
+    private final KafkaTemplate<String, MovieMessage> kafkaTemplate;
+    private final Timer publishTimer;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    @Value("${kafka.topics.movie-daily:movie-topic}")
+    private String movieTopic;
+
+    @Value("${kafka.producer.publish-timeout-ms:60000}")
+    private long publishTimeoutMs;
+
+    public MoviePublisher(KafkaTemplate<String, MovieMessage> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.publishTimer = Timer.builder("movie.publish.duration")
+                .description("Время публикации фильмов одного запуска до получения всех подтверждений")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("movie.publish.records")
+                .tag("result", "sent")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("movie.publish.records")
+                .tag("result", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Отправить фильмы и дождаться подтверждения брокера (не дольше publish-timeout-ms)
+     */
+    public PublishResult publish(List<Movie> movies) {
+        long startedAt = System.nanoTime();
+        List<CompletableFuture<SendResult<String, MovieMessage>>> futures = new ArrayList<>(movies.size());
+        List<Long> sentFilmIds = new ArrayList<>(movies.size());
+        Set<Long> failedFilmIds = new HashSet<>();
+
+        // 1. Ставим все сообщения в буфер продюсера, не дожидаясь ответов
+        for (Movie movie : movies) {
+            try {
+                futures.add(kafkaTemplate.send(movieTopic, String.valueOf(movie.getFilmId()),
+                        MovieMessage.from(movie)).completable());
+                sentFilmIds.add(movie.getFilmId());
+            } catch (Exception e) {
+                // Ошибка сериализации или таймаут получения метаданных топика
+                failedFilmIds.add(movie.getFilmId());
+                log.error("❌ Фильм {} не поставлен в очередь отправки: {}", movie.getFilmId(), e.getMessage());
+            }
+        }
+
+        // 2. Ждем подтверждения всех сообщений разом
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(publishTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("⚠️ Не все сообщения подтверждены за {} мс", publishTimeoutMs);
+        } catch (ExecutionException e) {
+            // Ошибки считаются ниже по каждому future
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 3. Итог запуска: неподтвержденные за таймаут считаются неудачными
+        int sent = 0;
+        Throwable firstError = null;
+        for (int i = 0; i < futures.size(); i++) {
+            CompletableFuture<SendResult<String, MovieMessage>> future = futures.get(i);
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                sent++;
+            } else {
+                failedFilmIds.add(sentFilmIds.get(i));
+                if (firstError == null && future.isCompletedExceptionally()) {
+                    firstError = future.handle((result, error) -> error).join();
+                }
+            }
+        }
+
+        int failed = movies.size() - sent;
+        long elapsedNanos = System.nanoTime() - startedAt;
+        publishTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        sentCounter.increment(sent);
+        failedCounter.increment(failed);
+
+        PublishResult result = new PublishResult(sent, failed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                failedFilmIds);
+        if (failed > 0) {
+            log.error("❌ Публикация в {}: отправлено {}, ошибок {} за {} мс",
+                    movieTopic, sent, failed, result.getDurationMs(), firstError);
+        } else {
+            log.info("📤 Публикация в {}: отправлено {} за {} мс", movieTopic, sent, result.getDurationMs());
+        }
+        return result;
+    }
+
+    public static final class PublishResult {
+        private final int sent;
+        private final int failed;
+        private final long durationMs;
+        private final Set<Long> failedFilmIds;
+
+        public PublishResult(int sent, int failed, long durationMs) {
+            this(sent, failed, durationMs, Collections.emptySet());
+        }
+
+        public PublishResult(int sent, int failed, long durationMs, Set<Long> failedFilmIds) {
+            this.sent = sent;
+            this.failed = failed;
+            this.durationMs = durationMs;
+            this.failedFilmIds = failedFilmIds;
+        }
+
+        public int getSent() { return sent; }
+
+        public int getFailed() { return failed; }
+
+        public long getDurationMs() { return durationMs; }
+
+        // Фильмы, не подтвержденные брокером: их можно отправить повторно
+        public Set<Long> getFailedFilmIds() { return failedFilmIds; }
+    }
+}
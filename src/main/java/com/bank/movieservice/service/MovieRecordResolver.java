@@ -0,0 +1,109 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Подстановка данных фильмов в claim-check ссылки из Kafka.
+ *
+ * Вся пачка дайджеста разрешается одним запросом findWithGenresByFilmIdIn: в запрос идут
+ * только фильмы, которых нет в LRU-кэше или чья версия в кэше старше версии из сообщения.
+ * Фильмы с полными данными проходят без изменений.
+ */
+@Component
+public class MovieRecordResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieRecordResolver.class);
+
+    private final MovieRepository movieRepository;
+    private final Map<Long, MovieRecord> cache;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter notFoundCounter;
+
+    public MovieRecordResolver(MovieRepository movieRepository, MeterRegistry meterRegistry,
+                               @Value("${kafka.consumer.claim-check.cache-size:10000}") int cacheSize) {
+        this.movieRepository = movieRepository;
+        // accessOrder = true: вытесняется фильм, к которому дольше всего не обращались
+        this.cache = new LinkedHashMap<>(Math.min(cacheSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MovieRecord> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.hitCounter = Counter.builder("movie.claimcheck.cache").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("movie.claimcheck.cache").tag("result", "miss").register(meterRegistry);
+        this.notFoundCounter = Counter.builder("movie.claimcheck.not.found")
+                .description("Ссылки на фильмы, которых нет в БД")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Заменить ссылки полными фильмами. Ссылки на фильмы, которых нет в БД, отбрасываются.
+     */
+    public synchronized List<MovieRecord> resolve(List<MovieRecord> movies) {
+        Set<Long> toLoad = new LinkedHashSet<>();
+        boolean hasReferences = false;
+        for (MovieRecord movie : movies) {
+            if (!movie.isReference()) {
+                continue;
+            }
+            hasReferences = true;
+            MovieRecord cached = cache.get(movie.filmId());
+            if (cached == null || cached.version() < movie.version()) {
+                toLoad.add(movie.filmId());
+            }
+        }
+        if (!hasReferences) {
+            return movies;
+        }
+
+        if (!toLoad.isEmpty()) {
+            for (Movie movie : movieRepository.findWithGenresByFilmIdIn(toLoad)) {
+                cache.put(movie.getFilmId(), MovieRecord.from(movie));
+            }
+        }
+
+        List<MovieRecord> resolved = new ArrayList<>(movies.size());
+        int hits = 0;
+        int notFound = 0;
+        for (MovieRecord movie : movies) {
+            if (!movie.isReference()) {
+                resolved.add(movie);
+                continue;
+            }
+            MovieRecord full = cache.get(movie.filmId());
+            if (full == null) {
+                notFound++;
+                continue;
+            }
+            if (!toLoad.contains(movie.filmId())) {
+                hits++;
+            }
+            resolved.add(full);
+        }
+
+        hitCounter.increment(hits);
+        missCounter.increment(toLoad.size());
+        if (notFound > 0) {
+            notFoundCounter.increment(notFound);
+            log.warn("⚠️ Фильмов из claim-check сообщений нет в БД: {}", notFound);
+        }
+        log.debug("Claim-check: из кэша {}, загружено из БД {}", hits, toLoad.size());
+        return resolved;
+    }
+}
@@ -1,32 +1,67 @@
 package com.bank.movieservice.service;
 
+import com.bank.movieservice.DTO.response.KinopoiskResponse;
+import com.bank.movieservice.entity.IngestWatermark;
 import com.bank.movieservice.entity.Movie;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * Ежедневная загрузка фильмов и публикация в Kafka.
+ *
+ * На каждый день недели в daily-genre.schedule.* задается список срезов через запятую
+ * (см. GenreSlice). Срезы загружаются параллельно пулом ingest-потоков; общий лимит API
+ * соблюдает KinopoiskRateLimiter. В итоге запуска - время и число фильмов по каждому срезу.
+ * В Kafka фильмы отправляет MovieOutboxRelay: события пишутся в movie_outbox
+ * в транзакции сохранения фильмов.
+ *
+ * Срез, у которого по водяному знаку (IngestWatermarkService) еще не подошло время,
+ * пропускается без обращения к API; если API вернуло тот же список, что и в прошлый раз,
+ * фильмы не обрабатываются.
+ *
+ * В режиме local-first срез сначала берет top-n лучших неотправленных фильмов жанра
+ * из базы (LocalMoviePool), а API вызывается только за недостающими.
+ *
+ * Срезы, не уложившиеся в timeout-ms, прерываются; запуск держит аренду, пока они
+ * не остановятся, чтобы следующий тик не загружал те же срезы параллельно с ними.
+ */
 @Service
 @RequiredArgsConstructor
 public class MovieSchedulerService {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final KinopoiskService kinopoiskService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String DEFAULT_GENRE = "драма";
+    private static final String API_DEFERRED = "пул исчерпан, API отложен";
+    // Имя аренды в scheduler_locks: загрузку на тике выполняет один экземпляр
+    static final String INGEST_LOCK = "movie-ingest";
 
-    @Value("${kafka.topics.movie-daily:movie-topic}")
-    private String movieTopic;
+    private final KinopoiskService kinopoiskService;
+    private final IngestWatermarkService watermarkService;
+    private final SchedulerLockService schedulerLock;
+    private final LocalMoviePool localMoviePool;
 
     @Value("${daily-genre.schedule.MONDAY:драма}")
     private String mondayGenre;
@@ -49,96 +84,275 @@ public class MovieSchedulerService {
     @Value("${daily-genre.schedule.SUNDAY:мультфильм}")
     private String sundayGenre;
 
+    // Рейтинг для срезов, где он не указан явно
+    @Value("${daily-genre.default-rating-from:7.0}")
+    private double defaultRatingFrom;
+
+    @Value("${daily-genre.ingest.parallelism:3}")
+    private int parallelism;
+
+    @Value("${daily-genre.local-first.enabled:true}")
+    private boolean localFirst;
+
+    // Фильмов на срез за запуск в режиме local-first
+    @Value("${daily-genre.local-first.top-n:10}")
+    private int topN;
+
+    // Верхняя граница загрузки всех срезов одного запуска
+    @Value("${daily-genre.ingest.timeout-ms:600000}")
+    private long ingestTimeoutMs;
+
+    // Сколько ждать остановки прерванных по таймауту срезов, не отпуская аренду
+    @Value("${daily-genre.ingest.cancel-grace-ms:30000}")
+    private long cancelGraceMs;
+
+    // Срезы по дням недели - разбираются один раз при старте
+    private final Map<DayOfWeek, List<GenreSlice>> slicesByDay = new EnumMap<>(DayOfWeek.class);
+    private ExecutorService ingestPool;
+    // Срезы, которые сейчас выполняются в ingestPool (в том числе прерванные, но еще не вышедшие)
+    private final AtomicInteger activeSlices = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        slicesByDay.put(DayOfWeek.MONDAY, parseSlices(mondayGenre));
+        slicesByDay.put(DayOfWeek.TUESDAY, parseSlices(tuesdayGenre));
+        slicesByDay.put(DayOfWeek.WEDNESDAY, parseSlices(wednesdayGenre));
+        slicesByDay.put(DayOfWeek.THURSDAY, parseSlices(thursdayGenre));
+        slicesByDay.put(DayOfWeek.FRIDAY, parseSlices(fridayGenre));
+        slicesByDay.put(DayOfWeek.SATURDAY, parseSlices(saturdayGenre));
+        slicesByDay.put(DayOfWeek.SUNDAY, parseSlices(sundayGenre));
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ingestPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "genre-ingest-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ingestPool.shutdownNow();
+    }
+
+    /**
+     * Без общей транзакции: каждый срез сохраняется в своей транзакции saveNewFilms.
+     * При нескольких экземплярах тик выполняет только взявший аренду INGEST_LOCK.
+     */
     @Scheduled(cron = "${scheduler.cron:0 0 7 * * *}")
-    @Transactional
     public void sendToKafka() {
+        schedulerLock.runLocked(INGEST_LOCK, this::runIngestion);
+    }
+
+    private void runIngestion() {
+        // Срезы прошлого запуска не остановились за cancel-grace-ms: их claimedFilmIds уже не виден
+        // новому запуску, и повторная загрузка тех же срезов столкнется на уникальности film_id
+        int stillRunning = activeSlices.get();
+        if (stillRunning > 0) {
+            System.err.println("⚠️ Срезы прошлого запуска еще выполняются (" + stillRunning + "), тик пропущен");
+            return;
+        }
         try {
-            // 1. Определяем жанр по дню недели
-            String genre = getGenreForToday();
-            System.out.println("📅 Запуск планировщика. Жанр дня: " + genre + " | Дата: " + LocalDate.now());
+            // 1. Определяем срезы по дню недели; без local-first работают только те, которым пора в API
+            List<GenreSlice> slices = getSlicesForToday();
+            Map<String, IngestWatermark> watermarks = watermarkService.load(slices.stream()
+                    .map(GenreSlice::queryKey)
+                    .collect(Collectors.toList()));
+            List<GenreSlice> runSlices = localFirst ? slices : slices.stream()
+                    .filter(slice -> watermarkService.isDue(watermarks.get(slice.queryKey())))
+                    .collect(Collectors.toList());
+            if (runSlices.isEmpty()) {
+                return;
+            }
 
-            // 2. Получаем фильмы из API (с существующими жанрами)
-            List<Movie> movies = kinopoiskService.searchAndSaveFilms(null, genre, null, null, 7.0, null);
+            // 2. Загружаем срезы параллельно (с существующими жанрами)
+            long startedAt = System.nanoTime();
+            List<SliceResult> results = ingest(runSlices, watermarks);
+            long ingestMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
 
-            if (movies.isEmpty()) {
-                System.out.println("⚠️ Не найдено фильмов для жанра: " + genre);
+            // Пул пуст, а API еще отложен - запуск ничего не сделал, не шумим в логе
+            if (results.stream().allMatch(result -> result.movies().isEmpty() && API_DEFERRED.equals(result.note()))) {
                 return;
             }
+            System.out.println("📅 Запуск планировщика. Срезы: " + runSlices + " из " + slices.size()
+                    + " | Дата: " + LocalDate.now());
 
-            // 3. Отправляем каждый фильм в Kafka
-            int sentCount = 0;
-            for (Movie movie : movies) {
-                try {
-                    // Сериализуем фильм с его существующими жанрами
-                    String movieJson = convertMovieToJson(movie);
-                    kafkaTemplate.send(movieTopic, movieJson);
-                    sentCount++;
+            int queued = results.stream().mapToInt(result -> result.movies().size()).sum();
+            int fromLocal = results.stream().mapToInt(SliceResult::fromLocal).sum();
+            printSummary(results, ingestMs);
 
-                    // Логируем информацию о фильме и его жанрах
-                    String genreNames = getGenreNames(movie);
+            // 3. События уже в outbox - отправку в Kafka выполнит MovieOutboxRelay
+            if (queued == 0) {
+                System.out.println("⚠️ Не найдено новых фильмов для срезов: " + runSlices);
+            } else {
+                System.out.println("📨 В outbox поставлено фильмов: " + queued + ", из них из базы: " + fromLocal);
+            }
 
-                    System.out.println(String.format("📤 Отправлен в Kafka: %s (ID: %d) | Жанры: %s",
-                            movie.getFilmName(), movie.getFilmId(), genreNames));
+        } catch (Exception e) {
+            System.err.println("❌ Ошибка в планировщике: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-                } catch (JsonProcessingException e) {
-                    System.err.println("❌ Ошибка сериализации фильма: " + e.getMessage());
+    private List<SliceResult> ingest(List<GenreSlice> slices, Map<String, IngestWatermark> watermarks)
+            throws InterruptedException {
+        // Фильм из нескольких жанров дня загружается только первым срезом, который его нашел
+        Set<Long> claimedFilmIds = ConcurrentHashMap.newKeySet();
+        List<Callable<SliceResult>> tasks = new ArrayList<>(slices.size());
+        for (GenreSlice slice : slices) {
+            tasks.add(() -> {
+                activeSlices.incrementAndGet();
+                try {
+                    return ingestSlice(slice, watermarks.get(slice.queryKey()), claimedFilmIds);
+                } finally {
+                    sliceFinished();
                 }
+            });
+        }
+
+        // По таймауту invokeAll отменяет незавершенные срезы с прерыванием потока
+        List<Future<SliceResult>> futures = ingestPool.invokeAll(tasks, ingestTimeoutMs, TimeUnit.MILLISECONDS);
+        List<SliceResult> results = new ArrayList<>(slices.size());
+        boolean timedOut = false;
+        for (int i = 0; i < slices.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (CancellationException e) {
+                timedOut = true;
+                results.add(new SliceResult(slices.get(i), Collections.emptyList(), 0, -1, "❌ таймаут"));
+            } catch (ExecutionException e) {
+                // ingestSlice не бросает исключений, ошибки уже в SliceResult
+                results.add(new SliceResult(slices.get(i), Collections.emptyList(), 0, -1,
+                        "❌ " + e.getCause().getMessage()));
             }
+        }
 
-            System.out.println("✅ Всего отправлено фильмов в Kafka: " + sentCount);
+        if (timedOut) {
+            System.err.println("⚠️ Не все срезы загружены за " + ingestTimeoutMs + " мс, прерываю их и публикую готовые");
+            if (!awaitSlicesStopped(cancelGraceMs)) {
+                System.err.println("⚠️ Прерванные срезы не остановились за " + cancelGraceMs
+                        + " мс, следующие тики пропускаются до их завершения");
+            }
+        }
+        return results;
+    }
 
-        } catch (Exception e) {
-            System.err.println("❌ Ошибка в планировщике: " + e.getMessage());
-            e.printStackTrace();
+    private void sliceFinished() {
+        synchronized (activeSlices) {
+            if (activeSlices.decrementAndGet() == 0) {
+                activeSlices.notifyAll();
+            }
         }
     }
 
-    private String getGenreNames(Movie movie) {
-        if (movie.getGenres() == null || movie.getGenres().isEmpty()) {
-            return "нет жанров";
+    private boolean awaitSlicesStopped(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (activeSlices) {
+            while (activeSlices.get() > 0) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return false;
+                }
+                activeSlices.wait(remainingMs);
+            }
         }
-        return movie.getGenres().stream()
-                .map(g -> g.getName())
-                .collect(Collectors.joining(", "));
+        return true;
     }
 
-    private String getGenreForToday() {
-        DayOfWeek today = LocalDate.now().getDayOfWeek();
+    private SliceResult ingestSlice(GenreSlice slice, IngestWatermark watermark, Set<Long> claimedFilmIds) {
+        long startedAt = System.nanoTime();
+        List<Movie> local = Collections.emptyList();
+        try {
+            // Сначала фильмы, которые уже есть в базе и еще не отправлялись
+            int wanted = Integer.MAX_VALUE;
+            if (localFirst) {
+                local = localMoviePool.takeUnsent(slice, topN, claimedFilmIds);
+                wanted = topN - local.size();
+                if (wanted <= 0) {
+                    return new SliceResult(slice, local, local.size(), elapsedMs(startedAt), null);
+                }
+                if (!watermarkService.isDue(watermark)) {
+                    return new SliceResult(slice, local, local.size(), elapsedMs(startedAt), API_DEFERRED);
+                }
+            }
+
+            List<KinopoiskResponse.Film> films = kinopoiskService.searchFilmsOnly(null, slice.genre(),
+                    slice.yearFrom(), slice.yearTo(), slice.ratingFrom(), null);
+            // Прерванный поиск возвращает пустой список - не записываем его как ответ API
+            if (Thread.currentThread().isInterrupted()) {
+                return new SliceResult(slice, local, local.size(), elapsedMs(startedAt), "❌ прерван");
+            }
+            String fingerprint = IngestWatermarkService.fingerprint(films);
 
-        Map<DayOfWeek, String> genreMap = new HashMap<>();
-        genreMap.put(DayOfWeek.MONDAY, mondayGenre);
-        genreMap.put(DayOfWeek.TUESDAY, tuesdayGenre);
-        genreMap.put(DayOfWeek.WEDNESDAY, wednesdayGenre);
-        genreMap.put(DayOfWeek.THURSDAY, thursdayGenre);
-        genreMap.put(DayOfWeek.FRIDAY, fridayGenre);
-        genreMap.put(DayOfWeek.SATURDAY, saturdayGenre);
-        genreMap.put(DayOfWeek.SUNDAY, sundayGenre);
+            // Тот же список, что и в прошлый раз: новых фильмов в нем быть не может
+            if (watermarkService.isUnchanged(watermark, fingerprint)) {
+                watermarkService.record(watermark, fingerprint, films.size(), 0);
+                return new SliceResult(slice, local, local.size(), elapsedMs(startedAt),
+                        "без изменений, " + nextRunNote(watermark));
+            }
 
-        return genreMap.getOrDefault(today, "драма");
+            // Сверх wanted новые фильмы сохраняются в локальный пул для следующих запусков
+            KinopoiskService.SavedFilms result = kinopoiskService.saveNewFilms(films, claimedFilmIds, wanted);
+            List<Movie> saved = result.movies();
+            List<Movie> queued = new ArrayList<>(local);
+            saved.stream()
+                    .filter(movie -> movie.getDigestSentAt() != null)
+                    .forEach(queued::add);
+            // Прерванный по таймауту срез не пишет водяной знак: повтор - на следующем тике
+            if (Thread.currentThread().isInterrupted()) {
+                return new SliceResult(slice, queued, local.size(), elapsedMs(startedAt), "❌ прерван");
+            }
+            // Отпечаток - только когда сохранены все новые фильмы списка, иначе прежний:
+            // следующий запуск не посчитает список обработанным и догрузит пропущенные
+            watermarkService.record(watermark, result.complete() ? fingerprint : null, films.size(), saved.size());
+            return new SliceResult(slice, queued, local.size(), elapsedMs(startedAt),
+                    !result.complete() ? "⚠️ сохранены не все, " + nextRunNote(watermark)
+                            : saved.isEmpty() ? nextRunNote(watermark) : null);
+        } catch (Exception e) {
+            return new SliceResult(slice, local, local.size(), elapsedMs(startedAt), "❌ " + e.getMessage());
+        }
     }
 
-    /**
-     * Конвертация Movie в JSON для Kafka (включая существующие жанры фильма)
-     */
-    private String convertMovieToJson(Movie movie) throws JsonProcessingException {
-        Map<String, Object> movieData = new HashMap<>();
-        movieData.put("id", movie.getId());
-        movieData.put("filmId", movie.getFilmId());
-        movieData.put("filmName", movie.getFilmName());
-        movieData.put("year", movie.getYear());
-        movieData.put("rating", movie.getRating() != null ? movie.getRating().toString() : "0.0");
-        movieData.put("description", movie.getDescription());
-
-        // Получаем существующие жанры фильма
-        if (movie.getGenres() != null && !movie.getGenres().isEmpty()) {
-            List<String> genreNames = movie.getGenres().stream()
-                    .map(genre -> genre.getName())
-                    .collect(Collectors.toList());
-            movieData.put("genres", genreNames);
-        } else {
-            movieData.put("genres", new java.util.ArrayList<>());
+    private String nextRunNote(IngestWatermark watermark) {
+        return "следующий запрос через " + watermarkService.backoff(watermark.getEmptyRuns()).toMinutes() + " мин";
+    }
+
+    private void printSummary(List<SliceResult> results, long ingestMs) {
+        StringBuilder summary = new StringBuilder("📊 Итог загрузки за ").append(ingestMs).append(" мс:");
+        for (SliceResult result : results) {
+            summary.append("\n   • ").append(result.slice()).append(": ")
+                    .append(result.movies().size()).append(" фильмов");
+            if (result.fromLocal() > 0) {
+                summary.append(" (из базы ").append(result.fromLocal()).append(')');
+            }
+            if (result.durationMs() >= 0) {
+                summary.append(", ").append(result.durationMs()).append(" мс");
+            }
+            if (result.note() != null) {
+                summary.append(" (").append(result.note()).append(')');
+            }
         }
+        System.out.println(summary);
+    }
+
+    private List<GenreSlice> getSlicesForToday() {
+        return slicesByDay.getOrDefault(LocalDate.now().getDayOfWeek(),
+                List.of(GenreSlice.parse(DEFAULT_GENRE, defaultRatingFrom)));
+    }
+
+    private List<GenreSlice> parseSlices(String value) {
+        List<GenreSlice> slices = Arrays.stream(value.split(","))
+                .filter(spec -> !spec.isBlank())
+                .map(spec -> GenreSlice.parse(spec, defaultRatingFrom))
+                .collect(Collectors.toList());
+        return slices.isEmpty() ? List.of(GenreSlice.parse(DEFAULT_GENRE, defaultRatingFrom)) : slices;
+    }
+
+    private static long elapsedMs(long startedAt) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    }
 
-        return objectMapper.writeValueAsString(movieData);
+    private record SliceResult(GenreSlice slice, List<Movie> movies, int fromLocal, long durationMs,
+                               String note) {
     }
 }
@@ -18,9 +18,11 @@ import java.util.stream.Collectors;
 public class MovieService {
 
     private final MovieRepository movieRepository;
+    private final MovieNameIndex movieNameIndex;
 
-    public MovieService(MovieRepository movieRepository) {
+    public MovieService(MovieRepository movieRepository, MovieNameIndex movieNameIndex) {
         this.movieRepository = movieRepository;
+        this.movieNameIndex = movieNameIndex;
     }
 
     public Page<MovieResponse> getMovies(Specification<Movie> spec, Pageable pageable) {
@@ -47,15 +49,31 @@ public class MovieService {
                 .collect(Collectors.toList());
     }
 
-    // Поиск фильмов по названию
+    // Поиск фильмов по названию: из индекса в памяти, пока он строится - из БД
     public List<MovieSearchResponseDTO> searchMoviesByName(String query) {
         if (query == null || query.trim().isEmpty()) {
             return List.of();
         }
 
+        if (movieNameIndex.isReady()) {
+            return movieNameIndex.search(query);
+        }
+
         List<Movie> movies = movieRepository.searchByName(query.trim());
         return movies.stream()
                 .map(MovieSearchResponseDTO::fromEntity)
                 .collect(Collectors.toList());
     }
+
+    // Поиск с опечатками по триграммам; пока индекс строится - обычный поиск в БД
+    public List<MovieSearchResponseDTO> fuzzySearchMoviesByName(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return List.of();
+        }
+
+        if (movieNameIndex.isReady()) {
+            return movieNameIndex.fuzzySearch(query);
+        }
+        return searchMoviesByName(query);
+    }
 }
@@ -0,0 +1,178 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.kafka.MovieRecord;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Общий сериализатор строк CSV/XML отчетов.
+ * Пишет напрямую в Appendable (StringBuilder, Writer), экранирует за один проход
+ * и форматирует рейтинг без DecimalFormat - компонент не хранит состояния и потокобезопасен.
+ */
+@Component
+public class ReportRowWriter {
+
+    public static final String MOVIE_CSV_HEADER = "filmId,filmName,year,rating,description\n";
+    public static final String DIGEST_CSV_HEADER = "filmId,filmName,year,rating,description,genres\n";
+
+    /**
+     * Строка CSV отчета по фильмам из БД: filmId,"filmName",year,rating,"description"
+     */
+    public void writeMovieCsvRow(Appendable out, Movie movie) {
+        try {
+            appendNumber(out, movie.getFilmId());
+            out.append(',');
+            appendQuotedCsv(out, movie.getFilmName());
+            out.append(',');
+            appendNumber(out, movie.getYear());
+            out.append(',');
+            appendRating(out, movie.getRating());
+            out.append(',');
+            appendQuotedCsv(out, movie.getDescription());
+            out.append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Строка CSV дайджеста из Kafka: filmId,"filmName",year,rating,"description","genres"
+     * Пустые filmId и year выводятся как пустые поля, рейтинг - как есть.
+     */
+    public void writeDigestCsvRow(Appendable out, Long filmId, String filmName, Integer year,
+                                  CharSequence rating, String description, String genres) {
+        try {
+            if (filmId != null) {
+                appendNumber(out, filmId);
+            }
+            out.append(',');
+            appendQuotedCsv(out, filmName);
+            out.append(',');
+            if (year != null) {
+                appendNumber(out, year);
+            }
+            out.append(',').append(rating).append(',');
+            appendQuotedCsv(out, description);
+            out.append(',');
+            appendQuotedCsv(out, genres);
+            out.append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * CSV дайджеста целиком: заголовок и строки фильмов из Kafka
+     */
+    public String digestCsv(List<MovieRecord> movies) {
+        StringBuilder csv = new StringBuilder(movies.size() * 256);
+        csv.append(DIGEST_CSV_HEADER);
+        for (MovieRecord movie : movies) {
+            writeDigestCsvRow(csv,
+                    movie.filmId(),
+                    movie.filmName(),
+                    movie.year(),
+                    movie.ratingText(),
+                    movie.description(),
+                    movie.genres());
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Элемент &lt;movie&gt; XML отчета
+     */
+    public void writeMovieXmlRow(Appendable out, Movie movie) {
+        try {
+            out.append("  <movie>\n");
+            out.append("    <filmId>");
+            appendNumber(out, movie.getFilmId());
+            out.append("</filmId>\n");
+            out.append("    <filmName>");
+            appendXmlEscaped(out, movie.getFilmName());
+            out.append("</filmName>\n");
+            out.append("    <year>");
+            appendNumber(out, movie.getYear());
+            out.append("</year>\n");
+            out.append("    <rating>").append(String.valueOf(movie.getRating())).append("</rating>\n");
+            out.append("    <description>");
+            appendXmlEscaped(out, movie.getDescription());
+            out.append("</description>\n");
+            out.append("  </movie>\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Целое число без промежуточной строки, если пишем в StringBuilder. null -> "null", как String.valueOf
+     */
+    static void appendNumber(Appendable out, Number value) throws IOException {
+        if (value != null && out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value.longValue());
+        } else {
+            out.append(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Рейтинг с одним знаком после точки (HALF_UP), null -> 0.0.
+     * Значения из БД уже имеют scale 1 (DECIMAL(3,1)), для них toString() кэшируется в самом BigDecimal.
+     */
+    static void appendRating(Appendable out, BigDecimal rating) throws IOException {
+        if (rating == null) {
+            out.append("0.0");
+            return;
+        }
+        BigDecimal scaled = rating.scale() == 1 ? rating : rating.setScale(1, RoundingMode.HALF_UP);
+        out.append(scaled.toString());
+    }
+
+    /**
+     * Значение в кавычках, кавычки внутри удваиваются. null -> пустые кавычки.
+     */
+    static void appendQuotedCsv(Appendable out, String value) throws IOException {
+        out.append('"');
+        if (value != null) {
+            int runStart = 0;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) == '"') {
+                    // Копируем накопленный кусок вместе с кавычкой и дописываем вторую
+                    out.append(value, runStart, i + 1).append('"');
+                    runStart = i + 1;
+                }
+            }
+            out.append(value, runStart, length);
+        }
+        out.append('"');
+    }
+
+    static void appendXmlEscaped(Appendable out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        int runStart = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            String entity;
+            switch (value.charAt(i)) {
+                case '&': entity = "&amp;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = "&quot;"; break;
+                case '\'': entity = "&apos;"; break;
+                default: continue;
+            }
+            out.append(value, runStart, i).append(entity);
+            runStart = i + 1;
+        }
+        out.append(value, runStart, length);
+    }
+}
@@ -0,0 +1,116 @@
+package com.bank.movieservice.service;
+
+import com.bank.movieservice.repository.SchedulerLockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * Распределенная блокировка задач @Scheduled через таблицу scheduler_locks.
+ *
+ * Узел берет аренду на lease-ms условным UPDATE (или INSERT для новой задачи), поэтому
+ * на одном тике cron задачу выполняет только один экземпляр. Если узел упал, аренда
+ * истекает сама. После выполнения аренда держится еще min-hold-ms от начала - иначе
+ * узел, чей тик пришел на секунду позже, выполнил бы ту же задачу повторно.
+ *
+ * Время берется с часов приложения в UTC: узлы должны быть синхронизированы (NTP) с точностью
+ * много меньше min-hold-ms.
+ */
+@Service
+public class SchedulerLockService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulerLockService.class);
+
+    private final SchedulerLockRepository lockRepository;
+    // pid@host плюс случайный суффикс - два экземпляра на одном хосте различаются
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/"
+            + UUID.randomUUID().toString().substring(0, 8);
+    // UTC, как и serverTimezone в JDBC URL: по местному времени переход на летнее/зимнее время
+    // сдвигает сроки на час в ту или другую сторону
+    private Clock clock = Clock.systemUTC();
+
+    @Value("${scheduler.lock.enabled:true}")
+    private boolean enabled;
+
+    @Value("${scheduler.lock.lease-ms:900000}")
+    private long leaseMs;
+
+    @Value("${scheduler.lock.min-hold-ms:30000}")
+    private long minHoldMs;
+
+    public SchedulerLockService(SchedulerLockRepository lockRepository) {
+        this.lockRepository = lockRepository;
+    }
+
+    /**
+     * Выполнить задачу, если удалось взять аренду name
+     * @return false, если задачу сейчас выполняет (или недавно выполнил) другой узел
+     */
+    public boolean runLocked(String name, Runnable task) {
+        return runLocked(name, Duration.ofMillis(minHoldMs), task);
+    }
+
+    /**
+     * То же с явным минимальным временем удержания: задачам с частым fixedDelay
+     * (например, relay outbox) повторный запуск сразу после завершения не вреден,
+     * для них minHold = Duration.ZERO
+     */
+    public boolean runLocked(String name, Duration minHold, Runnable task) {
+        if (!enabled) {
+            task.run();
+            return true;
+        }
+
+        LocalDateTime lockedAt = tryAcquire(name);
+        if (lockedAt == null) {
+            log.debug("Задача {} выполняется другим узлом, пропуск", name);
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            release(name, lockedAt, minHold);
+        }
+    }
+
+    private LocalDateTime tryAcquire(String name) {
+        // MySQL DATETIME(3) хранит миллисекунды - release сравнивает locked_at на равенство
+        LocalDateTime now = LocalDateTime.now(clock).truncatedTo(ChronoUnit.MILLIS);
+        LocalDateTime until = now.plus(Duration.ofMillis(leaseMs));
+        if (lockRepository.acquireExpired(name, now, until, owner) > 0) {
+            return now;
+        }
+        try {
+            lockRepository.insertLock(name, now, until, owner);
+            return now;
+        } catch (DataIntegrityViolationException e) {
+            // Строка уже есть и аренда активна
+            return null;
+        }
+    }
+
+    private void release(String name, LocalDateTime lockedAt, Duration minHold) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalDateTime holdUntil = lockedAt.plus(minHold);
+        LocalDateTime until = now.isAfter(holdUntil) ? now : holdUntil;
+        try {
+            if (lockRepository.release(name, owner, lockedAt, until) == 0) {
+                // Задача шла дольше lease-ms и аренду уже забрал другой узел
+                log.warn("⚠️ Аренда задачи {} истекла до завершения (lease-ms={})", name, leaseMs);
+            }
+        } catch (Exception e) {
+            // Не страшно: аренда истечет сама
+            log.warn("⚠️ Не удалось освободить аренду задачи {}: {}", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,2 @@
+-- Версия записи фильма: по ней консьюмер понимает, что закэшированный фильм устарел
+ALTER TABLE movies ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
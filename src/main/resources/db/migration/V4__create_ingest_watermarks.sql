@@ -0,0 +1,11 @@
+-- Состояние запросов планировщика: когда запускать снова и что API вернуло в прошлый раз
+CREATE TABLE ingest_watermarks (
+    query_key VARCHAR(255) PRIMARY KEY,
+    last_run_at DATETIME,
+    next_run_at DATETIME,
+    -- SHA-256 отсортированных filmId из последнего ответа API
+    film_ids_hash VARCHAR(64),
+    last_film_count INT NOT NULL DEFAULT 0,
+    total_saved BIGINT NOT NULL DEFAULT 0,
+    empty_runs INT NOT NULL DEFAULT 0
+);
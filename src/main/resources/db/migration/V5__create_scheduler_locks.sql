@@ -0,0 +1,7 @@
+-- Аренда задач планировщика: задачу с данным именем выполняет только владелец незакончившейся аренды
+CREATE TABLE scheduler_locks (
+    name VARCHAR(64) PRIMARY KEY,
+    locked_until DATETIME(3) NOT NULL,
+    locked_at DATETIME(3) NOT NULL,
+    locked_by VARCHAR(255) NOT NULL
+);
@@ -0,0 +1,16 @@
+-- Outbox событий о новых фильмах: строка пишется в той же транзакции, что и фильм,
+-- а в Kafka ее отправляет MovieOutboxRelay
+CREATE TABLE movie_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    film_id BIGINT NOT NULL,
+    created_at DATETIME(3) NOT NULL,
+    published_at DATETIME(3),
+    attempts INT NOT NULL DEFAULT 0,
+    -- После неудачи событие ждет до этого времени (backoff по attempts)
+    next_attempt_at DATETIME(3),
+    -- Исчерпало max-attempts: relay его больше не берет, повтор - сбросом в NULL
+    parked_at DATETIME(3)
+);
+
+-- Выборка неотправленных по порядку: WHERE published_at IS NULL AND parked_at IS NULL ORDER BY id
+CREATE INDEX idx_movie_outbox_pending ON movie_outbox(published_at, parked_at, id);
@@ -0,0 +1,7 @@
+-- Когда фильм ушел в дайджест; NULL - еще не отправлялся и может быть выбран из базы
+ALTER TABLE movies ADD COLUMN digest_sent_at DATETIME(3) NULL;
+
+-- Все уже сохраненные фильмы были разосланы прежним потоком публикации - повторно их не выбирать
+UPDATE movies SET digest_sent_at = NOW(3);
+
+CREATE INDEX idx_movies_digest_sent_rating ON movies(digest_sent_at, rating);
@@ -0,0 +1,18 @@
+-- Контрольные точки полной выгрузки каталога: одна строка на срез жанр x годы x рейтинг
+CREATE TABLE backfill_partitions (
+    partition_key VARCHAR(255) PRIMARY KEY,
+    genre VARCHAR(100) NOT NULL,
+    year_from INT NOT NULL,
+    year_to INT NOT NULL,
+    rating_from DECIMAL(3,1) NOT NULL,
+    rating_to DECIMAL(3,1) NOT NULL,
+    -- Страница, с которой продолжить после перезапуска
+    next_page INT NOT NULL DEFAULT 1,
+    total_pages INT,
+    films_seen BIGINT NOT NULL DEFAULT 0,
+    films_saved BIGINT NOT NULL DEFAULT 0,
+    status VARCHAR(16) NOT NULL,
+    updated_at DATETIME,
+    error VARCHAR(500),
+    INDEX idx_backfill_partitions_status (status)
+);
@@ -0,0 +1,199 @@
+package integration;
+
+import com.bank.movieservice.config.KafkaConfig;
+import com.bank.movieservice.entity.BackfillPartition;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.BackfillPartitionRepository;
+import com.bank.movieservice.repository.GenreRepository;
+import com.bank.movieservice.repository.MovieOutboxRepository;
+import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.CatalogBackfillService;
+import com.bank.movieservice.service.IngestWorkListener;
+import com.bank.movieservice.service.KinopoiskRateLimiter;
+import com.bank.movieservice.service.KinopoiskService;
+import com.bank.movieservice.service.MovieNameIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Распределенная выгрузка через настоящий брокер: задания страниц идут через топик,
+ * API Кинопоиска подменено MockRestServiceServer, состояние срезов - в памяти.
+ */
+@SpringJUnitConfig
+@EmbeddedKafka(partitions = 2, topics = "ingest-work-topic")
+@TestPropertySource(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "kinopoisk.api.url=http://kinopoisk.test/api/v2.2/films",
+        "kinopoisk.api.requests-per-second=1000",
+        "kafka.producer.payload-format=SMILE",
+        "backfill.distributed=true",
+        "backfill.genres=драма",
+        "backfill.year-from=2000",
+        "backfill.year-to=2004",
+        "backfill.year-step=5",
+        "backfill.rating-bands=7-10",
+        "backfill.worker.retry-backoff-ms=100"
+})
+class IngestWorkDistributionIntegrationTest {
+
+    private static final String PARTITION_KEY = "драма|2000-2004|7.0-10.0";
+
+    @Configuration
+    @Import({KafkaConfig.class, CatalogBackfillService.class, IngestWorkListener.class,
+            KinopoiskService.class, KinopoiskRateLimiter.class})
+    static class Config {
+
+        @Bean
+        RestTemplate restTemplate() {
+            return new RestTemplate();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockBean
+    private MovieRepository movieRepository;
+
+    @MockBean
+    private GenreRepository genreRepository;
+
+    @MockBean
+    private MovieOutboxRepository outboxRepository;
+
+    @MockBean
+    private BackfillPartitionRepository partitionRepository;
+
+    @MockBean
+    private MovieNameIndex movieNameIndex;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private CatalogBackfillService backfillService;
+
+    private final Map<String, BackfillPartition> partitions = new ConcurrentHashMap<>();
+    private final Map<Long, Movie> movies = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        stubPartitionStore();
+        when(movieRepository.existsByFilmId(anyLong())).thenAnswer(inv -> movies.containsKey(inv.<Long>getArgument(0)));
+        when(movieRepository.save(any(Movie.class))).thenAnswer(inv -> {
+            Movie movie = inv.getArgument(0);
+            movies.put(movie.getFilmId(), movie);
+            return movie;
+        });
+
+        MockRestServiceServer kinopoisk = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        kinopoisk.expect(ExpectedCount.once(), requestTo(allOf(containsString("5D=2&yearFrom=2000"), endsWith("page=1"))))
+                .andRespond(withSuccess(page(2, 301, 302), MediaType.APPLICATION_JSON));
+        kinopoisk.expect(ExpectedCount.once(), requestTo(allOf(containsString("5D=2&yearFrom=2000"), endsWith("page=2"))))
+                .andRespond(withSuccess(page(2, 303), MediaType.APPLICATION_JSON));
+        for (long filmId : new long[]{301, 302, 303}) {
+            kinopoisk.expect(ExpectedCount.once(), requestTo(endsWith("/films/" + filmId)))
+                    .andRespond(withSuccess("{\"kinopoiskId\":" + filmId + ",\"nameRu\":\"Фильм " + filmId + "\"}",
+                            MediaType.APPLICATION_JSON));
+        }
+    }
+
+    @Test
+    void pagesTravelThroughWorkTopicUntilPartitionIsDone() throws Exception {
+        assertThat(backfillService.start()).isTrue();
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline && !isDone()) {
+            Thread.sleep(100);
+        }
+
+        BackfillPartition partition = partitions.get(PARTITION_KEY);
+        assertThat(partition.getStatus()).isEqualTo(BackfillPartition.Status.DONE);
+        assertThat(partition.getNextPage()).isEqualTo(3);
+        assertThat(partition.getFilmsSaved()).isEqualTo(3);
+        assertThat(movies).containsOnlyKeys(301L, 302L, 303L);
+    }
+
+    private boolean isDone() {
+        BackfillPartition partition = partitions.get(PARTITION_KEY);
+        return partition != null && partition.getStatus() == BackfillPartition.Status.DONE;
+    }
+
+    /**
+     * Таблица backfill_partitions в памяти, с тем же условием по next_page, что и в запросе advance
+     */
+    private void stubPartitionStore() {
+        when(partitionRepository.findAllById(anyIterable())).thenAnswer(inv -> {
+            Iterable<String> keys = inv.getArgument(0);
+            return StreamSupport.stream(keys.spliterator(), false)
+                    .map(partitions::get).filter(Objects::nonNull).toList();
+        });
+        when(partitionRepository.saveAll(anyIterable())).thenAnswer(inv -> {
+            Iterable<BackfillPartition> saved = inv.getArgument(0);
+            saved.forEach(partition -> partitions.put(partition.getPartitionKey(), partition));
+            return saved;
+        });
+        when(partitionRepository.findById(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(partitions.get(inv.<String>getArgument(0))));
+        when(partitionRepository.advance(anyString(), anyInt(), anyInt(), anyLong(), anyLong(), any(), any()))
+                .thenAnswer(inv -> {
+                    BackfillPartition partition = partitions.get(inv.<String>getArgument(0));
+                    synchronized (partition) {
+                        int page = inv.getArgument(1);
+                        if (partition.getNextPage() != page) {
+                            return 0;
+                        }
+                        partition.setNextPage(page + 1);
+                        partition.setTotalPages(inv.getArgument(2));
+                        partition.setFilmsSeen(partition.getFilmsSeen() + inv.<Long>getArgument(3));
+                        partition.setFilmsSaved(partition.getFilmsSaved() + inv.<Long>getArgument(4));
+                        partition.setStatus(inv.getArgument(5));
+                        partition.setUpdatedAt(inv.<LocalDateTime>getArgument(6));
+                        return 1;
+                    }
+                });
+    }
+
+    private static String page(int totalPages, long... filmIds) {
+        StringBuilder items = new StringBuilder();
+        for (long filmId : filmIds) {
+            if (items.length() > 0) {
+                items.append(',');
+            }
+            items.append("{\"kinopoiskId\":").append(filmId).append('}');
+        }
+        return "{\"total\":" + filmIds.length + ",\"totalPages\":" + totalPages + ",\"items\":[" + items + "]}";
+    }
+}
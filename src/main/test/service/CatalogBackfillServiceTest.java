@@ -0,0 +1,349 @@
+package service;
+
+import com.bank.movieservice.DTO.response.KinopoiskResponse;
+import com.bank.movieservice.entity.BackfillPartition;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.kafka.IngestWorkItem;
+import com.bank.movieservice.repository.BackfillPartitionRepository;
+import com.bank.movieservice.service.CatalogBackfillService;
+import com.bank.movieservice.service.KinopoiskService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogBackfillServiceTest {
+
+    @Mock
+    private KinopoiskService kinopoiskService;
+
+    @Mock
+    private BackfillPartitionRepository partitionRepository;
+
+    @Mock
+    private KafkaTemplate<String, IngestWorkItem> ingestWorkTemplate;
+
+    private CatalogBackfillService backfill;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new CatalogBackfillService(kinopoiskService, partitionRepository, ingestWorkTemplate,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(backfill, "genres", "Драма, комедия");
+        ReflectionTestUtils.setField(backfill, "yearFrom", 2000);
+        ReflectionTestUtils.setField(backfill, "yearTo", 2009);
+        ReflectionTestUtils.setField(backfill, "yearStep", 5);
+        ReflectionTestUtils.setField(backfill, "ratingBands", "0-7, 7-10");
+        ReflectionTestUtils.setField(backfill, "workTopic", "ingest-work-topic");
+        ReflectionTestUtils.setField(backfill, "publishTimeoutMs", 1000L);
+    }
+
+    @Test
+    void plansGenreYearRatingGrid() {
+        List<BackfillPartition> plan = ReflectionTestUtils.invokeMethod(backfill, "planPartitions");
+
+        assertThat(plan).extracting(BackfillPartition::getPartitionKey).containsExactly(
+                "драма|2000-2004|0.0-7.0", "драма|2000-2004|7.0-10.0",
+                "драма|2005-2009|0.0-7.0", "драма|2005-2009|7.0-10.0",
+                "комедия|2000-2004|0.0-7.0", "комедия|2000-2004|7.0-10.0",
+                "комедия|2005-2009|0.0-7.0", "комедия|2005-2009|7.0-10.0");
+    }
+
+    @Test
+    void walksPagesAndCheckpointsEachOne() throws Exception {
+        BackfillPartition partition = partition();
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 1)).thenReturn(page(2, 1L, 2L));
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 2)).thenReturn(page(2, 3L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0)))
+                .thenReturn(saved(movie(1L), movie(2L)))
+                .thenReturn(saved());
+        List<Integer> checkpointedPages = new ArrayList<>();
+        when(partitionRepository.save(any(BackfillPartition.class))).thenAnswer(invocation -> {
+            checkpointedPages.add(invocation.<BackfillPartition>getArgument(0).getNextPage());
+            return invocation.getArgument(0);
+        });
+        Set<Long> claimed = new HashSet<>(Set.of(1L, 2L, 99L));
+
+        ReflectionTestUtils.invokeMethod(backfill, "runPartition", partition, claimed);
+
+        // RUNNING, после первой страницы, после второй
+        assertThat(checkpointedPages).containsExactly(1, 2, 3);
+        assertThat(partition.getStatus()).isEqualTo(BackfillPartition.Status.DONE);
+        assertThat(partition.getFilmsSeen()).isEqualTo(3);
+        assertThat(partition.getFilmsSaved()).isEqualTo(2);
+        // Сохраненные фильмы больше не держатся в claimed
+        assertThat(claimed).containsExactly(99L);
+        assertThat(backfill.progress().pagesFetched()).isEqualTo(2);
+    }
+
+    @Test
+    void resumesFromCheckpointAndStopsAtApiPageLimit() throws Exception {
+        BackfillPartition partition = partition();
+        partition.setNextPage(20);
+        partition.setTotalPages(35);
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 20)).thenReturn(page(35, 7L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0))).thenReturn(saved(movie(7L)));
+
+        ReflectionTestUtils.invokeMethod(backfill, "runPartition", partition, new HashSet<Long>());
+
+        verify(kinopoiskService, times(1)).searchFilmsPage(anyString(), anyInt(), anyInt(), anyDouble(), anyDouble(), anyInt());
+        assertThat(partition.getStatus()).isEqualTo(BackfillPartition.Status.DONE);
+        assertThat(partition.getNextPage()).isEqualTo(21);
+    }
+
+    @Test
+    void apiErrorMarksPartitionFailedAtSamePage() throws Exception {
+        BackfillPartition partition = partition();
+        partition.setNextPage(4);
+        when(kinopoiskService.searchFilmsPage(anyString(), anyInt(), anyInt(), anyDouble(), anyDouble(), eq(4)))
+                .thenThrow(new ResourceAccessException("timeout"));
+
+        ReflectionTestUtils.invokeMethod(backfill, "runPartition", partition, new HashSet<Long>());
+
+        assertThat(partition.getStatus()).isEqualTo(BackfillPartition.Status.FAILED);
+        assertThat(partition.getNextPage()).isEqualTo(4);
+        assertThat(partition.getError()).isEqualTo("timeout");
+        verify(kinopoiskService, never()).saveNewFilms(anyList(), anySet(), anyInt());
+    }
+
+    @Test
+    void interruptedPageIsCheckpointedPendingAtSamePage() throws Exception {
+        BackfillPartition partition = partition();
+        partition.setNextPage(3);
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 3)).thenReturn(page(5, 1L, 2L));
+        // Остановка прервала загрузку деталей после первого фильма
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0)))
+                .thenReturn(new KinopoiskService.SavedFilms(List.of(movie(1L)), false));
+
+        ReflectionTestUtils.invokeMethod(backfill, "runPartition", partition, new HashSet<Long>());
+
+        assertThat(partition.getStatus()).isEqualTo(BackfillPartition.Status.PENDING);
+        assertThat(partition.getNextPage()).isEqualTo(3);
+        assertThat(partition.getFilmsSaved()).isEqualTo(1);
+        assertThat(backfill.progress().pagesFetched()).isEqualTo(2);
+    }
+
+    @Test
+    void saveErrorMarksPartitionFailedAtSamePage() throws Exception {
+        BackfillPartition partition = partition();
+        partition.setNextPage(3);
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 3)).thenReturn(page(5, 1L, 2L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0)))
+                .thenThrow(new IllegalStateException("deadlock"));
+
+        ReflectionTestUtils.invokeMethod(backfill, "runPartition", partition, new HashSet<Long>());
+
+        assertThat(partition.getStatus()).isEqualTo(BackfillPartition.Status.FAILED);
+        assertThat(partition.getNextPage()).isEqualTo(3);
+        assertThat(partition.getError()).isEqualTo("deadlock");
+    }
+
+    @Test
+    void prepareSkipsDonePartitionsAndEstimatesRemainingPages() {
+        ReflectionTestUtils.setField(backfill, "genres", "драма");
+        BackfillPartition done = new BackfillPartition("драма", 2000, 2004, new BigDecimal("0.0"), new BigDecimal("7.0"));
+        done.setTotalPages(4);
+        done.setNextPage(5);
+        done.setStatus(BackfillPartition.Status.DONE);
+        BackfillPartition started = new BackfillPartition("драма", 2000, 2004, new BigDecimal("7.0"), new BigDecimal("10.0"));
+        started.setTotalPages(6);
+        started.setNextPage(3);
+        when(partitionRepository.findAllById(anyList())).thenReturn(List.of(done, started));
+
+        List<BackfillPartition> work = ReflectionTestUtils.invokeMethod(backfill, "preparePartitions");
+
+        verify(partitionRepository).updateStatus(BackfillPartition.Status.RUNNING, BackfillPartition.Status.PENDING);
+        assertThat(work).extracting(BackfillPartition::getPartitionKey).containsExactly(
+                "драма|2000-2004|7.0-10.0", "драма|2005-2009|0.0-7.0", "драма|2005-2009|7.0-10.0");
+        ArgumentCaptor<List<BackfillPartition>> created = ArgumentCaptor.forClass(List.class);
+        verify(partitionRepository).saveAll(created.capture());
+        assertThat(created.getValue()).hasSize(2);
+
+        CatalogBackfillService.Progress progress = backfill.progress();
+        assertThat(progress.partitionsTotal()).isEqualTo(4);
+        assertThat(progress.partitionsDone()).isEqualTo(1);
+        assertThat(progress.partitionsRemaining()).isEqualTo(3);
+        // 4 страницы у начатого среза и по среднему (4 + 6) / 2 = 5 у двух неизвестных
+        assertThat(progress.remainingPages()).isEqualTo(14);
+        assertThat(progress.etaSeconds()).isNull();
+    }
+
+    @Test
+    void workItemAdvancesCheckpointAndPublishesNextPage() throws Exception {
+        BackfillPartition partition = partition();
+        partition.setNextPage(2);
+        when(partitionRepository.findById(partition.getPartitionKey())).thenReturn(Optional.of(partition));
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 2)).thenReturn(page(5, 1L, 2L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0))).thenReturn(saved(movie(1L)));
+        when(partitionRepository.advance(eq(partition.getPartitionKey()), eq(2), eq(5), eq(2L), eq(1L),
+                eq(BackfillPartition.Status.RUNNING), any())).thenReturn(1);
+        when(ingestWorkTemplate.send(anyString(), anyString(), any(IngestWorkItem.class))).thenReturn(sent());
+
+        backfill.processWorkItem(IngestWorkItem.of(partition));
+
+        ArgumentCaptor<IngestWorkItem> next = ArgumentCaptor.forClass(IngestWorkItem.class);
+        verify(ingestWorkTemplate).send(eq("ingest-work-topic"), eq(partition.getPartitionKey()), next.capture());
+        assertThat(next.getValue().page()).isEqualTo(3);
+    }
+
+    @Test
+    void staleWorkItemIsSkippedWithoutApiCall() throws Exception {
+        BackfillPartition partition = partition();
+        IngestWorkItem redelivered = IngestWorkItem.of(partition);
+        partition.setNextPage(2);
+        when(partitionRepository.findById(partition.getPartitionKey())).thenReturn(Optional.of(partition));
+
+        backfill.processWorkItem(redelivered);
+
+        verifyNoInteractions(kinopoiskService, ingestWorkTemplate);
+        verify(partitionRepository, never()).advance(anyString(), anyInt(), anyInt(), anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void nextPageIsPublishedBeforeCheckpointAdvances() throws Exception {
+        BackfillPartition partition = partition();
+        when(partitionRepository.findById(partition.getPartitionKey())).thenReturn(Optional.of(partition));
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 1)).thenReturn(page(3, 1L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0))).thenReturn(saved());
+        when(ingestWorkTemplate.send(anyString(), anyString(), any(IngestWorkItem.class))).thenReturn(sent());
+        // Страницу уже засчитал другой обработчик - его задание стр. 2 тоже в топике, дубль отсеется
+        when(partitionRepository.advance(anyString(), anyInt(), anyInt(), anyLong(), anyLong(), any(), any()))
+                .thenReturn(0);
+
+        backfill.processWorkItem(IngestWorkItem.of(partition));
+
+        InOrder order = inOrder(ingestWorkTemplate, partitionRepository);
+        order.verify(ingestWorkTemplate).send(anyString(), anyString(), any(IngestWorkItem.class));
+        order.verify(partitionRepository).advance(anyString(), eq(1), anyInt(), anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void failedPublishKeepsCheckpointSoItemIsRetried() throws Exception {
+        BackfillPartition partition = partition();
+        when(partitionRepository.findById(partition.getPartitionKey())).thenReturn(Optional.of(partition));
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 1)).thenReturn(page(3, 1L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0))).thenReturn(saved());
+        SettableListenableFuture<SendResult<String, IngestWorkItem>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("брокер недоступен"));
+        when(ingestWorkTemplate.send(anyString(), anyString(), any(IngestWorkItem.class))).thenReturn(failed);
+
+        assertThatThrownBy(() -> backfill.processWorkItem(IngestWorkItem.of(partition)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("не опубликовано");
+        verify(partitionRepository, never()).advance(anyString(), anyInt(), anyInt(), anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void saveErrorFailsWorkItemWithoutPublishingOrAdvancing() throws Exception {
+        BackfillPartition partition = partition();
+        when(partitionRepository.findById(partition.getPartitionKey())).thenReturn(Optional.of(partition));
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 1)).thenReturn(page(3, 1L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0)))
+                .thenThrow(new IllegalStateException("deadlock"));
+
+        // Ошибка уходит обработчику ошибок контейнера: повтор, затем markWorkFailed
+        assertThatThrownBy(() -> backfill.processWorkItem(IngestWorkItem.of(partition)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("deadlock");
+        verifyNoInteractions(ingestWorkTemplate);
+        verify(partitionRepository, never()).advance(anyString(), anyInt(), anyInt(), anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void interruptedWorkItemIsNotAcknowledgedOrAdvanced() throws Exception {
+        BackfillPartition partition = partition();
+        when(partitionRepository.findById(partition.getPartitionKey())).thenReturn(Optional.of(partition));
+        when(kinopoiskService.searchFilmsPage("драма", 2000, 2004, 7.0, 10.0, 1)).thenReturn(page(3, 1L, 2L));
+        when(kinopoiskService.saveAllNewFilms(anyList(), anySet(), eq(0)))
+                .thenReturn(new KinopoiskService.SavedFilms(List.of(movie(1L)), false));
+
+        assertThatThrownBy(() -> backfill.processWorkItem(IngestWorkItem.of(partition)))
+                .isInstanceOf(InterruptedException.class);
+        verifyNoInteractions(ingestWorkTemplate);
+        verify(partitionRepository, never()).advance(anyString(), anyInt(), anyInt(), anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void startRepublishesStalledPartitionsOfRunningBackfill() {
+        ReflectionTestUtils.setField(backfill, "genres", "драма");
+        ReflectionTestUtils.setField(backfill, "yearTo", 2004);
+        ReflectionTestUtils.setField(backfill, "ratingBands", "7-10");
+        ReflectionTestUtils.setField(backfill, "distributed", true);
+        ReflectionTestUtils.setField(backfill, "staleAfterMs", 600_000L);
+        when(partitionRepository.findAllById(anyList())).thenReturn(List.of());
+        when(ingestWorkTemplate.send(anyString(), anyString(), any(IngestWorkItem.class))).thenReturn(sent());
+        assertThat(backfill.start()).isTrue();
+
+        // Цепочка заданий среза оборвалась: он RUNNING, но давно не сдвигался
+        BackfillPartition stalled = partition();
+        stalled.setStatus(BackfillPartition.Status.RUNNING);
+        stalled.setNextPage(4);
+        stalled.setUpdatedAt(LocalDateTime.now().minusHours(1));
+        when(partitionRepository.findAllById(anyList())).thenReturn(List.of(stalled));
+        when(partitionRepository.touch(eq(stalled.getPartitionKey()), eq(4), anyCollection(), any())).thenReturn(1);
+        ReflectionTestUtils.setField(backfill, "startedAt", LocalDateTime.now().minusHours(2));
+
+        assertThat(backfill.start()).isTrue();
+
+        ArgumentCaptor<IngestWorkItem> items = ArgumentCaptor.forClass(IngestWorkItem.class);
+        verify(ingestWorkTemplate, times(2)).send(anyString(), eq(stalled.getPartitionKey()), items.capture());
+        assertThat(items.getAllValues()).extracting(IngestWorkItem::page).containsExactly(1, 4);
+        assertThat(backfill.isRunning()).isTrue();
+    }
+
+    private SettableListenableFuture<SendResult<String, IngestWorkItem>> sent() {
+        SettableListenableFuture<SendResult<String, IngestWorkItem>> future = new SettableListenableFuture<>();
+        future.set(null);
+        return future;
+    }
+
+    private KinopoiskService.SavedFilms saved(Movie... movies) {
+        return new KinopoiskService.SavedFilms(List.of(movies), true);
+    }
+
+    private BackfillPartition partition() {
+        return new BackfillPartition("драма", 2000, 2004, new BigDecimal("7.0"), new BigDecimal("10.0"));
+    }
+
+    private KinopoiskResponse page(int totalPages, long... filmIds) {
+        KinopoiskResponse response = new KinopoiskResponse();
+        response.setTotalPages(totalPages);
+        response.setItems(LongStream.of(filmIds).mapToObj(id -> {
+            KinopoiskResponse.Film film = new KinopoiskResponse.Film();
+            film.setKinopoiskId(id);
+            return film;
+        }).collect(Collectors.toList()));
+        return response;
+    }
+
+    private Movie movie(long filmId) {
+        Movie movie = new Movie();
+        movie.setFilmId(filmId);
+        return movie;
+    }
+}
@@ -0,0 +1,66 @@
+package service;
+
+import com.bank.movieservice.service.EmailDispatcher;
+import com.bank.movieservice.service.EmailService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailDispatcherTest {
+
+    @Mock
+    private EmailService emailService;
+
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new EmailDispatcher(emailService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "workers", 1);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 1);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoffMs", 10L);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoffMs", 20L);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void submit_ShouldRetryWithBackoff_AndCompleteAfterSuccess() throws Exception {
+        doThrow(new RuntimeException("timeout"))
+                .doNothing()
+                .when(emailService).sendReportByEmail(anyString(), anyString(), anyString(), anyString());
+
+        dispatcher.submit("user@example.com", "Report", "a,b", "csv").get(5, TimeUnit.SECONDS);
+
+        verify(emailService, times(2)).sendReportByEmail("user@example.com", "Report", "a,b", "csv");
+    }
+
+    @Test
+    void submit_ShouldFail_WhenAttemptsExhausted() {
+        doThrow(new RuntimeException("SMTP down"))
+                .when(emailService).sendReportByEmail(anyString(), anyString(), anyString(), anyString());
+
+        CompletableFuture<Void> result = dispatcher.submit("user@example.com", "Report", "a,b", "csv");
+
+        assertThat(result).failsWithin(5, TimeUnit.SECONDS);
+        verify(emailService, times(3)).sendReportByEmail(anyString(), anyString(), anyString(), anyString());
+    }
+}
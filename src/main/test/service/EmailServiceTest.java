@@ -3,26 +3,33 @@ package service;
 import com.bank.movieservice.entity.Movie;
 import com.bank.movieservice.repository.MovieRepository;
 import com.bank.movieservice.service.EmailService;
+import com.bank.movieservice.service.ReportRowWriter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
 
 import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,18 +41,11 @@ class EmailServiceTest {
     private EmailService emailService;
     private Movie movie1;
     private Movie movie2;
-    private DecimalFormat decimalFormat;
 
     @BeforeEach
     void setUp() {
-        // Создаем DecimalFormat для тестов (такой же как в Spring конфигурации)
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
-        symbols.setDecimalSeparator('.');
-        decimalFormat = new DecimalFormat("#0.0", symbols);
-        decimalFormat.setRoundingMode(java.math.RoundingMode.HALF_UP);
-
-        // Создаем EmailService для тестов - теперь передаем 3 параметра
-        emailService = new EmailService(null, movieRepository, decimalFormat);
+        // Создаем EmailService для тестов - форматирование строк через общий ReportRowWriter
+        emailService = new EmailService(null, movieRepository, new ReportRowWriter());
 
         // Инициализируем тестовые данные
         movie1 = new Movie();
@@ -353,4 +353,64 @@ class EmailServiceTest {
         assertThat(csv).contains("8.5");
         assertThat(csv).contains("10.0"); // 9.99 округляется до 10.0
     }
-}
\ No newline at end of file
+
+    @Test
+    void generateCsvReportParallel_ShouldMergePartitionsInIdOrder() {
+        // Arrange: 2 потока -> 8 партиций по одному id; ранние партиции отвечают дольше поздних,
+        // так что готовность идет в обратном порядке
+        ReflectionTestUtils.setField(emailService, "reportParallelism", 2);
+        when(movieRepository.findIdRange()).thenReturn(idRange(1L, 8L));
+
+        when(movieRepository.findAll(any(Specification.class), any(Sort.class)))
+                .thenAnswer(invocation -> {
+                    long id = lowerIdOf(invocation.getArgument(0));
+                    Thread.sleep((9 - id) * 10);
+                    Movie movie = new Movie();
+                    movie.setFilmId(id);
+                    movie.setFilmName("Movie " + id);
+                    movie.setYear(2000);
+                    movie.setRating(new BigDecimal("7.0"));
+                    movie.setDescription("Test");
+                    return List.of(movie);
+                });
+
+        // Act
+        String csv = emailService.generateCsvReportParallel(null, null, null, null, null);
+
+        // Assert
+        String[] lines = csv.split("\n");
+        assertThat(lines).hasSize(9);
+        assertThat(lines[0]).isEqualTo("filmId,filmName,year,rating,description");
+        assertThat(Arrays.stream(lines).skip(1).map(line -> line.substring(0, line.indexOf(','))))
+                .containsExactly("1", "2", "3", "4", "5", "6", "7", "8");
+    }
+
+    @Test
+    void generateCsvReportParallel_ShouldReturnHeaderOnly_WhenTableIsEmpty() {
+        when(movieRepository.findIdRange()).thenReturn(idRange(null, null));
+
+        String csv = emailService.generateCsvReportParallel(null, null, null, null, null);
+
+        assertThat(csv).isEqualTo("filmId,filmName,year,rating,description\n");
+    }
+
+    // Нижняя граница id партиции: спецификация применяется к заглушкам Criteria API
+    @SuppressWarnings("unchecked")
+    private static long lowerIdOf(Specification<Movie> partition) {
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        partition.toPredicate(mock(Root.class), mock(CriteriaQuery.class), cb);
+        ArgumentCaptor<Long> lower = ArgumentCaptor.forClass(Long.class);
+        verify(cb).between(any(), lower.capture(), any(Long.class));
+        return lower.getValue();
+    }
+
+    private MovieRepository.IdRange idRange(Long min, Long max) {
+        return new MovieRepository.IdRange() {
+            @Override
+            public Long getMinId() { return min; }
+
+            @Override
+            public Long getMaxId() { return max; }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package service;
+
+import com.bank.movieservice.service.FilmIdDeduplicator;
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.service.LongHashSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmIdDeduplicatorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private SimpleMeterRegistry meterRegistry;
+    private FilmIdDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deduplicator = new FilmIdDeduplicator(meterRegistry, 16);
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "windowMs", 1000L);
+        ReflectionTestUtils.setField(deduplicator, "clock", (LongSupplier) now::get);
+    }
+
+    @Test
+    void filterNew_ShouldDropRepublishedFilms_WithinWindow() {
+        assertThat(filmIds(deduplicator.filterNew(List.of(movie(1L), movie(2L), movie(1L))))).containsExactly(1L, 2L);
+
+        now.addAndGet(500);
+        assertThat(filmIds(deduplicator.filterNew(List.of(movie(2L), movie(3L))))).containsExactly(3L);
+
+        assertThat(meterRegistry.get("movie.digest.duplicates").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void filterNew_ShouldKeepFilmsWithoutFilmId() {
+        MovieRecord noId = new MovieRecord(null, null, "Без ID", null, Double.NaN, "N/A", "", "", 0L);
+
+        assertThat(deduplicator.filterNew(List.of(noId, noId))).hasSize(2);
+    }
+
+    @Test
+    void filterNew_ShouldForgetFilms_AfterTwoWindows() {
+        deduplicator.filterNew(List.of(movie(1L)));
+
+        // Первая смена окна: фильм еще в предыдущем поколении
+        now.addAndGet(1000);
+        assertThat(deduplicator.filterNew(List.of(movie(1L)))).isEmpty();
+
+        // Вторая смена окна: предыдущее поколение очищено
+        now.addAndGet(1000);
+        assertThat(filmIds(deduplicator.filterNew(List.of(movie(1L))))).containsExactly(1L);
+    }
+
+    @Test
+    void longHashSet_ShouldStayCompact() {
+        int ids = 100_000;
+        LongHashSet set = new LongHashSet(ids);
+        for (long filmId = 1; filmId <= ids; filmId++) {
+            assertThat(set.add(filmId)).isTrue();
+        }
+
+        assertThat(set.add(ids)).isFalse();
+        assertThat(set.contains(ids / 2)).isTrue();
+        assertThat(set.contains(ids + 1)).isFalse();
+        assertThat(set.size()).isEqualTo(ids);
+        // Против ~60-80 байт на Long в HashSet
+        assertThat(set.memoryBytes() / (double) ids).isLessThanOrEqualTo(32.0);
+
+        long before = set.memoryBytes();
+        set.clear();
+        assertThat(set.size()).isZero();
+        assertThat(set.memoryBytes()).isEqualTo(before);
+    }
+
+    private static MovieRecord movie(long filmId) {
+        return new MovieRecord(null, filmId, "Фильм " + filmId, null, Double.NaN, "N/A", "", "", 0L);
+    }
+
+    private static List<Long> filmIds(List<MovieRecord> movies) {
+        return movies.stream().map(MovieRecord::filmId).collect(Collectors.toList());
+    }
+}
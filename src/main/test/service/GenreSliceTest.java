@@ -0,0 +1,31 @@
+package service;
+
+import com.bank.movieservice.service.GenreSlice;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GenreSliceTest {
+
+    @Test
+    void parsesGenreYearsAndRating() {
+        assertThat(GenreSlice.parse(" драма ", 7.0)).isEqualTo(new GenreSlice("драма", null, null, 7.0));
+        assertThat(GenreSlice.parse("драма:2010-2019", 7.0)).isEqualTo(new GenreSlice("драма", 2010, 2019, 7.0));
+        assertThat(GenreSlice.parse("комедия:2000-:7.5", 7.0)).isEqualTo(new GenreSlice("комедия", 2000, null, 7.5));
+        assertThat(GenreSlice.parse("боевик::8", 7.0)).isEqualTo(new GenreSlice("боевик", null, null, 8.0));
+        assertThat(GenreSlice.parse("аниме:2020", 7.0)).isEqualTo(new GenreSlice("аниме", 2020, 2020, 7.0));
+    }
+
+    @Test
+    void rejectsMissingGenre() {
+        assertThatThrownBy(() -> GenreSlice.parse(":2010", 7.0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GenreSlice.parse("драма:2010:7:1", 7.0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void labelShowsOnlySetBounds() {
+        assertThat(GenreSlice.parse("комедия:2000-:7.5", 7.0)).hasToString("комедия 2000- ≥7.5");
+        assertThat(GenreSlice.parse("драма", 7.0)).hasToString("драма ≥7.0");
+    }
+}
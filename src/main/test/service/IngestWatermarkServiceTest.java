@@ -0,0 +1,94 @@
+package service;
+
+import com.bank.movieservice.DTO.response.KinopoiskResponse;
+import com.bank.movieservice.entity.IngestWatermark;
+import com.bank.movieservice.repository.IngestWatermarkRepository;
+import com.bank.movieservice.service.IngestWatermarkService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestWatermarkServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-01T07:00:00Z");
+
+    @Mock
+    private IngestWatermarkRepository watermarkRepository;
+
+    private IngestWatermarkService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IngestWatermarkService(watermarkRepository);
+        ReflectionTestUtils.setField(service, "initialBackoffMs", 120_000L);
+        ReflectionTestUtils.setField(service, "maxBackoffMs", 600_000L);
+        ReflectionTestUtils.setField(service, "clock", Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void backoffDoublesUpToMaxAndResetsOnNewFilms() {
+        assertThat(service.backoff(0)).isEqualTo(Duration.ZERO);
+        assertThat(service.backoff(1)).isEqualTo(Duration.ofMinutes(2));
+        assertThat(service.backoff(2)).isEqualTo(Duration.ofMinutes(4));
+        assertThat(service.backoff(3)).isEqualTo(Duration.ofMinutes(8));
+        assertThat(service.backoff(4)).isEqualTo(Duration.ofMinutes(10));
+        assertThat(service.backoff(100)).isEqualTo(Duration.ofMinutes(10));
+    }
+
+    @Test
+    void recordSchedulesNextRun() {
+        when(watermarkRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        IngestWatermark watermark = new IngestWatermark("драма|||7.0");
+        LocalDateTime now = LocalDateTime.ofInstant(NOW, ZoneOffset.UTC);
+
+        service.record(watermark, "abc", 20, 0);
+        service.record(watermark, "abc", 20, 0);
+        assertThat(watermark.getEmptyRuns()).isEqualTo(2);
+        assertThat(watermark.getNextRunAt()).isEqualTo(now.plusMinutes(4));
+        assertThat(service.isDue(watermark)).isFalse();
+
+        service.record(watermark, "def", 20, 3);
+        assertThat(watermark.getEmptyRuns()).isZero();
+        assertThat(watermark.getTotalSaved()).isEqualTo(3);
+        assertThat(watermark.getFilmIdsHash()).isEqualTo("def");
+        assertThat(service.isDue(watermark)).isTrue();
+
+        // Пустой ответ не затирает отпечаток
+        service.record(watermark, null, 0, 0);
+        assertThat(watermark.getFilmIdsHash()).isEqualTo("def");
+        assertThat(watermark.getLastFilmCount()).isEqualTo(20);
+    }
+
+    @Test
+    void fingerprintIgnoresOrder() {
+        String first = IngestWatermarkService.fingerprint(List.of(film(3L), film(1L), film(2L)));
+        String second = IngestWatermarkService.fingerprint(List.of(film(1L), film(2L), film(3L)));
+        String other = IngestWatermarkService.fingerprint(List.of(film(1L), film(2L), film(4L)));
+
+        assertThat(first).isEqualTo(second).hasSize(64);
+        assertThat(other).isNotEqualTo(first);
+        assertThat(IngestWatermarkService.fingerprint(List.of())).isNull();
+        assertThat(service.isUnchanged(new IngestWatermark("k"), null)).isFalse();
+    }
+
+    private static KinopoiskResponse.Film film(long filmId) {
+        KinopoiskResponse.Film film = new KinopoiskResponse.Film();
+        film.setKinopoiskId(filmId);
+        return film;
+    }
+}
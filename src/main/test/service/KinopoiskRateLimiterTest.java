@@ -0,0 +1,51 @@
+package service;
+
+import com.bank.movieservice.service.KinopoiskRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KinopoiskRateLimiterTest {
+
+    @Test
+    void spacesRequestsAcrossThreads() throws Exception {
+        // 50 запросов в секунду - интервал 20 мс
+        KinopoiskRateLimiter limiter = new KinopoiskRateLimiter(new SimpleMeterRegistry(), 50);
+        limiter.acquire();
+
+        long startedAt = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 5; j++) {
+                        limiter.acquire();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 20 запросов после первого в четырех потоках вместе - не быстрее 20 * 20 мс
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(380);
+    }
+
+    @Test
+    void rejectsNonPositiveRate() {
+        assertThatThrownBy(() -> new KinopoiskRateLimiter(new SimpleMeterRegistry(), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -2,8 +2,11 @@ package service;
 
 import com.bank.movieservice.DTO.response.KinopoiskResponse;
 import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.MovieOutboxRepository;
 import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.KinopoiskRateLimiter;
 import com.bank.movieservice.service.KinopoiskService;
+import com.bank.movieservice.service.MovieNameIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,9 +20,12 @@ import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +37,16 @@ class KinopoiskServiceTest {
 
     @Mock
     private RestTemplate restTemplate;
+
+    @Mock
+    private KinopoiskRateLimiter rateLimiter;
+
+    @Mock
+    private MovieOutboxRepository outboxRepository;
+
+    @Mock
+    private MovieNameIndex movieNameIndex;
+
     @InjectMocks
     private KinopoiskService kinopoiskService;
 
@@ -117,4 +133,37 @@ class KinopoiskServiceTest {
         verify(movieRepository, never()).existsByFilmId(anyLong());
         verify(movieRepository, never()).save(any(Movie.class));
     }
+
+    @Test
+    void saveAllNewFilms_ShouldRethrowSaveErrorAndReleaseClaims() {
+        KinopoiskResponse.Film film = new KinopoiskResponse.Film();
+        film.setKinopoiskId(12345L);
+        film.setNameRu("Матрица");
+        when(movieRepository.existsByFilmId(12345L)).thenReturn(false);
+        when(movieRepository.save(any(Movie.class))).thenThrow(new IllegalStateException("deadlock"));
+        Set<Long> claimed = new HashSet<>();
+
+        assertThatThrownBy(() -> kinopoiskService.saveAllNewFilms(List.of(film), claimed, 0))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("deadlock");
+        // Страница повторится - фильм не должен остаться занятым
+        assertThat(claimed).isEmpty();
+    }
+
+    @Test
+    void saveAllNewFilms_ShouldReportIncompletePageWhenInterrupted() throws Exception {
+        KinopoiskResponse.Film film = new KinopoiskResponse.Film();
+        film.setKinopoiskId(12345L);
+        when(movieRepository.existsByFilmId(12345L)).thenReturn(false);
+        doThrow(new InterruptedException()).when(rateLimiter).acquire();
+        Set<Long> claimed = new HashSet<>();
+
+        KinopoiskService.SavedFilms result = kinopoiskService.saveAllNewFilms(List.of(film), claimed, 0);
+
+        assertThat(Thread.interrupted()).isTrue();
+        assertThat(result.complete()).isFalse();
+        assertThat(result.movies()).isEmpty();
+        assertThat(claimed).isEmpty();
+        verify(movieRepository, never()).save(any(Movie.class));
+    }
 }
@@ -0,0 +1,90 @@
+package service;
+
+import com.bank.movieservice.service.LagScalingPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LagScalingPolicyTest {
+
+    private static final long COOLDOWN = 60_000L;
+
+    private LagScalingPolicy policy;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        // up: lag на поток > 1000 два замера подряд, down: < 100 три замера подряд
+        policy = new LagScalingPolicy(1, 1000, 100, 2, 3, COOLDOWN);
+        now = 1_000_000L;
+    }
+
+    @Test
+    void scalesUpOnlyAfterConsecutiveHighSamples() {
+        assertThat(policy.next(2, 5000, 6, tick())).isEqualTo(2);
+        assertThat(policy.next(2, 5000, 6, tick())).isEqualTo(3);
+    }
+
+    @Test
+    void singleSpikeDoesNotScale() {
+        assertThat(policy.next(2, 5000, 6, tick())).isEqualTo(2);
+        assertThat(policy.next(2, 500, 6, tick())).isEqualTo(2);
+        assertThat(policy.next(2, 5000, 6, tick())).isEqualTo(2);
+    }
+
+    @Test
+    void lagBetweenThresholdsKeepsConcurrency() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(policy.next(3, 3 * 500, 6, tick())).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void scalesDownAfterLongerLowPeriod() {
+        assertThat(policy.next(3, 0, 6, tick())).isEqualTo(3);
+        assertThat(policy.next(3, 0, 6, tick())).isEqualTo(3);
+        assertThat(policy.next(3, 0, 6, tick())).isEqualTo(2);
+    }
+
+    @Test
+    void neverExceedsPartitionLimitOrGoesBelowMin() {
+        policy.next(3, 100_000, 3, tick());
+        assertThat(policy.next(3, 100_000, 3, tick())).isEqualTo(3);
+
+        for (int i = 0; i < 5; i++) {
+            policy.next(1, 0, 3, tick());
+        }
+        assertThat(policy.next(1, 0, 3, tick())).isEqualTo(1);
+    }
+
+    @Test
+    void cooldownBlocksSecondChange() {
+        policy.next(2, 5000, 6, tick());
+        assertThat(policy.next(2, 5000, 6, tick())).isEqualTo(3);
+
+        // Lag все еще высокий, но пауза после изменения не прошла
+        assertThat(policy.next(3, 9000, 6, tick())).isEqualTo(3);
+        assertThat(policy.next(3, 9000, 6, tick())).isEqualTo(3);
+
+        now += COOLDOWN;
+        assertThat(policy.next(3, 9000, 6, now)).isEqualTo(4);
+    }
+
+    @Test
+    void shrinksWhenPartitionsDisappear() {
+        assertThat(policy.next(5, 1000, 2, tick())).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsOverlappingThresholds() {
+        assertThatThrownBy(() -> new LagScalingPolicy(1, 100, 100, 1, 1, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private long tick() {
+        now += 1000;
+        return now;
+    }
+}
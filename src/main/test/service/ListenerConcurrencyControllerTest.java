@@ -0,0 +1,68 @@
+package service;
+
+import com.bank.movieservice.service.ListenerConcurrencyController;
+import com.bank.movieservice.service.MovieDigestBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ListenerConcurrencyControllerTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private KafkaAdmin kafkaAdmin;
+
+    @Mock
+    private MovieDigestBuffer digestBuffer;
+
+    @Mock
+    private ConcurrentMessageListenerContainer<String, Object> container;
+
+    private ListenerConcurrencyController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new ListenerConcurrencyController(listenerRegistry, kafkaAdmin, digestBuffer,
+                new SimpleMeterRegistry(), 1, 1000, 100, 2, 5, 120_000);
+        ReflectionTestUtils.setField(controller, "drainTimeoutMs", 5000L);
+    }
+
+    @Test
+    void resizeSendsBufferedMoviesBeforeRestartingConsumers() throws InterruptedException {
+        when(digestBuffer.drain(5000L)).thenReturn(true);
+
+        ReflectionTestUtils.invokeMethod(controller, "resize", container, 1, 3, 5000L);
+
+        // Подтверждения буфера коммитят консьюмеры, которые их получили - до остановки
+        InOrder order = inOrder(container, digestBuffer);
+        order.verify(container).pause();
+        order.verify(digestBuffer).drain(5000L);
+        order.verify(container).stop(any(Runnable.class));
+    }
+
+    @Test
+    void resizeIsPostponedWhileBufferCannotBeSent() throws InterruptedException {
+        when(digestBuffer.drain(5000L)).thenReturn(false);
+
+        ReflectionTestUtils.invokeMethod(controller, "resize", container, 1, 3, 5000L);
+
+        verify(container).pause();
+        verify(container).resume();
+        verify(container, never()).stop(any(Runnable.class));
+        verify(container, never()).setConcurrency(anyInt());
+    }
+}
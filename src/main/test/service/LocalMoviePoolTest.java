@@ -0,0 +1,109 @@
+package service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.MovieOutboxRepository;
+import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.GenreSlice;
+import com.bank.movieservice.service.LocalMoviePool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocalMoviePoolTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieOutboxRepository outboxRepository;
+
+    private LocalMoviePool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new LocalMoviePool(movieRepository, outboxRepository);
+    }
+
+    @Test
+    void takesBestUnclaimedMoviesAndQueuesThem() {
+        when(movieRepository.findUnsentByGenre(eq("драма"), eq(BigDecimal.valueOf(7.5)), eq(false),
+                eq(2010), eq(9999), any(Pageable.class)))
+                .thenReturn(List.of(movie(1L), movie(2L), movie(3L), movie(4L)));
+        Set<Long> claimed = new HashSet<>(Set.of(2L));
+        when(movieRepository.markDigestSent(anyCollection(), any(LocalDateTime.class))).thenReturn(2);
+
+        List<Movie> taken = pool.takeUnsent(GenreSlice.parse("драма:2010-:7.5", 7.0), 2, claimed);
+
+        assertThat(taken).extracting(Movie::getFilmId).containsExactly(1L, 3L);
+        assertThat(claimed).containsExactlyInAnyOrder(1L, 2L, 3L);
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(movieRepository).markDigestSent(ids.capture(), any(LocalDateTime.class));
+        assertThat(ids.getValue()).containsExactly(101L, 103L);
+        verify(outboxRepository).enqueue(eq(taken), any(LocalDateTime.class));
+        verify(movieRepository, never()).findIdsByDigestSentAt(any(), any());
+    }
+
+    @Test
+    void queuesOnlyMoviesThisRunManagedToMark() {
+        when(movieRepository.findUnsentByGenre(any(), any(), eq(true), eq(0), eq(9999), any(Pageable.class)))
+                .thenReturn(List.of(movie(1L), movie(2L), movie(3L)));
+        // Фильм 2 между выборкой и UPDATE отметил другой узел
+        when(movieRepository.markDigestSent(anyCollection(), any(LocalDateTime.class))).thenReturn(2);
+        when(movieRepository.findIdsByDigestSentAt(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of(101L, 103L));
+
+        List<Movie> taken = pool.takeUnsent(GenreSlice.parse("драма", 7.0), 3, new HashSet<>());
+
+        assertThat(taken).extracting(Movie::getFilmId).containsExactly(1L, 3L);
+        verify(outboxRepository).enqueue(eq(taken), any(LocalDateTime.class));
+    }
+
+    @Test
+    void nothingQueuedWhenAnotherRunMarkedEverything() {
+        when(movieRepository.findUnsentByGenre(any(), any(), eq(true), eq(0), eq(9999), any(Pageable.class)))
+                .thenReturn(List.of(movie(1L)));
+        when(movieRepository.markDigestSent(anyCollection(), any(LocalDateTime.class))).thenReturn(0);
+        when(movieRepository.findIdsByDigestSentAt(anyCollection(), any(LocalDateTime.class))).thenReturn(List.of());
+
+        assertThat(pool.takeUnsent(GenreSlice.parse("драма", 7.0), 3, new HashSet<>())).isEmpty();
+
+        verifyNoInteractions(outboxRepository);
+    }
+
+    @Test
+    void emptyPoolWritesNothing() {
+        when(movieRepository.findUnsentByGenre(any(), any(), eq(true), eq(0), eq(9999), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        assertThat(pool.takeUnsent(GenreSlice.parse("драма", 7.0), 5, new HashSet<>())).isEmpty();
+
+        verify(movieRepository, never()).markDigestSent(any(), any());
+        verifyNoInteractions(outboxRepository);
+    }
+
+    private static Movie movie(long filmId) {
+        Movie movie = new Movie(filmId, "Фильм " + filmId, 2015, new BigDecimal("8.0"), "Описание");
+        ReflectionTestUtils.setField(movie, "id", 100L + filmId);
+        return movie;
+    }
+}
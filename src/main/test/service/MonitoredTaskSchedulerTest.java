@@ -0,0 +1,142 @@
+package service;
+
+import com.bank.movieservice.config.MonitoredTaskScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.support.CronTrigger;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MonitoredTaskSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MonitoredTaskScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void countsCronFireTimesMissedWhileTaskWasRunning() throws Exception {
+        start(2);
+        SlowFirstRunTask task = new SlowFirstRunTask(2500);
+
+        ScheduledFuture<?> future = scheduler.schedule(task, new CronTrigger("* * * * * *"));
+        try {
+            // Первый запуск длится 2.5 с: два ежесекундных срабатывания за это время пропущены
+            assertThat(task.secondRun.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            future.cancel(false);
+        }
+
+        assertThat(meterRegistry.get("scheduler.task.skipped").tag("task", "SlowFirstRunTask").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void skipsTickWhileSameTaskIsStillRunning() throws Exception {
+        start(2);
+        BlockingTask task = new BlockingTask();
+
+        scheduler.schedule(task, new Date());
+        assertThat(task.started.await(5, TimeUnit.SECONDS)).isTrue();
+        ScheduledFuture<?> second = scheduler.schedule(task, new Date());
+        second.get(5, TimeUnit.SECONDS);
+        task.release.countDown();
+
+        assertThat(meterRegistry.get("scheduler.task.skipped").tag("task", "BlockingTask").counter().count())
+                .isEqualTo(1.0);
+        assertThat(task.runs).isEqualTo(1);
+    }
+
+    @Test
+    void recordsDurationAndQueueDelayWhenPoolIsBusy() throws Exception {
+        start(1);
+        BlockingTask blocker = new BlockingTask();
+        QuickTask quick = new QuickTask();
+
+        scheduler.schedule(blocker, new Date());
+        assertThat(blocker.started.await(5, TimeUnit.SECONDS)).isTrue();
+        ScheduledFuture<?> delayed = scheduler.schedule(quick, new Date());
+        Thread.sleep(200);
+        blocker.release.countDown();
+        delayed.get(5, TimeUnit.SECONDS);
+
+        assertThat(meterRegistry.get("scheduler.task.queue.delay").tag("task", "QuickTask").timer()
+                .max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(150);
+        assertThat(meterRegistry.get("scheduler.task.duration").tag("task", "BlockingTask").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(150);
+        assertThat(meterRegistry.get("scheduler.task.skipped").tag("task", "QuickTask").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void periodicTaskKeepsRunning() throws Exception {
+        start(1);
+        CountDownLatch ticks = new CountDownLatch(3);
+
+        scheduler.scheduleWithFixedDelay(ticks::countDown, 10);
+
+        assertThat(ticks.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void start(int poolSize) {
+        scheduler = new MonitoredTaskScheduler(meterRegistry);
+        scheduler.setPoolSize(poolSize);
+        scheduler.initialize();
+    }
+
+    private static final class BlockingTask implements Runnable {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int runs;
+
+        @Override
+        public void run() {
+            runs++;
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class SlowFirstRunTask implements Runnable {
+        private final long firstRunMs;
+        private final CountDownLatch secondRun = new CountDownLatch(1);
+        private volatile boolean ran;
+
+        private SlowFirstRunTask(long firstRunMs) {
+            this.firstRunMs = firstRunMs;
+        }
+
+        @Override
+        public void run() {
+            if (ran) {
+                secondRun.countDown();
+                return;
+            }
+            ran = true;
+            try {
+                Thread.sleep(firstRunMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class QuickTask implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package service;
+
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.EmailDispatcher;
+import com.bank.movieservice.service.MovieDigestBuffer;
+import com.bank.movieservice.service.MovieRecordResolver;
+import com.bank.movieservice.service.ReportRowWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovieDigestBufferTest {
+
+    @Mock
+    private EmailDispatcher emailDispatcher;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MovieDigestBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new MovieDigestBuffer(emailDispatcher, new ReportRowWriter(),
+                new MovieRecordResolver(movieRepository, meterRegistry, 100), meterRegistry);
+        ReflectionTestUtils.setField(buffer, "recipientEmail", "digest@example.com");
+        ReflectionTestUtils.setField(buffer, "emailSubjectPrefix", "Фильмы");
+        ReflectionTestUtils.setField(buffer, "batchSize", 3);
+        ReflectionTestUtils.setField(buffer, "lingerMs", 100L);
+        ReflectionTestUtils.setField(buffer, "maxBufferBytes", 1_000_000L);
+        ReflectionTestUtils.setField(buffer, "flushCheckIntervalMs", 20L);
+        ReflectionTestUtils.setField(buffer, "shutdownTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(buffer, "maxBufferedMovies", 4);
+        ReflectionTestUtils.setField(buffer, "maxFlushFailures", 2);
+        ReflectionTestUtils.setField(buffer, "retryBackoffMs", 20L);
+        ReflectionTestUtils.setField(buffer, "maxRetryBackoffMs", 50L);
+        buffer.startLingerCheck();
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.shutdown();
+    }
+
+    @Test
+    void addAll_ShouldSendDigest_WhenBatchSizeReached() {
+        stubSubmit(CompletableFuture.completedFuture(null));
+        buffer.addAll(movies(3), acknowledgment);
+
+        verify(emailDispatcher, timeout(1000)).submit(eq("digest@example.com"), anyString(), anyString(), eq("csv"));
+        assertThat(flushCount("size")).isEqualTo(1.0);
+        assertThat(buffer.size()).isZero();
+        verify(acknowledgment, timeout(1000)).acknowledge();
+    }
+
+    @Test
+    void lingerCheck_ShouldSendPartialBatch_WhenOldestMovieExpires() {
+        stubSubmit(CompletableFuture.completedFuture(null));
+        buffer.addAll(movies(1), acknowledgment);
+
+        verify(emailDispatcher, timeout(1000)).submit(anyString(), anyString(), anyString(), anyString());
+        assertThat(flushCount("linger")).isEqualTo(1.0);
+    }
+
+    @Test
+    void flush_ShouldKeepMovies_WhenEmailFails() {
+        stubSubmit(CompletableFuture.failedFuture(new RuntimeException("SMTP down")));
+        ReflectionTestUtils.setField(buffer, "lingerMs", 60_000L);
+        ReflectionTestUtils.setField(buffer, "retryBackoffMs", 60_000L);
+
+        buffer.addAll(movies(3), acknowledgment);
+
+        verify(emailDispatcher, timeout(1000)).submit(anyString(), anyString(), anyString(), anyString());
+        assertThat(buffer.size()).isEqualTo(3);
+        assertThat(flushCount("size")).isZero();
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void addAll_ShouldAcknowledgeImmediately_WhenPollHasNoMovies() {
+        buffer.addAll(List.of(), acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verifyNoInteractions(emailDispatcher);
+    }
+
+    @Test
+    void backpressure_ShouldPauseWhileSmtpFails_AndResumeAfterRecovery() throws InterruptedException {
+        List<Boolean> signals = new CopyOnWriteArrayList<>();
+        buffer.setPressureListener(signals::add);
+        ReflectionTestUtils.setField(buffer, "lingerMs", 60_000L);
+        when(emailDispatcher.submit(anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("SMTP down")))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("SMTP down")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        buffer.addAll(movies(3), acknowledgment);
+
+        // Две неудачи подряд -> пауза, третья попытка по backoff успешна -> возобновление
+        verify(emailDispatcher, timeout(2000).times(3)).submit(anyString(), anyString(), anyString(), anyString());
+        verify(acknowledgment, timeout(1000)).acknowledge();
+        // Сигнал возобновления приходит из потока-флашера сразу после подтверждения
+        awaitSize(signals, 2);
+        assertThat(signals).containsExactly(true, false);
+        assertThat(buffer.isSaturated()).isFalse();
+        assertThat(flushCount("retry")).isEqualTo(1.0);
+    }
+
+    @Test
+    void shutdown_ShouldDrainRemainingMovies() {
+        stubSubmit(CompletableFuture.completedFuture(null));
+        ReflectionTestUtils.setField(buffer, "lingerMs", 60_000L);
+        buffer.addAll(movies(2), acknowledgment);
+
+        buffer.shutdown();
+
+        verify(emailDispatcher).submit(anyString(), anyString(), anyString(), anyString());
+        assertThat(flushCount("shutdown")).isEqualTo(1.0);
+    }
+
+    @Test
+    void addAll_ShouldAcknowledgeCollapsedPollAfterBufferedMovies() throws InterruptedException {
+        Acknowledgment redelivered = mock(Acknowledgment.class);
+        stubSubmit(CompletableFuture.completedFuture(null));
+        ReflectionTestUtils.setField(buffer, "lingerMs", 60_000L);
+        buffer.addAll(movies(2), acknowledgment);
+
+        // Повтор тех же фильмов после ребаланса - дедупликация отсеяла всю пачку
+        buffer.addAll(List.of(), redelivered);
+        verify(redelivered, never()).acknowledge();
+
+        assertThat(buffer.drain(1000)).isTrue();
+        InOrder acks = inOrder(acknowledgment, redelivered);
+        acks.verify(acknowledgment).acknowledge();
+        acks.verify(redelivered).acknowledge();
+        verify(emailDispatcher, times(1)).submit(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void drain_ShouldReportFailure_WhenEmailKeepsFailing() throws InterruptedException {
+        stubSubmit(CompletableFuture.failedFuture(new RuntimeException("SMTP down")));
+        ReflectionTestUtils.setField(buffer, "lingerMs", 60_000L);
+        ReflectionTestUtils.setField(buffer, "retryBackoffMs", 60_000L);
+        buffer.addAll(movies(2), acknowledgment);
+
+        assertThat(buffer.drain(200)).isFalse();
+        assertThat(buffer.size()).isEqualTo(2);
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void stubSubmit(CompletableFuture<Void> result) {
+        when(emailDispatcher.submit(anyString(), anyString(), anyString(), anyString())).thenReturn(result);
+    }
+
+    private double flushCount(String reason) {
+        return meterRegistry.get("movie.digest.flush").tag("reason", reason).counter().count();
+    }
+
+    private List<MovieRecord> movies(int count) {
+        List<MovieRecord> movies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            movies.add(new MovieRecord(null, (long) i, "Фильм " + i, null, 7.5, "7.5", "", "", 0L));
+        }
+        return movies;
+    }
+}
@@ -0,0 +1,91 @@
+package service;
+
+import com.bank.movieservice.kafka.MovieDigest;
+import com.bank.movieservice.kafka.MovieDigestMerger;
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.kafka.SmileSerde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.MockProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieDigestMergerTest {
+
+    private static final String STORE = "merge-store";
+    private static final long WINDOW_START = Instant.parse("2024-03-01T00:00:00Z").toEpochMilli();
+    private static final String KEY = "digest@example.com@" + WINDOW_START;
+    private static final Duration MERGE_TIMEOUT = Duration.ofMinutes(10);
+    private static final Duration RETENTION = Duration.ofDays(7);
+
+    private MockProcessorContext context;
+    private KeyValueStore<String, MovieDigest> store;
+    private MovieDigestMerger merger;
+
+    @BeforeEach
+    @SuppressWarnings("deprecation")
+    void setUp() {
+        context = new MockProcessorContext();
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(STORE),
+                Serdes.String(), new SmileSerde<>(MovieDigest.class)).withLoggingDisabled().build();
+        store.init(context, store);
+        context.register(store, null);
+
+        merger = new MovieDigestMerger(STORE, 2, MERGE_TIMEOUT, RETENTION);
+        merger.init(context);
+    }
+
+    @Test
+    void latePartAfterTimeoutIsSentAsFollowUpOnce() {
+        context.setCurrentSystemTimeMs(WINDOW_START + Duration.ofHours(26).toMillis());
+        assertThat(merger.transform(KEY, part(1, 301L))).isNull();
+
+        // Корзина 0 не закрылась за merge-timeout - дайджест уходит из одной части
+        long timedOutAt = context.currentSystemTimeMs() + MERGE_TIMEOUT.toMillis();
+        context.scheduledPunctuators().get(0).getPunctuator().punctuate(timedOutAt);
+        assertThat(context.forwarded()).hasSize(1);
+        assertThat(((MovieDigest) context.forwarded().get(0).keyValue().value).isFollowUp()).isFalse();
+
+        // Корзина 0 закрыла окно позже: не новый дайджест за тот же день, а дополнение
+        KeyValue<String, MovieDigest> late = merger.transform(KEY, part(0, 402L));
+        assertThat(late).isNotNull();
+        assertThat(late.value.isFollowUp()).isTrue();
+        assertThat(late.value.getMovies()).extracting(MovieRecord::filmId).containsExactly(402L);
+
+        // Повторная доставка уже отправленных частей ничего не шлет
+        assertThat(merger.transform(KEY, part(0, 402L))).isNull();
+        assertThat(merger.transform(KEY, part(1, 301L))).isNull();
+    }
+
+    @Test
+    void sentMarkerIsKeptUntilRetentionEnds() {
+        context.setCurrentSystemTimeMs(WINDOW_START + Duration.ofHours(26).toMillis());
+        merger.transform(KEY, part(0, 402L));
+        KeyValue<String, MovieDigest> digest = merger.transform(KEY, part(1, 301L));
+        assertThat(digest.value.getBuckets()).containsExactly(0, 1);
+        assertThat(digest.value.getMovies()).extracting(MovieRecord::filmId).containsExactlyInAnyOrder(402L, 301L);
+
+        // Метка без фильмов остается, пока окно в пределах retention
+        MovieDigest marker = store.get(KEY);
+        assertThat(marker.isSent()).isTrue();
+        assertThat(marker.getMovies()).isEmpty();
+        context.scheduledPunctuators().get(0).getPunctuator().punctuate(WINDOW_START + Duration.ofDays(6).toMillis());
+        assertThat(store.get(KEY)).isNotNull();
+
+        context.scheduledPunctuators().get(0).getPunctuator().punctuate(WINDOW_START + RETENTION.toMillis());
+        assertThat(store.get(KEY)).isNull();
+        assertThat(context.forwarded()).isEmpty();
+    }
+
+    private static MovieDigest part(int bucket, long filmId) {
+        MovieDigest part = new MovieDigest().add(MovieRecord.reference(filmId, 1L), 10);
+        return part.asPart("digest@example.com", WINDOW_START, bucket);
+    }
+}
@@ -0,0 +1,133 @@
+package service;
+
+import com.bank.movieservice.kafka.MovieDigest;
+import com.bank.movieservice.kafka.MovieDigestTopology;
+import com.bank.movieservice.kafka.MovieMessage;
+import com.bank.movieservice.kafka.MovieMessageFormat;
+import com.bank.movieservice.kafka.MovieMessageSerializer;
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.kafka.SmileSerde;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieDigestTopologyTest {
+
+    private static final Instant DAY_START = Instant.parse("2024-03-01T00:00:00Z");
+    private static final Duration MERGE_TIMEOUT = Duration.ofMinutes(10);
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, MovieMessage> movies;
+    private TestOutputTopic<String, MovieDigest> digests;
+
+    @BeforeEach
+    void setUp() {
+        StreamsBuilder builder = new StreamsBuilder();
+        MovieDigestTopology.build(builder, "movies", "digests", "digest@example.com",
+                Duration.ofDays(1), Duration.ofHours(1), 2, 4, MERGE_TIMEOUT, Duration.ofDays(7));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "movie-digest-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        movies = driver.createInputTopic("movies", new StringSerializer(),
+                new MovieMessageSerializer(MovieMessageFormat.SMILE));
+        digests = driver.createOutputTopic("digests", new StringDeserializer(),
+                new SmileSerde<>(MovieDigest.class).deserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void digest_ShouldBeEmittedOnce_WhenDailyWindowCloses() {
+        movies.pipeInput("301", movie(301L), DAY_START.plus(Duration.ofHours(7)));
+        movies.pipeInput("302", movie(302L), DAY_START.plus(Duration.ofHours(7)));
+        movies.pipeInput("301", movie(301L), DAY_START.plus(Duration.ofHours(8)));
+
+        // Окно еще открыто - дайджеста нет
+        assertThat(digests.isEmpty()).isTrue();
+
+        // Запись следующего дня после grace продвигает время потока и закрывает окно
+        movies.pipeInput("401", movie(401L), DAY_START.plus(Duration.ofHours(26)));
+
+        List<KeyValue<String, MovieDigest>> emitted = digests.readKeyValuesToList();
+        assertThat(emitted).hasSize(1);
+        assertThat(emitted.get(0).key).isEqualTo("digest@example.com@" + DAY_START.toEpochMilli());
+
+        MovieDigest digest = emitted.get(0).value;
+        assertThat(digest.getRecipient()).isEqualTo("digest@example.com");
+        assertThat(digest.getWindowStart()).isEqualTo(DAY_START.toEpochMilli());
+        // Части двух корзин слиты; в окне только ссылки - данные подставит MovieRecordResolver
+        assertThat(digest.getBuckets()).containsExactly(0, 1);
+        assertThat(digest.getMovies()).extracting(MovieRecord::filmId).containsExactlyInAnyOrder(301L, 302L);
+        assertThat(digest.getMovies()).allMatch(MovieRecord::isReference);
+    }
+
+    @Test
+    void digest_ShouldSkipUnreadableMessages() {
+        driver.createInputTopic("movies", new StringSerializer(), new StringSerializer())
+                .pipeInput("bad", "не json", DAY_START);
+        movies.pipeInput("301", movie(301L), DAY_START);
+        movies.pipeInput("401", movie(401L), DAY_START.plus(Duration.ofHours(26)));
+
+        // В нулевую корзину фильмов не было - дайджест уходит по таймеру сборки
+        assertThat(digests.isEmpty()).isTrue();
+        driver.advanceWallClockTime(MERGE_TIMEOUT.multipliedBy(2));
+
+        MovieDigest digest = digests.readValue();
+        assertThat(digest.getBuckets()).containsExactly(1);
+        assertThat(digest.getMovies()).extracting(MovieRecord::filmId).containsExactly(301L);
+    }
+
+    @Test
+    void digest_ShouldCapMoviesPerBucket_AndCountDropped() {
+        // Лимит 4 фильма на 2 корзины - по 2 в каждой; все четные filmId попадают в нулевую
+        for (long filmId = 2; filmId <= 12; filmId += 2) {
+            movies.pipeInput(String.valueOf(filmId), movie(filmId), DAY_START.plus(Duration.ofHours(7)));
+        }
+        movies.pipeInput("2", movie(2L), DAY_START.plus(Duration.ofHours(8)));
+        movies.pipeInput("401", movie(401L), DAY_START.plus(Duration.ofHours(26)));
+        driver.advanceWallClockTime(MERGE_TIMEOUT.multipliedBy(2));
+
+        MovieDigest digest = digests.readValue();
+        assertThat(digest.getMovies()).extracting(MovieRecord::filmId).containsExactly(2L, 4L);
+        // Повтор filmId 2 не считается отброшенным
+        assertThat(digest.getDropped()).isEqualTo(4);
+    }
+
+    private static MovieMessage movie(long filmId) {
+        return MovieMessage.builder()
+                .filmId(filmId)
+                .filmName("Фильм " + filmId)
+                .year(2000)
+                .rating("8.0")
+                .description("Описание")
+                .genres(List.of("драма"))
+                .build();
+    }
+}
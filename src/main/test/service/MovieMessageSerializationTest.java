@@ -0,0 +1,113 @@
+package service;
+
+import com.bank.movieservice.kafka.MovieMessage;
+import com.bank.movieservice.kafka.MovieMessageDeserializer;
+import com.bank.movieservice.kafka.MovieMessageFormat;
+import com.bank.movieservice.kafka.MovieMessageSerializer;
+import com.bank.movieservice.kafka.MovieRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieMessageSerializationTest {
+
+    private static final String TOPIC = "movie-daily-topic";
+
+    private final MovieMessageDeserializer deserializer = new MovieMessageDeserializer();
+
+    @Test
+    void smile_ShouldRoundTrip_WithVersionHeader() {
+        byte[] data = new MovieMessageSerializer(MovieMessageFormat.SMILE).serialize(TOPIC, message());
+
+        assertThat(data[0]).isEqualTo(MovieMessageFormat.MAGIC);
+        assertThat(data[1]).isEqualTo(MovieMessageFormat.SMILE_V1);
+
+        MovieRecord movie = deserializer.deserialize(TOPIC, data);
+        assertThat(movie.filmId()).isEqualTo(301L);
+        assertThat(movie.filmName()).isEqualTo("Матрица");
+        assertThat(movie.year()).isEqualTo(1999);
+        assertThat(movie.rating()).isEqualTo(8.5);
+        assertThat(movie.ratingText()).isEqualTo("8.5");
+        assertThat(movie.genres()).isEqualTo("фантастика, боевик");
+    }
+
+    @Test
+    void json_ShouldStayReadable_DuringMigration() {
+        byte[] json = new MovieMessageSerializer(MovieMessageFormat.JSON).serialize(TOPIC, message());
+        assertThat(deserializer.deserialize(TOPIC, json).filmId()).isEqualTo(301L);
+
+        // Прежний продюсер: JSON из HashMap, с BOM и пробелами
+        String legacy = "\uFEFF  {\"filmId\":302,\"filmName\":\"Леон\",\"rating\":\"8.7\",\"genres\":[\"драма\"]}\n";
+        MovieRecord movie = deserializer.deserialize(TOPIC, legacy.getBytes(StandardCharsets.UTF_8));
+        assertThat(movie.filmId()).isEqualTo(302L);
+        assertThat(movie.genres()).isEqualTo("драма");
+    }
+
+    @Test
+    void claimCheck_ShouldCarryOnlyFilmIdAndVersion() {
+        MovieMessage message = message();
+        message.setVersion(3L);
+        byte[] data = new MovieMessageSerializer(MovieMessageFormat.CLAIM_CHECK).serialize(TOPIC, message);
+        byte[] smile = new MovieMessageSerializer(MovieMessageFormat.SMILE).serialize(TOPIC, message);
+
+        assertThat(data).hasSize(MovieMessageFormat.CLAIM_CHECK_LENGTH);
+        assertThat(data.length * 10).isLessThan(smile.length);
+
+        MovieRecord reference = deserializer.deserialize(TOPIC, data);
+        assertThat(reference.isReference()).isTrue();
+        assertThat(reference.filmId()).isEqualTo(301L);
+        assertThat(reference.version()).isEqualTo(3L);
+    }
+
+    @Test
+    void deserialize_ShouldNormalizeFieldsOnce() {
+        String json = "{\"filmId\":303,\"filmName\":\"  \",\"rating\":\" 7.9/10 \","
+                + "\"genres\":[\" драма \",\"\",\"криминал\"]}";
+        MovieRecord movie = deserializer.deserialize(TOPIC, json.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(movie.filmName()).isEqualTo("Unknown");
+        assertThat(movie.rating()).isEqualTo(7.9);
+        assertThat(movie.ratingText()).isEqualTo("7.9/10");
+        assertThat(movie.genres()).isEqualTo("драма, криминал");
+        assertThat(movie.description()).isEmpty();
+
+        MovieRecord noRating = deserializer.deserialize(TOPIC,
+                "{\"filmId\":304,\"rating\":\"скоро\"}".getBytes(StandardCharsets.UTF_8));
+        assertThat(noRating.hasRating()).isFalse();
+        assertThat(noRating.ratingText()).isEqualTo(MovieRecord.NO_RATING);
+    }
+
+    @Test
+    void deserialize_ShouldReturnNull_ForUnknownVersionOrGarbage() {
+        byte[] futureVersion = {MovieMessageFormat.MAGIC, 99, 1, 2, 3};
+
+        assertThat(deserializer.deserialize(TOPIC, futureVersion)).isNull();
+        assertThat(deserializer.deserialize(TOPIC, "не json".getBytes(StandardCharsets.UTF_8))).isNull();
+        assertThat(deserializer.deserialize(TOPIC, new byte[0])).isNull();
+        assertThat(deserializer.deserialize(TOPIC, "\uFEFF \n".getBytes(StandardCharsets.UTF_8))).isNull();
+    }
+
+    @Test
+    void smile_ShouldBeSmallerThanJson() {
+        byte[] smile = new MovieMessageSerializer(MovieMessageFormat.SMILE).serialize(TOPIC, message());
+        byte[] json = new MovieMessageSerializer(MovieMessageFormat.JSON).serialize(TOPIC, message());
+
+        assertThat(smile.length).isLessThan(json.length);
+    }
+
+    private static MovieMessage message() {
+        return MovieMessage.builder()
+                .id(1L)
+                .filmId(301L)
+                .filmName("Матрица")
+                .year(1999)
+                .rating("8.5")
+                .description("Жизнь Томаса Андерсона разделена на две части: днем он самый обычный "
+                        + "офисный работник, а ночью превращается в хакера по имени Нео.")
+                .genres(List.of("фантастика", "боевик"))
+                .build();
+    }
+}
@@ -0,0 +1,234 @@
+package service;
+
+import com.bank.movieservice.DTO.response.MovieSearchResponseDTO;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.MovieNameIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovieNameIndexTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MovieNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MovieNameIndex(movieRepository, meterRegistry);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "mergeThreshold", 10000);
+        ReflectionTestUtils.setField(index, "fuzzyMaxEdits", 2);
+        ReflectionTestUtils.setField(index, "fuzzyCandidateLimit", 500);
+        ReflectionTestUtils.setField(index, "fuzzyLimit", 20);
+        ReflectionTestUtils.setField(index, "commonGramLimit", 20000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void rebuildLoadsMoviesInChunksAndBecomesReady() {
+        when(movieRepository.findIdRange()).thenReturn(idRange(1L, 7000L));
+        when(movieRepository.findWithGenresByIdBetween(1L, 5000L))
+                .thenReturn(List.of(movie(1L, "Матрица"), movie(2L, "Аватар")));
+        when(movieRepository.findWithGenresByIdBetween(5001L, 7000L))
+                .thenReturn(List.of(movie(7000L, "Матрица: Перезагрузка")));
+
+        assertThat(index.isReady()).isFalse();
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(ids(index.search("матр"))).containsExactly(1L, 7000L);
+        assertThat(meterRegistry.get("movie.search.index.movies").gauge().value()).isEqualTo(3.0);
+    }
+
+    @Test
+    void matchesStartOfAnyWordButNotMiddleOfWord() {
+        buildWith(movie(1L, "Властелин колец"), movie(2L, "Кольца Сатурна"), movie(3L, "Колесо"));
+
+        assertThat(ids(index.search("кол"))).containsExactly(1L, 2L, 3L);
+        assertThat(ids(index.search("колец"))).containsExactly(1L);
+        assertThat(ids(index.search("телин"))).isEmpty();
+        assertThat(ids(index.search("властелин кол"))).containsExactly(1L);
+    }
+
+    @Test
+    void foldsCaseAndYo() {
+        buildWith(movie(1L, "Ёлки"), movie(2L, "The Green Mile"));
+
+        assertThat(ids(index.search("ЕЛК"))).containsExactly(1L);
+        assertThat(ids(index.search("ёлки"))).containsExactly(1L);
+        assertThat(ids(index.search(" Green "))).containsExactly(2L);
+        assertThat(index.search("   ")).isEmpty();
+    }
+
+    @Test
+    void newMoviesAreSearchableBeforeAndAfterMerge() {
+        buildWith(movie(1L, "Брат"));
+        ReflectionTestUtils.setField(index, "mergeThreshold", 3);
+
+        index.index(List.of(movie(2L, "Брат 2")));
+        assertThat(ids(index.search("бра"))).containsExactly(1L, 2L);
+
+        // Третье слово добивает порог - фильмы уходят в основной сегмент в потоке слияния
+        index.index(List.of(movie(3L, "Сестры")));
+        assertThat(ids(index.search("бра"))).containsExactly(1L, 2L);
+        assertThat(ids(index.search("сест"))).containsExactly(3L);
+
+        awaitRecentMerged();
+        assertThat(ids(index.search("бра"))).containsExactly(1L, 2L);
+        assertThat(ids(index.search("сест"))).containsExactly(3L);
+    }
+
+    @Test
+    void mergeWaitsForStartupBuild() {
+        ReflectionTestUtils.setField(index, "mergeThreshold", 1);
+        // Сохранение во время построения: слияние не ставит сегмент из части каталога
+        index.index(List.of(movie(5L, "Остров")));
+        assertThat(recentWords()).hasSize(1);
+        assertThat(index.isReady()).isFalse();
+
+        buildWith(movie(1L, "Брат"), movie(5L, "Остров"));
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(recentWords()).isEmpty();
+        assertThat(ids(index.search("бра"))).containsExactly(1L);
+        assertThat(ids(index.search("ост"))).containsExactly(5L);
+    }
+
+    @Test
+    void renamedMovieIsFoundOnlyByNewName() {
+        buildWith(movie(1L, "Рабочее название"));
+
+        index.index(List.of(movie(1L, "Итоговое название")));
+
+        assertThat(ids(index.search("раб"))).isEmpty();
+        assertThat(ids(index.search("итог"))).containsExactly(1L);
+        assertThat(ids(index.search("назв"))).containsExactly(1L);
+    }
+
+    @Test
+    void fuzzySearchToleratesTyposAndRanksByDistance() {
+        buildWith(movie(1L, "Матрица"), movie(2L, "Матрица: Перезагрузка"), movie(3L, "Маска"),
+                movie(4L, "Интерстеллар"), movie(5L, "Приключения Шурика"));
+
+        // Пропущенная буква, лишняя буква, замена
+        assertThat(ids(index.fuzzySearch("Матрца"))).containsExactly(1L, 2L);
+        assertThat(ids(index.fuzzySearch("интерстелларр"))).containsExactly(4L);
+        assertThat(ids(index.fuzzySearch("шурека"))).containsExactly(5L);
+        // Две правки - только для запросов от 8 символов
+        assertThat(ids(index.fuzzySearch("интерстлер"))).containsExactly(4L);
+        assertThat(ids(index.fuzzySearch("мтрца"))).isEmpty();
+        // Точное совпадение выше совпадения с опечаткой
+        assertThat(ids(index.fuzzySearch("маска"))).first().isEqualTo(3L);
+    }
+
+    @Test
+    void fuzzySearchFallsBackToPrefixSearchForShortQueries() {
+        buildWith(movie(1L, "Ёлки"), movie(2L, "Елена"));
+
+        assertThat(ids(index.fuzzySearch("ёлк"))).containsExactly(1L);
+    }
+
+    @Test
+    void fuzzySearchSeesMoviesAddedAfterBuildAndRenames() {
+        buildWith(movie(1L, "Рабочее название"));
+
+        index.index(List.of(movie(2L, "Брат 2"), movie(1L, "Итоговое название")));
+
+        assertThat(ids(index.fuzzySearch("ьрат 2"))).containsExactly(2L);
+        assertThat(ids(index.fuzzySearch("итогавое"))).containsExactly(1L);
+        assertThat(ids(index.fuzzySearch("рабочие"))).isEmpty();
+    }
+
+    @Test
+    void fuzzySearchKeepsBestCandidatesWhenLimitIsReached() {
+        ReflectionTestUtils.setField(index, "fuzzyCandidateLimit", 1);
+        buildWith(movie(1L, "Начало конца"), movie(2L, "Начало"));
+
+        // У "Начало конца" больше общих с запросом триграмм - проверяется только он
+        assertThat(ids(index.fuzzySearch("начало кнца"))).containsExactly(1L);
+    }
+
+    @Test
+    void fuzzySearchCountsCommonTrigramsOnlyForCandidatesOfRareOnes() {
+        ReflectionTestUtils.setField(index, "commonGramLimit", 2);
+        ReflectionTestUtils.setField(index, "fuzzyCandidateLimit", 1);
+        buildWith(movie(1L, "Матрас"), movie(2L, "Матрица"), movie(3L, "Мать"), movie(4L, "Мата Хари"));
+
+        // "мат" есть в четырех названиях и кандидатов не заводит, но досчитывается:
+        // у "Матрица" пять общих триграмм, у "Матрас" две - проверяется только "Матрица"
+        assertThat(ids(index.fuzzySearch("матрица"))).containsExactly(2L);
+    }
+
+    @Test
+    void substringDistanceIsBoundedByMaxEdits() {
+        assertThat(distance("матрца", "матрица: перезагрузка", 2)).isEqualTo(1);
+        assertThat(distance("перезагрузка", "матрица: перезагрузка", 2)).isZero();
+        assertThat(distance("перизагрусга", "матрица: перезагрузка", 2)).isEqualTo(3);
+        assertThat(distance("абвгд", "аб", 5)).isEqualTo(3);
+    }
+
+    private static int distance(String query, String text, int maxEdits) {
+        Integer distance = ReflectionTestUtils.invokeMethod(MovieNameIndex.class, "substringDistance", query, text, maxEdits);
+        return distance;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> recentWords() {
+        return (Map<String, Long>) ReflectionTestUtils.getField(index, "recent");
+    }
+
+    private void awaitRecentMerged() {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!recentWords().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(recentWords()).isEmpty();
+    }
+
+    private void buildWith(Movie... movies) {
+        when(movieRepository.findIdRange()).thenReturn(idRange(1L, 1000L));
+        when(movieRepository.findWithGenresByIdBetween(1L, 1000L)).thenReturn(List.of(movies));
+        index.rebuild();
+    }
+
+    private static List<Long> ids(List<MovieSearchResponseDTO> results) {
+        return results.stream().map(MovieSearchResponseDTO::getId).toList();
+    }
+
+    private static MovieRepository.IdRange idRange(Long minId, Long maxId) {
+        return new MovieRepository.IdRange() {
+            @Override
+            public Long getMinId() { return minId; }
+
+            @Override
+            public Long getMaxId() { return maxId; }
+        };
+    }
+
+    private static Movie movie(Long id, String name) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setFilmName(name);
+        return movie;
+    }
+}
@@ -0,0 +1,189 @@
+package service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.entity.MovieOutboxEvent;
+import com.bank.movieservice.repository.MovieOutboxRepository;
+import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.MovieOutboxRelay;
+import com.bank.movieservice.service.MoviePublisher;
+import com.bank.movieservice.service.SchedulerLockService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovieOutboxRelayTest {
+
+    @Mock
+    private MovieOutboxRepository outboxRepository;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MoviePublisher moviePublisher;
+
+    @Mock
+    private SchedulerLockService schedulerLock;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MovieOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new MovieOutboxRelay(outboxRepository, movieRepository, moviePublisher, schedulerLock, meterRegistry);
+        ReflectionTestUtils.setField(relay, "batchSize", 3);
+        ReflectionTestUtils.setField(relay, "maxBatchesPerRun", 5);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 4);
+        ReflectionTestUtils.setField(relay, "retryBackoffMs", 1000L);
+        ReflectionTestUtils.setField(relay, "maxRetryBackoffMs", 5000L);
+        lenient().when(schedulerLock.runLocked(any(), any(Duration.class), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+    }
+
+    @Test
+    void publishesBatchInOrderAndMarksAcknowledgedEvents() {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(event(10L, 3L), event(11L, 1L)));
+        when(movieRepository.findWithGenresByFilmIdIn(any())).thenReturn(List.of(movie(1L), movie(3L)));
+        when(moviePublisher.publish(anyList())).thenReturn(new MoviePublisher.PublishResult(2, 0, 7));
+
+        relay.relay();
+
+        ArgumentCaptor<List<Movie>> published = ArgumentCaptor.forClass(List.class);
+        verify(moviePublisher).publish(published.capture());
+        assertThat(published.getValue()).extracting(Movie::getFilmId).containsExactly(3L, 1L);
+        verify(outboxRepository).markPublished(eq(List.of(10L, 11L)), any(LocalDateTime.class));
+        verify(outboxRepository, never()).scheduleRetry(any(), any());
+        assertThat(meterRegistry.get("movie.outbox.events").tag("result", "sent").counter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.get("movie.outbox.batch.duration").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsUnacknowledgedEventsForRetry() {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(event(10L, 1L), event(11L, 2L)));
+        when(movieRepository.findWithGenresByFilmIdIn(any())).thenReturn(List.of(movie(1L), movie(2L)));
+        when(moviePublisher.publish(anyList())).thenReturn(new MoviePublisher.PublishResult(1, 1, 7, Set.of(2L)));
+
+        relay.relay();
+
+        verify(outboxRepository).markPublished(eq(List.of(10L)), any(LocalDateTime.class));
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxRepository).scheduleRetry(eq(List.of(11L)), nextAttemptAt.capture());
+        // Первая неудача - ждать retry-backoff-ms
+        assertThat(Duration.between(LocalDateTime.now(), nextAttemptAt.getValue()).toMillis()).isBetween(500L, 1000L);
+        verify(outboxRepository, never()).park(any(), any());
+        assertThat(meterRegistry.get("movie.outbox.events").tag("result", "failed").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void backsOffByAttemptsAndParksEventsThatKeepFailing() {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(event(10L, 1L, 1), event(11L, 2L, 3), event(12L, 3L, 2)))
+                .thenReturn(List.of());
+        when(movieRepository.findWithGenresByFilmIdIn(any())).thenReturn(List.of(movie(1L), movie(2L), movie(3L)));
+        when(moviePublisher.publish(anyList()))
+                .thenReturn(new MoviePublisher.PublishResult(0, 3, 7, Set.of(1L, 2L, 3L)));
+
+        relay.relay();
+
+        LocalDateTime now = LocalDateTime.now();
+        ArgumentCaptor<LocalDateTime> second = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> third = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxRepository).scheduleRetry(eq(List.of(10L)), second.capture());
+        verify(outboxRepository).scheduleRetry(eq(List.of(12L)), third.capture());
+        assertThat(Duration.between(now, second.getValue()).toMillis()).isBetween(1500L, 2000L);
+        assertThat(Duration.between(now, third.getValue()).toMillis()).isBetween(3500L, 4000L);
+        // Четвертая неудача при max-attempts=4 - событие откладывается насовсем
+        verify(outboxRepository).park(eq(List.of(11L)), any(LocalDateTime.class));
+        verify(outboxRepository, never()).markPublished(any(), any());
+        assertThat(meterRegistry.get("movie.outbox.events").tag("result", "parked").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void closesEventsOfDeletedMoviesWithoutPublishing() {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(event(10L, 5L)));
+        when(movieRepository.findWithGenresByFilmIdIn(any())).thenReturn(List.of());
+
+        relay.relay();
+
+        verifyNoInteractions(moviePublisher);
+        verify(outboxRepository).markPublished(eq(List.of(10L)), any(LocalDateTime.class));
+        assertThat(meterRegistry.get("movie.outbox.events").tag("result", "missing").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void drainsFullBatchesUntilOutboxIsEmptyAndUpdatesBacklog() {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(event(1L, 1L), event(2L, 2L), event(3L, 3L)))
+                .thenReturn(List.of(event(4L, 4L)));
+        when(movieRepository.findWithGenresByFilmIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> filmIds = invocation.getArgument(0);
+            return filmIds.stream().map(MovieOutboxRelayTest::movie).toList();
+        });
+        when(moviePublisher.publish(anyList())).thenAnswer(invocation ->
+                new MoviePublisher.PublishResult(invocation.<List<Movie>>getArgument(0).size(), 0, 1));
+        when(outboxRepository.countByPublishedAtIsNullAndParkedAtIsNull()).thenReturn(7L);
+        when(outboxRepository.countByParkedAtIsNotNull()).thenReturn(2L);
+        when(outboxRepository.findOldestPendingCreatedAt()).thenReturn(LocalDateTime.now().minusSeconds(90));
+
+        relay.relay();
+
+        verify(moviePublisher, times(2)).publish(anyList());
+        assertThat(meterRegistry.get("movie.outbox.pending").gauge().value()).isEqualTo(7.0);
+        assertThat(meterRegistry.get("movie.outbox.parked").gauge().value()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("movie.outbox.lag.seconds").gauge().value()).isBetween(89.0, 91.0);
+    }
+
+    @Test
+    void skipsWhenAnotherNodeRelays() {
+        doReturn(false).when(schedulerLock).runLocked(any(), any(Duration.class), any());
+
+        relay.relay();
+
+        verifyNoInteractions(outboxRepository, moviePublisher);
+    }
+
+    private static MovieOutboxEvent event(long id, long filmId) {
+        return event(id, filmId, 0);
+    }
+
+    private static MovieOutboxEvent event(long id, long filmId, int attempts) {
+        MovieOutboxEvent event = new MovieOutboxEvent(filmId, LocalDateTime.now());
+        ReflectionTestUtils.setField(event, "id", id);
+        ReflectionTestUtils.setField(event, "attempts", attempts);
+        return event;
+    }
+
+    private static Movie movie(long filmId) {
+        return new Movie(filmId, "Фильм " + filmId, 2000, new BigDecimal("7.5"), "Описание");
+    }
+}
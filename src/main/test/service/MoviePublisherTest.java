@@ -0,0 +1,86 @@
+package service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.kafka.MovieMessage;
+import com.bank.movieservice.service.MoviePublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MoviePublisherTest {
+
+    @Mock
+    private KafkaTemplate<String, MovieMessage> kafkaTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MoviePublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new MoviePublisher(kafkaTemplate, meterRegistry);
+        ReflectionTestUtils.setField(publisher, "movieTopic", "movie-daily-topic");
+        ReflectionTestUtils.setField(publisher, "publishTimeoutMs", 200L);
+    }
+
+    @Test
+    void publish_ShouldKeyByFilmId_AndCountAcknowledgedRecords() {
+        when(kafkaTemplate.send(eq("movie-daily-topic"), any(), any())).thenAnswer(invocation -> acked());
+
+        MoviePublisher.PublishResult result = publisher.publish(List.of(movie(301L), movie(302L)));
+
+        verify(kafkaTemplate).send(eq("movie-daily-topic"), eq("301"), any(MovieMessage.class));
+        verify(kafkaTemplate).send(eq("movie-daily-topic"), eq("302"), any(MovieMessage.class));
+        assertThat(result.getSent()).isEqualTo(2);
+        assertThat(result.getFailed()).isZero();
+        assertThat(meterRegistry.get("movie.publish.duration").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void publish_ShouldCountFailedAndUnacknowledgedRecords() {
+        SettableListenableFuture<SendResult<String, MovieMessage>> failed = new SettableListenableFuture<>();
+        failed.setException(new RuntimeException("NOT_ENOUGH_REPLICAS"));
+        SettableListenableFuture<SendResult<String, MovieMessage>> hanging = new SettableListenableFuture<>();
+
+        when(kafkaTemplate.send(eq("movie-daily-topic"), any(), any()))
+                .thenAnswer(invocation -> acked())
+                .thenReturn(failed)
+                .thenReturn(hanging)
+                .thenThrow(new RuntimeException("metadata timeout"));
+
+        MoviePublisher.PublishResult result = publisher.publish(
+                List.of(movie(1L), movie(2L), movie(3L), movie(4L)));
+
+        assertThat(result.getSent()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getFailedFilmIds()).containsExactlyInAnyOrder(2L, 3L, 4L);
+        assertThat(meterRegistry.get("movie.publish.records").tag("result", "failed").counter().count())
+                .isEqualTo(3.0);
+    }
+
+    private static SettableListenableFuture<SendResult<String, MovieMessage>> acked() {
+        SettableListenableFuture<SendResult<String, MovieMessage>> future = new SettableListenableFuture<>();
+        future.set(null);
+        return future;
+    }
+
+    private static Movie movie(long filmId) {
+        return new Movie(filmId, "Фильм " + filmId, 2000, new BigDecimal("7.5"), "Описание");
+    }
+}
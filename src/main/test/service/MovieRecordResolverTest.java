@@ -0,0 +1,77 @@
+package service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.kafka.MovieRecord;
+import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.MovieRecordResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovieRecordResolverTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private MovieRecordResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new MovieRecordResolver(movieRepository, new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    void resolve_ShouldLoadBatchWithOneQuery_AndServeRepeatsFromCache() {
+        when(movieRepository.findWithGenresByFilmIdIn(any())).thenReturn(List.of(movie(301L, 0L), movie(302L, 0L)));
+
+        List<MovieRecord> first = resolver.resolve(List.of(MovieRecord.reference(301L, 0), MovieRecord.reference(302L, 0)));
+        List<MovieRecord> second = resolver.resolve(List.of(MovieRecord.reference(301L, 0)));
+
+        verify(movieRepository, times(1)).findWithGenresByFilmIdIn(Set.of(301L, 302L));
+        assertThat(first).extracting(MovieRecord::filmName).containsExactly("Фильм 301", "Фильм 302");
+        assertThat(second.get(0).ratingText()).isEqualTo("8.1");
+    }
+
+    @Test
+    void resolve_ShouldReload_WhenMessageVersionIsNewer() {
+        when(movieRepository.findWithGenresByFilmIdIn(any()))
+                .thenReturn(List.of(movie(301L, 0L)))
+                .thenReturn(List.of(movie(301L, 1L)));
+
+        resolver.resolve(List.of(MovieRecord.reference(301L, 0)));
+        List<MovieRecord> updated = resolver.resolve(List.of(MovieRecord.reference(301L, 1)));
+
+        verify(movieRepository, times(2)).findWithGenresByFilmIdIn(any());
+        assertThat(updated.get(0).version()).isEqualTo(1L);
+    }
+
+    @Test
+    void resolve_ShouldPassFullRecords_AndDropUnknownReferences() {
+        MovieRecord full = new MovieRecord(null, 1L, "Полный", 2000, 7.0, "7.0", "", "", 0L);
+
+        assertThat(resolver.resolve(List.of(full))).containsExactly(full);
+        verifyNoInteractions(movieRepository);
+
+        when(movieRepository.findWithGenresByFilmIdIn(any())).thenReturn(List.of());
+        assertThat(resolver.resolve(List.of(full, MovieRecord.reference(999L, 0)))).containsExactly(full);
+    }
+
+    private static Movie movie(long filmId, long version) {
+        Movie movie = new Movie(filmId, "Фильм " + filmId, 2001, new BigDecimal("8.1"), "Описание");
+        ReflectionTestUtils.setField(movie, "version", version);
+        return movie;
+    }
+}
@@ -0,0 +1,353 @@
+package service;
+
+import com.bank.movieservice.DTO.response.KinopoiskResponse;
+import com.bank.movieservice.entity.IngestWatermark;
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.repository.IngestWatermarkRepository;
+import com.bank.movieservice.service.IngestWatermarkService;
+import com.bank.movieservice.service.GenreSlice;
+import com.bank.movieservice.service.KinopoiskService;
+import com.bank.movieservice.service.LocalMoviePool;
+import com.bank.movieservice.service.MovieSchedulerService;
+import com.bank.movieservice.service.SchedulerLockService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovieSchedulerServiceTest {
+
+    private static final String[] DAY_FIELDS = {"mondayGenre", "tuesdayGenre", "wednesdayGenre",
+            "thursdayGenre", "fridayGenre", "saturdayGenre", "sundayGenre"};
+
+    @Mock
+    private KinopoiskService kinopoiskService;
+
+    @Mock
+    private IngestWatermarkRepository watermarkRepository;
+
+    @Mock
+    private SchedulerLockService schedulerLock;
+
+    @Mock
+    private LocalMoviePool localMoviePool;
+
+    // Таблица ingest_watermarks в памяти
+    private final Map<String, IngestWatermark> storedWatermarks = new ConcurrentHashMap<>();
+    private MovieSchedulerService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(watermarkRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            return keys.stream().map(storedWatermarks::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        lenient().when(watermarkRepository.save(any())).thenAnswer(invocation -> {
+            IngestWatermark watermark = invocation.getArgument(0);
+            storedWatermarks.put(watermark.getQueryKey(), watermark);
+            return watermark;
+        });
+        IngestWatermarkService watermarkService = new IngestWatermarkService(watermarkRepository);
+        ReflectionTestUtils.setField(watermarkService, "initialBackoffMs", 120_000L);
+        ReflectionTestUtils.setField(watermarkService, "maxBackoffMs", 3_600_000L);
+
+        lenient().when(schedulerLock.runLocked(any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+
+        scheduler = new MovieSchedulerService(kinopoiskService, watermarkService, schedulerLock,
+                localMoviePool);
+        ReflectionTestUtils.setField(scheduler, "defaultRatingFrom", 7.0);
+        ReflectionTestUtils.setField(scheduler, "parallelism", 3);
+        ReflectionTestUtils.setField(scheduler, "ingestTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(scheduler, "cancelGraceMs", 2000L);
+        ReflectionTestUtils.setField(scheduler, "localFirst", false);
+        ReflectionTestUtils.setField(scheduler, "topN", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void ingestsAllSlicesConcurrentlyWithSharedClaims() {
+        scheduleEveryDay("драма, комедия:2000-2009:8");
+        // Оба среза должны выполняться одновременно, иначе первый не дождется второго
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        when(kinopoiskService.searchFilmsOnly(isNull(), any(), any(), any(), any(), isNull()))
+                .thenAnswer(invocation -> {
+                    bothStarted.countDown();
+                    assertThat(bothStarted.await(2, TimeUnit.SECONDS)).isTrue();
+                    String genre = invocation.getArgument(1);
+                    return List.of(film(genre.equals("драма") ? 1L : 2L));
+                });
+        when(kinopoiskService.saveNewFilms(anyList(), anySet(), anyInt())).thenAnswer(invocation -> {
+            List<KinopoiskResponse.Film> films = invocation.getArgument(0);
+            return saved(films.stream().map(film -> movie(film.getKinopoiskId())).toArray(Movie[]::new));
+        });
+
+        scheduler.sendToKafka();
+
+        verify(kinopoiskService).searchFilmsOnly(isNull(), eq("драма"), isNull(), isNull(), eq(7.0), isNull());
+        verify(kinopoiskService).searchFilmsOnly(isNull(), eq("комедия"), eq(2000), eq(2009), eq(8.0), isNull());
+        // Общий набор filmId на весь запуск
+        ArgumentCaptor<Set<Long>> claimed = ArgumentCaptor.forClass(Set.class);
+        verify(kinopoiskService, times(2)).saveNewFilms(anyList(), claimed.capture(), eq(Integer.MAX_VALUE));
+        assertThat(claimed.getAllValues().get(0)).isSameAs(claimed.getAllValues().get(1));
+        assertThat(storedWatermarks.values()).allSatisfy(watermark -> {
+            assertThat(watermark.getTotalSaved()).isEqualTo(1);
+            assertThat(watermark.getEmptyRuns()).isZero();
+        });
+    }
+
+    @Test
+    void failedSliceDoesNotBlockOthers() {
+        scheduleEveryDay("драма, ужасы");
+        when(kinopoiskService.searchFilmsOnly(isNull(), eq("драма"), any(), any(), any(), isNull()))
+                .thenReturn(List.of(film(1L)));
+        when(kinopoiskService.searchFilmsOnly(isNull(), eq("ужасы"), any(), any(), any(), isNull()))
+                .thenThrow(new IllegalStateException("API недоступно"));
+        when(kinopoiskService.saveNewFilms(anyList(), anySet(), anyInt())).thenReturn(saved(movie(1L)));
+
+        scheduler.sendToKafka();
+
+        // Сохранен только успешный срез; ошибочный не дошел до outbox
+        verify(kinopoiskService).saveNewFilms(
+                argThat(films -> films.size() == 1 && films.get(0).getKinopoiskId() == 1L), anySet(), anyInt());
+        // Ошибочный срез не записан - следующий тик попробует снова
+        assertThat(storedWatermarks).containsOnlyKeys("драма|||7.0");
+    }
+
+    @Test
+    void unchangedListIsNotProcessedAndSliceBacksOff() {
+        scheduleEveryDay("драма");
+        when(kinopoiskService.searchFilmsOnly(any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(film(1L), film(2L)));
+        when(kinopoiskService.saveNewFilms(anyList(), anySet(), anyInt())).thenReturn(saved());
+
+        // 1. Первый запуск: список новый, но все фильмы уже в базе
+        scheduler.sendToKafka();
+        IngestWatermark watermark = storedWatermarks.get("драма|||7.0");
+        assertThat(watermark.getEmptyRuns()).isEqualTo(1);
+        assertThat(watermark.getNextRunAt()).isAfter(watermark.getLastRunAt());
+
+        // 2. Время следующего запуска не подошло - в API не ходим
+        scheduler.sendToKafka();
+        verify(kinopoiskService, times(1)).searchFilmsOnly(any(), any(), any(), any(), any(), any());
+
+        // 3. Подошло, но API вернуло тот же список - фильмы не обрабатываются
+        watermark.setNextRunAt(null);
+        scheduler.sendToKafka();
+        verify(kinopoiskService, times(2)).searchFilmsOnly(any(), any(), any(), any(), any(), any());
+        verify(kinopoiskService, times(1)).saveNewFilms(anyList(), anySet(), anyInt());
+        assertThat(watermark.getEmptyRuns()).isEqualTo(2);
+    }
+
+    @Test
+    void incompleteSaveKeepsOldFingerprintSoListIsProcessedAgain() {
+        scheduleEveryDay("драма");
+        when(kinopoiskService.searchFilmsOnly(any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(film(1L), film(2L)));
+        // Второй фильм не сохранился - список нельзя считать обработанным
+        when(kinopoiskService.saveNewFilms(anyList(), anySet(), anyInt()))
+                .thenReturn(new KinopoiskService.SavedFilms(List.of(movie(1L)), false))
+                .thenReturn(saved(movie(2L)));
+
+        scheduler.sendToKafka();
+        IngestWatermark watermark = storedWatermarks.get("драма|||7.0");
+        assertThat(watermark.getFilmIdsHash()).isNull();
+        assertThat(watermark.getTotalSaved()).isEqualTo(1);
+
+        scheduler.sendToKafka();
+        verify(kinopoiskService, times(2)).saveNewFilms(anyList(), anySet(), anyInt());
+        assertThat(watermark.getFilmIdsHash()).isNotNull();
+        assertThat(watermark.getTotalSaved()).isEqualTo(2);
+    }
+
+    @Test
+    void sliceInterruptedWhileSavingDoesNotRecordWatermark() {
+        scheduleEveryDay("драма");
+        when(kinopoiskService.searchFilmsOnly(any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(film(1L), film(2L)));
+        when(kinopoiskService.saveNewFilms(anyList(), anySet(), anyInt())).thenAnswer(invocation -> {
+            // Как KinopoiskService: таймаут прервал загрузку деталей после первого фильма
+            Thread.currentThread().interrupt();
+            return new KinopoiskService.SavedFilms(List.of(movie(1L)), false);
+        });
+
+        scheduler.sendToKafka();
+
+        assertThat(storedWatermarks).isEmpty();
+    }
+
+    @Test
+    void timedOutSliceIsInterruptedBeforeLeaseIsReleased() {
+        ReflectionTestUtils.setField(scheduler, "ingestTimeoutMs", 200L);
+        scheduleEveryDay("драма");
+        AtomicBoolean exited = new AtomicBoolean();
+        when(kinopoiskService.searchFilmsOnly(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                // Как KinopoiskService: восстановить флаг и вернуть пустой результат
+                Thread.currentThread().interrupt();
+            }
+            exited.set(true);
+            return List.of(film(1L));
+        });
+
+        scheduler.sendToKafka();
+
+        // Запуск вернулся только после остановки среза, и прерванный срез ничего не сохранил
+        assertThat(exited).isTrue();
+        verify(kinopoiskService, never()).saveNewFilms(anyList(), anySet(), anyInt());
+        assertThat(storedWatermarks).isEmpty();
+    }
+
+    @Test
+    void skipsTicksWhileSliceIgnoringInterruptIsStillRunning() throws InterruptedException {
+        ReflectionTestUtils.setField(scheduler, "ingestTimeoutMs", 200L);
+        ReflectionTestUtils.setField(scheduler, "cancelGraceMs", 100L);
+        scheduleEveryDay("драма");
+        CountDownLatch release = new CountDownLatch(1);
+        when(kinopoiskService.searchFilmsOnly(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            // Блокирующий HTTP-запрос: прерывание его не останавливает
+            boolean interrupted = false;
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of();
+        });
+        when(kinopoiskService.saveNewFilms(anyList(), anySet(), anyInt())).thenReturn(saved());
+
+        scheduler.sendToKafka();
+        // Срез первого запуска еще висит - второй тик не начинает ту же загрузку
+        scheduler.sendToKafka();
+        verify(kinopoiskService, times(1)).searchFilmsOnly(any(), any(), any(), any(), any(), any());
+
+        release.countDown();
+        AtomicInteger activeSlices = (AtomicInteger) ReflectionTestUtils.getField(scheduler, "activeSlices");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (activeSlices.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        scheduler.sendToKafka();
+        verify(kinopoiskService, times(2)).searchFilmsOnly(any(), any(), any(), any(), any(), any());
+        verify(kinopoiskService, times(1)).saveNewFilms(anyList(), anySet(), anyInt());
+    }
+
+    @Test
+    void skipsTickWhenAnotherNodeHoldsLease() {
+        scheduleEveryDay("драма");
+        doReturn(false).when(schedulerLock).runLocked(any(), any());
+
+        scheduler.sendToKafka();
+
+        verifyNoInteractions(kinopoiskService, watermarkRepository);
+    }
+
+    @Test
+    void localPoolCoveringTopNSkipsApi() {
+        ReflectionTestUtils.setField(scheduler, "localFirst", true);
+        scheduleEveryDay("драма");
+        when(localMoviePool.takeUnsent(any(GenreSlice.class), eq(3), anySet()))
+                .thenReturn(List.of(movie(1L), movie(2L), movie(3L)));
+
+        scheduler.sendToKafka();
+
+        verifyNoInteractions(kinopoiskService);
+        assertThat(storedWatermarks).isEmpty();
+    }
+
+    @Test
+    void shortLocalPoolAsksApiOnlyForMissingMovies() {
+        ReflectionTestUtils.setField(scheduler, "localFirst", true);
+        scheduleEveryDay("драма");
+        when(localMoviePool.takeUnsent(any(GenreSlice.class), eq(3), anySet())).thenReturn(List.of(movie(1L)));
+        when(kinopoiskService.searchFilmsOnly(any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(film(5L), film(6L), film(7L)));
+        when(kinopoiskService.saveNewFilms(anyList(), anySet(), anyInt()))
+                .thenReturn(saved(movie(5L), movie(6L), movie(7L)));
+
+        scheduler.sendToKafka();
+
+        // В дайджест нужно еще 2 фильма; третий новый останется в пуле
+        verify(kinopoiskService).saveNewFilms(anyList(), anySet(), eq(2));
+        assertThat(storedWatermarks.get("драма|||7.0").getTotalSaved()).isEqualTo(3);
+    }
+
+    @Test
+    void emptyLocalPoolWaitsForWatermark() {
+        ReflectionTestUtils.setField(scheduler, "localFirst", true);
+        scheduleEveryDay("драма");
+        IngestWatermark watermark = new IngestWatermark("драма|||7.0");
+        watermark.setNextRunAt(LocalDateTime.now().plusHours(1));
+        storedWatermarks.put(watermark.getQueryKey(), watermark);
+        when(localMoviePool.takeUnsent(any(GenreSlice.class), anyInt(), anySet())).thenReturn(List.of());
+
+        scheduler.sendToKafka();
+
+        verify(localMoviePool).takeUnsent(any(GenreSlice.class), eq(3), anySet());
+        verifyNoInteractions(kinopoiskService);
+    }
+
+    private void scheduleEveryDay(String spec) {
+        for (String field : DAY_FIELDS) {
+            ReflectionTestUtils.setField(scheduler, field, spec);
+        }
+        scheduler.init();
+    }
+
+    private static KinopoiskService.SavedFilms saved(Movie... movies) {
+        return new KinopoiskService.SavedFilms(List.of(movies), true);
+    }
+
+    private static KinopoiskResponse.Film film(long filmId) {
+        KinopoiskResponse.Film film = new KinopoiskResponse.Film();
+        film.setKinopoiskId(filmId);
+        return film;
+    }
+
+    private static Movie movie(long filmId) {
+        return new Movie(filmId, "Фильм " + filmId, 2005, BigDecimal.valueOf(8.1), "Описание");
+    }
+}
@@ -1,8 +1,10 @@
 package service;  // ✅ Пакет должен совпадать с основным!
 
 import com.bank.movieservice.DTO.response.MovieResponse;
+import com.bank.movieservice.DTO.response.MovieSearchResponseDTO;
 import com.bank.movieservice.entity.Movie;
 import com.bank.movieservice.repository.MovieRepository;
+import com.bank.movieservice.service.MovieNameIndex;
 import com.bank.movieservice.service.MovieService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -36,6 +38,9 @@ public class MovieServiceTest {
     @Mock
     private MovieRepository movieRepository;
 
+    @Mock
+    private MovieNameIndex movieNameIndex;
+
     @InjectMocks
     private MovieService movieService;
 
@@ -164,4 +169,41 @@ public class MovieServiceTest {
         verify(movieRepository, times(1))
                 .findAll(any(Specification.class), any(Pageable.class));
     }
+
+    @Test
+    @DisplayName("searchMoviesByName - отвечает из индекса, когда он построен")
+    void searchMoviesByName_ShouldUseIndex_WhenReady() {
+        MovieSearchResponseDTO matrix = MovieSearchResponseDTO.fromEntity(matrixMovie);
+        when(movieNameIndex.isReady()).thenReturn(true);
+        when(movieNameIndex.search("мат")).thenReturn(List.of(matrix));
+
+        List<MovieSearchResponseDTO> result = movieService.searchMoviesByName("мат");
+
+        assertThat(result).containsExactly(matrix);
+        verifyNoInteractions(movieRepository);
+    }
+
+    @Test
+    @DisplayName("searchMoviesByName - идет в БД, пока индекс строится")
+    void searchMoviesByName_ShouldFallBackToDatabase_WhenIndexNotReady() {
+        when(movieNameIndex.isReady()).thenReturn(false);
+        when(movieRepository.searchByName("ава")).thenReturn(List.of(avatarMovie));
+
+        List<MovieSearchResponseDTO> result = movieService.searchMoviesByName("ава");
+
+        assertThat(result).extracting(MovieSearchResponseDTO::getName).containsExactly("Аватар");
+        verify(movieNameIndex, never()).search(any());
+    }
+
+    @Test
+    @DisplayName("fuzzySearchMoviesByName - триграммный индекс, пока он не готов - обычный поиск")
+    void fuzzySearchMoviesByName_ShouldUseIndexOrFallBack() {
+        MovieSearchResponseDTO matrix = MovieSearchResponseDTO.fromEntity(matrixMovie);
+        when(movieNameIndex.isReady()).thenReturn(true, false);
+        when(movieNameIndex.fuzzySearch("матрца")).thenReturn(List.of(matrix));
+        when(movieRepository.searchByName("матрца")).thenReturn(List.of());
+
+        assertThat(movieService.fuzzySearchMoviesByName("матрца")).containsExactly(matrix);
+        assertThat(movieService.fuzzySearchMoviesByName("матрца")).isEmpty();
+    }
 }
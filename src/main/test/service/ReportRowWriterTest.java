@@ -0,0 +1,55 @@
+package service;
+
+import com.bank.movieservice.entity.Movie;
+import com.bank.movieservice.service.ReportRowWriter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportRowWriterTest {
+
+    private final ReportRowWriter rowWriter = new ReportRowWriter();
+
+    @Test
+    void writeMovieCsvRow_ShouldEscapeQuotesAndRoundRating() {
+        Movie movie = new Movie(1L, "\"Начало\"", 2010, new BigDecimal("8.65"), "Сон \"во сне\"");
+        StringBuilder out = new StringBuilder();
+
+        rowWriter.writeMovieCsvRow(out, movie);
+
+        assertThat(out.toString()).isEqualTo("1,\"\"\"Начало\"\"\",2010,8.7,\"Сон \"\"во сне\"\"\"\n");
+    }
+
+    @Test
+    void writeMovieCsvRow_ShouldWriteDefaultRating_WhenRatingIsNull() {
+        Movie movie = new Movie(2L, "Без рейтинга", 2020, null, null);
+        StringBuilder out = new StringBuilder();
+
+        rowWriter.writeMovieCsvRow(out, movie);
+
+        assertThat(out.toString()).isEqualTo("2,\"Без рейтинга\",2020,0.0,\"\"\n");
+    }
+
+    @Test
+    void writeMovieXmlRow_ShouldEscapeAllEntitiesInOnePass() {
+        Movie movie = new Movie(3L, "Tom & Jerry", 1940, new BigDecimal("7.9"), "<a href='x'>\"b\"</a>");
+        StringBuilder out = new StringBuilder();
+
+        rowWriter.writeMovieXmlRow(out, movie);
+
+        assertThat(out.toString())
+                .contains("<filmName>Tom &amp; Jerry</filmName>")
+                .contains("<description>&lt;a href=&apos;x&apos;&gt;&quot;b&quot;&lt;/a&gt;</description>");
+    }
+
+    @Test
+    void writeDigestCsvRow_ShouldLeaveEmptyFields_WhenIdAndYearAreMissing() {
+        StringBuilder out = new StringBuilder();
+
+        rowWriter.writeDigestCsvRow(out, null, "Фильм", null, "N/A", "", "драма, комедия");
+
+        assertThat(out.toString()).isEqualTo(",\"Фильм\",,N/A,\"\",\"драма, комедия\"\n");
+    }
+}
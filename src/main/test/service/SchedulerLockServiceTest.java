@@ -0,0 +1,103 @@
+package service;
+
+import com.bank.movieservice.repository.SchedulerLockRepository;
+import com.bank.movieservice.service.SchedulerLockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SchedulerLockServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 7, 0);
+
+    @Mock
+    private SchedulerLockRepository lockRepository;
+
+    private SchedulerLockService lockService;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        lockService = new SchedulerLockService(lockRepository);
+        ReflectionTestUtils.setField(lockService, "enabled", true);
+        ReflectionTestUtils.setField(lockService, "leaseMs", 600_000L);
+        ReflectionTestUtils.setField(lockService, "minHoldMs", 30_000L);
+        ReflectionTestUtils.setField(lockService, "clock",
+                Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    @Test
+    void takesExpiredLeaseAndHoldsItForMinimumTime() {
+        when(lockRepository.acquireExpired(eq("job"), eq(NOW), eq(NOW.plusMinutes(10)), anyString())).thenReturn(1);
+        when(lockRepository.release(eq("job"), anyString(), eq(NOW), any())).thenReturn(1);
+
+        assertThat(lockService.runLocked("job", runs::incrementAndGet)).isTrue();
+
+        assertThat(runs).hasValue(1);
+        verify(lockRepository, never()).insertLock(any(), any(), any(), any());
+        // Задача завершилась мгновенно - аренда держится до locked_at + min-hold
+        ArgumentCaptor<LocalDateTime> until = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(lockRepository).release(eq("job"), anyString(), eq(NOW), until.capture());
+        assertThat(until.getValue()).isEqualTo(NOW.plusSeconds(30));
+    }
+
+    @Test
+    void createsLeaseRowForNewJob() {
+        when(lockRepository.acquireExpired(any(), any(), any(), any())).thenReturn(0);
+        when(lockRepository.insertLock(eq("job"), eq(NOW), eq(NOW.plusMinutes(10)), anyString())).thenReturn(1);
+
+        assertThat(lockService.runLocked("job", runs::incrementAndGet)).isTrue();
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void skipsWhenLeaseIsHeldElsewhere() {
+        when(lockRepository.acquireExpired(any(), any(), any(), any())).thenReturn(0);
+        when(lockRepository.insertLock(any(), any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry 'job'"));
+
+        assertThat(lockService.runLocked("job", runs::incrementAndGet)).isFalse();
+
+        assertThat(runs).hasValue(0);
+        verify(lockRepository, never()).release(any(), any(), any(), any());
+    }
+
+    @Test
+    void releasesLeaseWhenTaskFails() {
+        when(lockRepository.acquireExpired(any(), any(), any(), any())).thenReturn(1);
+
+        assertThatThrownBy(() -> lockService.runLocked("job", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        verify(lockRepository).release(eq("job"), anyString(), eq(NOW), any());
+    }
+
+    @Test
+    void disabledLockRunsTaskDirectly() {
+        ReflectionTestUtils.setField(lockService, "enabled", false);
+
+        assertThat(lockService.runLocked("job", runs::incrementAndGet)).isTrue();
+
+        assertThat(runs).hasValue(1);
+        verifyNoInteractions(lockRepository);
+    }
+}